@@ -18,50 +18,46 @@ package org.openntf.p2.domino.updatesite;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.StringReader;
 import java.io.UncheckedIOException;
 import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.nio.file.StandardOpenOption;
-import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
-import org.apache.maven.plugin.BuildPluginManager;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
-import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
 import org.eclipse.osgi.util.ManifestElement;
 import org.openntf.nsfodp.commons.NSFODPUtil;
-import org.openntf.nsfodp.commons.xml.NSFODPDomUtil;
 import org.openntf.p2.domino.updatesite.model.BundleEmbed;
 import org.openntf.p2.domino.updatesite.model.BundleInfo;
-import org.osgi.framework.Version;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import org.openntf.p2.domino.updatesite.tasks.BundleMaterializer;
+import org.openntf.p2.domino.updatesite.tasks.BundlePomWriter;
+import org.openntf.p2.domino.updatesite.tasks.BundleSelector;
+import org.openntf.p2.domino.updatesite.tasks.MavenizeWorkspace;
+import org.openntf.p2.domino.updatesite.util.NLSUtil;
+import org.osgi.framework.BundleException;
 
 import com.ibm.commons.util.StringUtil;
 import com.ibm.commons.util.io.StreamUtil;
@@ -69,6 +65,11 @@ import com.ibm.commons.util.io.StreamUtil;
 public abstract class AbstractMavenizeBundlesMojo extends AbstractMojo {
 
 	public static final String GROUP_ID = "com.ibm.xsp"; //$NON-NLS-1$
+	/**
+	 * The number of bundles whose temporary files are created, installed or deployed,
+	 * and deleted together.
+	 */
+	private static final int BUNDLE_CHUNK_SIZE = 64;
 	/**
 	 * Source p2 repository
 	 */
@@ -85,128 +86,250 @@ public abstract class AbstractMavenizeBundlesMojo extends AbstractMojo {
 	 */
 	@Parameter(property = "optionalDependencies", required = false)
 	protected boolean optionalDependencies = false;
+	/**
+	 * The maximum number of bundles to analyze concurrently. Values less than 1 use
+	 * the number of available processors.
+	 * 
+	 * @since 6.1.0
+	 */
+	@Parameter(property = "threads", required = false, defaultValue = "0")
+	protected int threads = 0;
+	/**
+	 * Whether to skip artifacts that are already present in the target repository with
+	 * identical content.
+	 * 
+	 * @since 6.1.0
+	 */
+	@Parameter(property = "skipExisting", required = false, defaultValue = "true")
+	protected boolean skipExisting = true;
+	/**
+	 * Symbolic names of the bundles to mavenize, along with their transitive dependencies.
+	 * {@code *} matches any sequence of characters. If unset, all bundles are mavenized.
+	 * 
+	 * @since 6.1.0
+	 */
+	@Parameter(property = "roots", required = false)
+	protected List<String> roots;
+	/**
+	 * Symbolic names of bundles to skip, which are also not followed as dependencies.
+	 * {@code *} matches any sequence of characters.
+	 * 
+	 * @since 6.1.0
+	 */
+	@Parameter(property = "excludes", required = false)
+	protected List<String> excludes;
+	/**
+	 * Whether the dependencies of {@link #roots} also follow {@code Import-Package} to the
+	 * bundles exporting each package, in addition to {@code Require-Bundle}.
+	 * 
+	 * @since 6.1.0
+	 */
+	@Parameter(property = "followImportPackage", required = false, defaultValue = "false")
+	protected boolean followImportPackage = false;
 	
-	@Parameter(defaultValue = "${project}", readonly = true)
-	protected MavenProject mavenProject;
 	@Parameter(defaultValue = "${session}", readonly = true)
 	protected MavenSession mavenSession;
-	@Component
-	protected BuildPluginManager pluginManager;
+	
+	private MavenizeWorkspace workspace;
+	private BundlePomWriter pomWriter;
+	private BundleMaterializer materializer;
 	
 	@Override
 	public void execute() throws MojoExecutionException, MojoFailureException {
-		List<BundleInfo> bundles = new ArrayList<>();
+		List<BundleInfo> bundles;
 		Map<String, BundleInfo> bundlesByName = new HashMap<>();
-		String basePom;
 		
+		int poolSize = threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
+		AtomicInteger threadCount = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(poolSize, r -> {
+			Thread t = new Thread(r, "generate-domino-update-site-mavenize-" + threadCount.incrementAndGet()); //$NON-NLS-1$
+			t.setDaemon(true);
+			return t;
+		});
 		try {
-			Path bundlesDir = src.toPath();
-			if(Files.exists(bundlesDir.resolve("plugins"))) { //$NON-NLS-1$
-				bundlesDir = bundlesDir.resolve("plugins"); //$NON-NLS-1$
-			}
-			
-			try(InputStream is = getClass().getResourceAsStream("/basePom.xml")) { //$NON-NLS-1$
-				basePom = StreamUtil.readString(is);
-			}
-			
-			Files.list(bundlesDir)
-				.filter(path -> path.toString().toLowerCase().endsWith(".jar")) //$NON-NLS-1$
-				.filter(path -> !isSourceBundle(path))
-				.map(this::toInfo)
-				.filter(Objects::nonNull)
-				.forEach(b -> {
-					bundles.add(b);
-					bundlesByName.put(b.getArtifactId(), b);
-				});
-		} catch(IOException e) {
-			throw new MojoExecutionException(Messages.getString("AbstractMavenizeBundlesMojo.exceptionProcessingBundles")); //$NON-NLS-1$
-		}
-			
-		for(BundleInfo bundle : bundles) {
-			Path tempPom;
 			try {
-				tempPom = generateBundlePom(bundle, basePom, bundlesByName);
+				Path bundlesDir = src.toPath();
+				if(Files.exists(bundlesDir.resolve("plugins"))) { //$NON-NLS-1$
+					bundlesDir = bundlesDir.resolve("plugins"); //$NON-NLS-1$
+				}
+				
+				try(InputStream is = getClass().getResourceAsStream("/basePom.xml")) { //$NON-NLS-1$
+					pomWriter = new BundlePomWriter(StreamUtil.readString(is), groupId, optionalDependencies);
+				}
+				
+				List<Path> jars;
+				try(Stream<Path> files = Files.list(bundlesDir)) {
+					jars = files.filter(path -> path.toString().toLowerCase().endsWith(".jar")) //$NON-NLS-1$
+						.filter(path -> !isSourceBundle(path))
+						.sorted()
+						.collect(Collectors.toList());
+				}
+				bundles = mapConcurrently(executor, jars, this::toInfo);
 			} catch(IOException e) {
-				throw new MojoExecutionException(Messages.getString("AbstractMavenizeBundlesMojo.exceptionGeneratingPom"), e); //$NON-NLS-1$
+				throw new MojoExecutionException(Messages.getString("AbstractMavenizeBundlesMojo.exceptionProcessingBundles"), e); //$NON-NLS-1$
 			}
+			bundles = selectBundles(bundles);
+			bundles.forEach(b -> bundlesByName.put(b.getArtifactId(), b));
 			
-			try {
-				processBundle(bundle, bundles, bundlesByName, tempPom);
-			} finally {
-				if(tempPom != null) {
-					try {
-						Files.deleteIfExists(tempPom);
-					} catch (IOException e) {
-						getLog().info(MessageFormat.format("Unable to delete temporary file {0}: {1}", tempPom, e));
+			// Rewrite, process and complete the bundles a chunk at a time, so that only one chunk's
+			//   worth of temporary files exists at once
+			try(MavenizeWorkspace workspace = MavenizeWorkspace.create()) {
+				this.workspace = workspace;
+				this.materializer = new BundleMaterializer(workspace);
+				startBundles();
+				try {
+					for(int start = 0; start < bundles.size(); start += BUNDLE_CHUNK_SIZE) {
+						List<BundleInfo> chunk = mapConcurrently(executor, bundles.subList(start, Math.min(bundles.size(), start + BUNDLE_CHUNK_SIZE)), this::materialize);
+						for(BundleInfo bundle : chunk) {
+							Path tempPom;
+							try {
+								tempPom = generateBundlePom(bundle, bundlesByName);
+							} catch(IOException e) {
+								throw new MojoExecutionException(Messages.getString("AbstractMavenizeBundlesMojo.exceptionGeneratingPom"), e); //$NON-NLS-1$
+							}
+							
+							processBundle(bundle, bundles, bundlesByName, tempPom);
+						}
+						
+						completeBundles(chunk);
+						workspace.clear();
 					}
+				} finally {
+					finishBundles();
 				}
+			} catch(IOException e) {
+				throw new MojoExecutionException(Messages.getString("AbstractMavenizeBundlesMojo.exceptionProcessingBundles"), e); //$NON-NLS-1$
+			} finally {
+				this.workspace = null;
+				this.materializer = null;
 			}
+		} finally {
+			executor.shutdownNow();
 		}
 	}
 	
-	protected abstract void processBundle(BundleInfo bundle, List<BundleInfo> bundles, Map<String, BundleInfo> bundlesByName, Path tempPom) throws MojoExecutionException;
-	
-	protected Path generateBundlePom(BundleInfo bundle, String basePom, Map<String, BundleInfo> bundles) throws IOException {
-		Document xml = NSFODPDomUtil.createDocument(new StringReader(basePom));
-		
-		Element project = xml.getDocumentElement();
-	
-		Element groupIdEl = NSFODPDomUtil.createElement(project, "groupId"); //$NON-NLS-1$
-		groupIdEl.setTextContent(this.groupId);
-		
-		Element artifactId = NSFODPDomUtil.createElement(project, "artifactId"); //$NON-NLS-1$
-		artifactId.setTextContent(bundle.getArtifactId());
-		
-		Element version = NSFODPDomUtil.createElement(project, "version"); //$NON-NLS-1$
-		version.setTextContent(bundle.getVersion());
-		
-		if(StringUtil.isNotEmpty(bundle.getVendor())) {
-			Element organization = NSFODPDomUtil.createElement(project, "organization"); //$NON-NLS-1$
-			Element name = NSFODPDomUtil.createElement(organization, "name"); //$NON-NLS-1$
-			name.setTextContent(bundle.getVendor());
+	/**
+	 * Narrows {@code bundles} to the closure of {@link #roots}, less {@link #excludes}.
+	 * 
+	 * @since 6.1.0
+	 */
+	private List<BundleInfo> selectBundles(List<BundleInfo> bundles) {
+		BundleSelector selector = new BundleSelector(roots, excludes);
+		selector.setFollowImportPackage(followImportPackage);
+		List<BundleInfo> selected = selector.select(bundles);
+		for(String root : selector.getUnmatchedRoots()) {
+			getLog().warn(Messages.getString("AbstractMavenizeBundlesMojo.unmatchedRoot", root)); //$NON-NLS-1$
 		}
+		if(selected.size() != bundles.size()) {
+			getLog().info(Messages.getString("AbstractMavenizeBundlesMojo.selectedBundles", selected.size(), bundles.size())); //$NON-NLS-1$
+		}
+		return selected;
+	}
 	
-		Element dependencies = NSFODPDomUtil.createElement(project, "dependencies"); //$NON-NLS-1$
-		
-		// Add dependencies based on Require-Bundle
-		if(!bundle.getRequires().isEmpty()) {
-			for(String require : bundle.getRequires()) {
-				BundleInfo dep = bundles.get(require);
-				if(dep != null) {
-					Element dependency = NSFODPDomUtil.createElement(dependencies, "dependency"); //$NON-NLS-1$
-					Element groupId = NSFODPDomUtil.createElement(dependency, "groupId"); //$NON-NLS-1$
-					groupId.setTextContent(this.groupId);
-					Element depArtifactId = NSFODPDomUtil.createElement(dependency, "artifactId"); //$NON-NLS-1$
-					depArtifactId.setTextContent(dep.getArtifactId());
-					Element depVersion = NSFODPDomUtil.createElement(dependency, "version"); //$NON-NLS-1$
-					depVersion.setTextContent(dep.getVersion());
-					if(optionalDependencies) {
-						NSFODPDomUtil.createElement(dependency, "optional").setTextContent("true"); //$NON-NLS-1$ //$NON-NLS-2$
-					}
+	/**
+	 * Runs {@code task} for each item using {@code executor}.
+	 * 
+	 * @return the non-{@code null} results, in the same order as {@code items}
+	 * @since 6.1.0
+	 */
+	private <T> List<BundleInfo> mapConcurrently(ExecutorService executor, List<T> items, Function<T, BundleInfo> task) throws MojoExecutionException {
+		try {
+			List<Future<BundleInfo>> futures = new ArrayList<>(items.size());
+			for(T item : items) {
+				futures.add(executor.submit(() -> task.apply(item)));
+			}
+
+			List<BundleInfo> result = new ArrayList<>(items.size());
+			for(Future<BundleInfo> future : futures) {
+				BundleInfo info = future.get();
+				if(info != null) {
+					result.add(info);
 				}
 			}
+			return result;
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException(Messages.getString("AbstractMavenizeBundlesMojo.exceptionProcessingBundles"), e); //$NON-NLS-1$
+		} catch(ExecutionException e) {
+			throw new MojoExecutionException(Messages.getString("AbstractMavenizeBundlesMojo.exceptionProcessingBundles"), e.getCause()); //$NON-NLS-1$
 		}
-		
-		// Add internal dependencies for Bundle-ClassPath entries
-		if(!bundle.getEmbeds().isEmpty()) {
-			for(BundleEmbed embed : bundle.getEmbeds()) {
-				Element dependency = NSFODPDomUtil.createElement(dependencies, "dependency"); //$NON-NLS-1$
-				Element groupId = NSFODPDomUtil.createElement(dependency, "groupId"); //$NON-NLS-1$
-				groupId.setTextContent(this.groupId);
-				Element depArtifactId = NSFODPDomUtil.createElement(dependency, "artifactId"); //$NON-NLS-1$
-				depArtifactId.setTextContent(bundle.getArtifactId());
-				Element depVersion = NSFODPDomUtil.createElement(dependency, "version"); //$NON-NLS-1$
-				depVersion.setTextContent(bundle.getVersion());
-				Element depClassifier = NSFODPDomUtil.createElement(dependency, "classifier"); //$NON-NLS-1$
-				depClassifier.setTextContent(toEmbedClassifierName(embed.getName()));
-			}
+	}
+	
+	/**
+	 * Called once before the first chunk of bundles is processed, to set up anything
+	 * that {@link #completeBundles} reuses for the whole run.
+	 * 
+	 * @throws MojoExecutionException if there is a problem starting the run
+	 * @since 6.1.0
+	 */
+	protected void startBundles() throws MojoExecutionException {
+		// NOP by default
+	}
+	
+	protected abstract void processBundle(BundleInfo bundle, List<BundleInfo> bundles, Map<String, BundleInfo> bundlesByName, Path tempPom) throws MojoExecutionException;
+	
+	/**
+	 * Called once {@link #processBundle} has run for each bundle in a chunk, while the
+	 * temporary files for those bundles still exist. The files are deleted once this
+	 * method returns.
+	 * 
+	 * @param bundles the processed bundles in the chunk
+	 * @throws MojoExecutionException if there is a problem completing the run
+	 * @since 6.1.0
+	 */
+	protected void completeBundles(List<BundleInfo> bundles) throws MojoExecutionException {
+		// NOP by default
+	}
+	
+	/**
+	 * Called once after the last chunk of bundles, or after a failure once
+	 * {@link #startBundles} has returned, to release what it set up.
+	 * 
+	 * @since 6.1.0
+	 */
+	protected void finishBundles() {
+		// NOP by default
+	}
+	
+	/**
+	 * Builds the Maven artifacts for a bundle: its JAR and POM, a classified JAR
+	 * for each embed, and its source bundle, if any.
+	 * 
+	 * @param bundle the bundle to convert
+	 * @param pom the generated POM for the bundle
+	 * @return the artifacts, with their files set
+	 * @since 6.1.0
+	 */
+	protected List<Artifact> toArtifacts(BundleInfo bundle, Path pom) {
+		List<Artifact> result = new ArrayList<>(bundle.getEmbeds().size() + 3);
+		result.add(new DefaultArtifact(groupId, bundle.getArtifactId(), "", "jar", bundle.getVersion()) //$NON-NLS-1$ //$NON-NLS-2$
+			.setFile(new File(bundle.getFilePath())));
+		result.add(new DefaultArtifact(groupId, bundle.getArtifactId(), "", "pom", bundle.getVersion()) //$NON-NLS-1$ //$NON-NLS-2$
+			.setFile(pom.toFile()));
+		for(BundleEmbed embed : bundle.getEmbeds()) {
+			result.add(new DefaultArtifact(groupId, bundle.getArtifactId(), toEmbedClassifierName(embed.getName()), "jar", bundle.getVersion()) //$NON-NLS-1$
+				.setFile(embed.getFile().toFile()));
 		}
-		
-		// Write out the temporary pom
-		Path tempPom = Files.createTempFile(bundle.getArtifactId(), ".pom"); //$NON-NLS-1$
-		Files.write(tempPom, NSFODPDomUtil.getXmlString(xml, null).getBytes(), StandardOpenOption.TRUNCATE_EXISTING);
-		
-		return tempPom;
+		if(bundle.getSource() != null) {
+			result.add(new DefaultArtifact(groupId, bundle.getArtifactId(), "sources", "jar", bundle.getVersion()) //$NON-NLS-1$ //$NON-NLS-2$
+				.setFile(bundle.getSource().toFile()));
+		}
+		return result;
+	}
+	
+	/**
+	 * Writes the POM for a bundle to the run workspace, based on the base POM read at
+	 * the start of the run.
+	 * 
+	 * @param bundle the bundle to write the POM for
+	 * @param bundles the bundles in the run, by artifact ID, used to resolve {@code Require-Bundle}
+	 * @return the path to the POM file
+	 * @throws IOException if there is a problem writing the POM
+	 */
+	protected Path generateBundlePom(BundleInfo bundle, Map<String, BundleInfo> bundles) throws IOException {
+		Path pom = workspace.newPath(bundle.getArtifactId() + '-' + bundle.getVersion() + ".pom"); //$NON-NLS-1$
+		pomWriter.write(bundle, bundles, pom);
+		return pom;
 	}
 
 	protected BundleInfo toInfo(Path path) {
@@ -241,15 +364,15 @@ public abstract class AbstractMavenizeBundlesMojo extends AbstractMojo {
             String name = manifest.getMainAttributes().getValue("Bundle-Name"); //$NON-NLS-1$
             if (name == null || name.isEmpty()) {
                 name = artifactId;
-            } else if (name.startsWith("%")) { //$NON-NLS-1$
-                name = props.getProperty(name.substring(1));
+            } else {
+                name = NLSUtil.resolve(name, props);
             }
 
             String vendor = manifest.getMainAttributes().getValue("Bundle-Vendor"); //$NON-NLS-1$
             if (vendor == null) {
                 vendor = ""; //$NON-NLS-1$
-            } else if (vendor.startsWith("%")) { //$NON-NLS-1$
-                vendor = props.getProperty(vendor.substring(1));
+            } else {
+                vendor = NLSUtil.resolve(vendor, props);
             }
 
             // Figure out dependencies based on Require-Bundle
@@ -267,131 +390,20 @@ public abstract class AbstractMavenizeBundlesMojo extends AbstractMojo {
                 }
             }
 
-            // Look for embedded jars in Bundle-ClassPath
-            List<BundleEmbed> embeds = new ArrayList<>();
-            String classpath = manifest.getMainAttributes().getValue("Bundle-ClassPath"); //$NON-NLS-1$
-            if (classpath != null && !classpath.isEmpty()) {
-                String[] cpEntries = classpath.split("\\n|,"); //$NON-NLS-1$
-                for (String cpEntry : cpEntries) {
-                    if (cpEntry.toLowerCase().endsWith(".jar")) { //$NON-NLS-1$
-                        // Extract the jar file to a temp location and add an embed reference
-                        JarEntry embedEntry = jarFile.getJarEntry(cpEntry);
-                        if (embedEntry != null) {
-                            try (InputStream embedIs = jarFile.getInputStream(embedEntry)) {
-                                Path embedPath = Paths.get(cpEntry);
-                                String embedName = embedPath.getFileName().toString().replace('/', '$');
-
-                                Path embedFile = Files.createTempFile(embedName, ".jar"); //$NON-NLS-1$
-                                embedFile.toFile().deleteOnExit();
-                                Files.copy(embedIs, embedFile, StandardCopyOption.REPLACE_EXISTING);
-
-                                embeds.add(new BundleEmbed(embedName, embedFile));
-                            }
-                        }
-                    }
-                }
+            // Record the package wiring and fragment host, used to select a subset of bundles
+            String fragmentHost = manifest.getMainAttributes().getValue("Fragment-Host"); //$NON-NLS-1$
+            if (StringUtil.isNotEmpty(fragmentHost)) {
+                fragmentHost = StringUtil.trim(fragmentHost.replaceAll(";.*", "")); //$NON-NLS-1$ //$NON-NLS-2$
+            } else {
+                fragmentHost = null;
             }
+            List<String> importedPackages = parsePackages(manifest, "Import-Package"); //$NON-NLS-1$
+            List<String> exportedPackages = parsePackages(manifest, "Export-Package"); //$NON-NLS-1$
 
-            // Create a copy of the JAR in a temp location to tweak the requirements
-            Path tempFile = Files.createTempFile(path.getFileName().toString(), ".jar"); //$NON-NLS-1$
-            tempFile.toFile().deleteOnExit();
-            try (OutputStream os = Files.newOutputStream(tempFile, StandardOpenOption.TRUNCATE_EXISTING)) {
-                try (ZipOutputStream zos = new ZipOutputStream(os)) {
-                    try (InputStream is = Files.newInputStream(path)) {
-                        try (ZipInputStream zis = new ZipInputStream(is)) {
-                            ZipEntry entry = zis.getNextEntry();
-                            while (entry != null) {
-                                zos.putNextEntry(entry);
-                                if ("META-INF/MANIFEST.MF".equals(entry.getName())) { //$NON-NLS-1$
-                                    Manifest tempManifest = new Manifest();
-                                    tempManifest.read(zis);
-
-                                    // Replace the com.ibm.pvc.servlet hard requirement with just servlet imports
-                                    String requireBundle = tempManifest.getMainAttributes().getValue("Require-Bundle"); //$NON-NLS-1$
-                                    if (StringUtil.isNotEmpty(requireBundle)) {
-                                        ManifestElement[] elements = ManifestElement.parseHeader("Require-Bundle", requireBundle); //$NON-NLS-1$
-                                        requireBundle = Stream.of(elements)
-                                                              .filter(el -> !"com.ibm.pvc.servlet".equals(el.getValue())) //$NON-NLS-1$
-                                                              .map(el -> el.toString() + (
-                                                                  "optional".equals(el.getDirective("resolution")) ? ""
-                                                                      : ";resolution:=optional")) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
-                                                              .collect(Collectors.joining(",")); //$NON-NLS-1$
-                                        if (StringUtil.isEmpty(requireBundle)) {
-                                            tempManifest.getMainAttributes()
-                                                        .remove(new java.util.jar.Attributes.Name("Require-Bundle")); //$NON-NLS-1$
-                                        } else {
-                                            tempManifest.getMainAttributes().putValue("Require-Bundle", requireBundle); //$NON-NLS-1$
-                                        }
-                                    }
-
-                                    // Validate the bundle version
-                                    String versionString = tempManifest.getMainAttributes().getValue("Bundle-Version"); //$NON-NLS-1$
-                                    if (StringUtil.isNotEmpty(versionString)) {
-                                        try {
-                                            new Version(versionString);
-                                        } catch (IllegalArgumentException e) {
-                                            // This case should be that there are more than three "."s
-                                            String[] bits = versionString.split("\\.", 4); //$NON-NLS-1$
-                                            if (bits.length >= 4) {
-                                                versionString = bits[0] + "." + bits[1] + "." + bits[2] + "."
-                                                    + bits[3].replace(".", "_"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
-                                                tempManifest.getMainAttributes()
-                                                            .putValue("Bundle-Version", versionString); //$NON-NLS-1$
-                                            } else {
-                                                throw e;
-                                            }
-                                        }
-                                    }
-
-                                    // Cover cases where bundles no longer automatically get javax.servlet transitively, as well
-                                    //   as some XML things that these bundles assume are passively available, but which newer OSGi
-                                    //   containers may not automatically provide
-                                    List<String> imports = Arrays.asList(
-                                        "javax.servlet", //$NON-NLS-1$
-                                        "javax.servlet.*", //$NON-NLS-1$
-                                        "org.w3c.dom", //$NON-NLS-1$
-                                        "org.w3c.dom.*", //$NON-NLS-1$
-                                        "org.xml.*", //$NON-NLS-1$
-                                        "javax.xml.*", //$NON-NLS-1$
-                                        "lotus.*" //$NON-NLS-1$
-                                    );
-                                    tempManifest.getMainAttributes()
-                                                .putValue("DynamicImport-Package", String.join(",", imports)); //$NON-NLS-1$ //$NON-NLS-2$
-
-                                    tempManifest.write(zos);
-                                } else {
-                                    StreamUtil.copyStream(zis, zos);
-                                }
-
-                                zis.closeEntry();
-                                entry = zis.getNextEntry();
-                            }
-
-                            // Very special handling of com.ibm.notes.java.api to make it play nicer in other environments
-                            if (path.getFileName().startsWith("com.ibm.notes.java.api_")) { //$NON-NLS-1$
-                                // Find the companion fragment
-                                Optional<Path> maybeFragment = Files.find(path.getParent(), 0,
-                                                                          (p, attr) -> p.getFileName()
-                                                                                        .startsWith("com.ibm.notes.java.api.win32.linux_"))
-                                                                    .findFirst(); //$NON-NLS-1$
-                                if (maybeFragment.isPresent()) {
-                                    ZipFile fragmentZip = new ZipFile(maybeFragment.get().toFile());
-                                    try {
-                                        ZipEntry notesJar = fragmentZip.getEntry("Notes.jar"); //$NON-NLS-1$
-                                        if (notesJar != null) {
-                                            zos.putNextEntry(notesJar);
-                                            try (InputStream nis = fragmentZip.getInputStream(notesJar)) {
-                                                StreamUtil.copyStream(nis, zos);
-                                            }
-                                        }
-                                    } finally {
-                                        fragmentZip.close();
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
+            // Look for embedded jars in Bundle-ClassPath, which are extracted later by materialize
+            List<BundleEmbed> embeds = new ArrayList<>();
+            for (String cpEntry : BundleMaterializer.findEmbedEntries(jarFile, manifest)) {
+                embeds.add(new BundleEmbed(BundleMaterializer.toEmbedName(cpEntry), null));
             }
 
             // Check for a source bundle
@@ -404,13 +416,49 @@ public abstract class AbstractMavenizeBundlesMojo extends AbstractMojo {
                 }
             }
 
-            return new BundleInfo(name, vendor, artifactId, version, tempFile.toAbsolutePath()
-                                                                             .toString(), requireEntries, embeds, source);
+            return new BundleInfo(name, vendor, artifactId, version, path.toAbsolutePath()
+                                                                         .toString(), requireEntries, embeds, source,
+                                  fragmentHost, importedPackages, exportedPackages);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
 	}
 
+    /**
+     * Writes the temporary files for a bundle read by {@link #toInfo(Path)} to the
+     * run workspace.
+     * 
+     * @see BundleMaterializer#materialize(BundleInfo)
+     */
+    private BundleInfo materialize(BundleInfo bundle) {
+        try {
+            return materializer.materialize(bundle);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return the package names in the given manifest header, excluding optional imports
+     */
+    private static List<String> parsePackages(Manifest manifest, String header) {
+        String value = manifest.getMainAttributes().getValue(header);
+        if (StringUtil.isEmpty(value)) {
+            return Collections.emptyList();
+        }
+        List<String> result = new ArrayList<>();
+        try {
+            for (ManifestElement element : ManifestElement.parseHeader(header, value)) {
+                if (!"optional".equals(element.getDirective("resolution"))) { //$NON-NLS-1$ //$NON-NLS-2$
+                    result.addAll(Arrays.asList(element.getValueComponents()));
+                }
+            }
+        } catch (BundleException e) {
+            // Malformed headers are common in older bundles; they only narrow the selection
+        }
+        return result;
+    }
+
 	public static String toEmbedClassifierName(String embedName) {
 		return embedName.substring(0, embedName.lastIndexOf('.')).replace('/', '$');
 	}
@@ -15,29 +15,28 @@
  */
 package org.openntf.p2.domino.updatesite;
 
-import static org.twdata.maven.mojoexecutor.MojoExecutor.artifactId;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.configuration;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.element;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.executeMojo;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.executionEnvironment;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.goal;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.groupId;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.plugin;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.version;
-
+import java.io.File;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.openntf.p2.domino.updatesite.model.BundleEmbed;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.deployment.DeploymentException;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.spi.connector.layout.RepositoryLayoutProvider;
+import org.eclipse.aether.spi.connector.transport.TransporterProvider;
 import org.openntf.p2.domino.updatesite.model.BundleInfo;
+import org.openntf.p2.domino.updatesite.tasks.BundleDeployer;
+import org.openntf.p2.domino.updatesite.tasks.DeployJournal;
 
 /**
  * Mavenizes any bundles in the provided p2 directory and deploys them to a target repository.
@@ -55,62 +54,102 @@ public class DeployMavenizedBundlesMojo extends AbstractMavenizeBundlesMojo {
 	 */
 	@Parameter(property="deploymentRepository", required=true)
 	private String deploymentRepository;
+	
+	/**
+	 * The maximum number of artifacts to deploy concurrently.
+	 * 
+	 * @since 6.1.0
+	 */
+	@Parameter(property="deployThreads", required=false, defaultValue="4")
+	private int deployThreads = 4;
+	
+	/**
+	 * The directory used to keep the journal of deployed artifacts between runs.
+	 * 
+	 * @since 6.1.0
+	 */
+	@Parameter(property="cacheDirectory", required=false, defaultValue="${user.home}/.m2/generate-domino-update-site")
+	private File cacheDirectory;
+	
+	@Component
+	private RepositorySystem repositorySystem;
+	@Component
+	private TransporterProvider transporterProvider;
+	@Component
+	private RepositoryLayoutProvider layoutProvider;
+	
+	private final List<Artifact> artifacts = new ArrayList<>();
+	private RemoteRepository repository;
+	private BundleDeployer deployer;
+	private DeployJournal journal;
+	private int skipped;
+	
+	@Override
+	protected void startBundles() throws MojoExecutionException {
+		RepositorySystemSession session = mavenSession.getRepositorySession();
+		repository = createRepository(session);
+		deployer = new BundleDeployer(repositorySystem, session, repository, deployThreads);
+		skipped = 0;
+		if(skipExisting) {
+			deployer.setProbe(transporterProvider, layoutProvider);
+			if(cacheDirectory != null) {
+				try {
+					journal = DeployJournal.open(cacheDirectory.toPath(), repository.getUrl());
+					deployer.setJournal(journal);
+				} catch(IOException e) {
+					if(getLog().isWarnEnabled()) {
+						getLog().warn(Messages.getString("DeployMavenizedBundlesMojo.unableToOpenJournal", cacheDirectory), e); //$NON-NLS-1$
+					}
+				}
+			}
+		}
+	}
 
 	@Override
 	protected void processBundle(BundleInfo bundle, List<BundleInfo> bundles, Map<String, BundleInfo> bundlesByName,
 			Path tempPom) throws MojoExecutionException {
+		artifacts.addAll(toArtifacts(bundle, tempPom));
+	}
+	
+	@Override
+	protected void completeBundles(List<BundleInfo> bundles) throws MojoExecutionException {
+		try {
+			skipped += deployer.deploy(artifacts);
+		} catch(DeploymentException e) {
+			throw new MojoExecutionException(Messages.getString("DeployMavenizedBundlesMojo.exceptionDeployingBundles", repository.getUrl()), e); //$NON-NLS-1$
+		} finally {
+			artifacts.clear();
+		}
+	}
+	
+	@Override
+	protected void finishBundles() {
+		if(skipped > 0 && getLog().isInfoEnabled()) {
+			getLog().info(Messages.getString("DeployMavenizedBundlesMojo.skippedArtifacts", skipped, repository.getUrl())); //$NON-NLS-1$
+		}
+		deployer.close();
+		deployer = null;
+		if(journal != null) {
+			try {
+				journal.close();
+			} catch(IOException e) {
+				// Every entry has already been flushed
+			}
+			journal = null;
+		}
+	}
+	
+	private RemoteRepository createRepository(RepositorySystemSession session) {
 		String[] repoBits = deploymentRepository.split("::", 3); //$NON-NLS-1$
 		if(repoBits.length != 3) {
 			throw new IllegalArgumentException(MessageFormat.format(Messages.getString("DeployMavenizedBundlesMojo.unexpectedRepositoryFormat"), deploymentRepository)); //$NON-NLS-1$
 		}
-		String repositoryId = repoBits[0];
-		String url = repoBits[2];
-		
-		// Generate extra info for embeds
-		List<String> embedFiles = new ArrayList<>();
-		List<String> embedClassifiers = new ArrayList<>();
-		for(BundleEmbed embed : bundle.getEmbeds()) {
-			String baseName = toEmbedClassifierName(embed.getName());
-			embedFiles.add(embed.getFile().toString());
-			embedClassifiers.add(baseName);
-		}
-		if(bundle.getSource() != null) {
-			embedFiles.add(bundle.getSource().toString());
-			embedClassifiers.add("sources"); //$NON-NLS-1$
-		}
-		
-		String extraFiles = String.join(",", embedFiles); //$NON-NLS-1$
-		String extraClassifiers = String.join(",", embedClassifiers); //$NON-NLS-1$
-		String extraTypes = IntStream.range(0, embedFiles.size()).mapToObj(i -> "jar").collect(Collectors.joining(",")); //$NON-NLS-1$ //$NON-NLS-2$
-		executeMojo(
-			plugin(
-				groupId("org.apache.maven.plugins"), //$NON-NLS-1$
-				artifactId("maven-deploy-plugin"), //$NON-NLS-1$
-				version("3.0.0-M1") //$NON-NLS-1$
-			),
-			goal("deploy-file"), //$NON-NLS-1$
-			configuration(
-				element("file", bundle.getFilePath()), //$NON-NLS-1$
-				element("repositoryId", repositoryId), //$NON-NLS-1$
-				element("url", url), //$NON-NLS-1$
-				element("groupId", groupId), //$NON-NLS-1$
-				element("artifactId", bundle.getArtifactId()), //$NON-NLS-1$
-				element("version", bundle.getVersion()), //$NON-NLS-1$
-				element("packaging", "jar"), //$NON-NLS-1$ //$NON-NLS-2$
-				element("pomFile", tempPom.toString()), //$NON-NLS-1$
-				
-				element("files", extraFiles), //$NON-NLS-1$
-				element("classifiers", extraClassifiers), //$NON-NLS-1$
-				element("types", extraTypes) //$NON-NLS-1$
-			),
-			executionEnvironment(
-				mavenProject,
-        		mavenSession,
-        		pluginManager
-			)
-		);
-		
+		RemoteRepository repository = new RemoteRepository.Builder(repoBits[0], repoBits[1], repoBits[2]).build();
 		
+		// Pick up credentials and proxies from settings.xml, as maven-deploy-plugin does
+		return new RemoteRepository.Builder(repository)
+			.setAuthentication(session.getAuthenticationSelector().getAuthentication(repository))
+			.setProxy(session.getProxySelector().getProxy(repository))
+			.build();
 	}
-
 }
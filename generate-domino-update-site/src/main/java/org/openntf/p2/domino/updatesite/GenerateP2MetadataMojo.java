@@ -0,0 +1,99 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.openntf.p2.domino.updatesite.tasks.GenerateP2MetadataTask;
+
+/**
+ * Writes p2 metadata for an existing directory of features and plugins, such as a
+ * hand-curated plugin drop, without a Domino installation or the Eclipse publisher.
+ *
+ * @since 6.1.0
+ */
+@Mojo(name="generateP2Metadata", requiresProject=false)
+public class GenerateP2MetadataMojo extends AbstractMojo {
+
+	/**
+	 * The repository directory, containing a "plugins" directory and optionally a
+	 * "features" directory. The metadata files are written here.
+	 */
+	@Parameter(property="dest", required=true)
+	private File dest;
+
+	/**
+	 * The number of threads used to read bundles and generate their metadata. Values
+	 * less than 1 use the number of available processors.
+	 */
+	@Parameter(property="threads", required=false, defaultValue="0")
+	private int threads = 0;
+
+	/**
+	 * Whether to keep a cache of bundle metadata in the repository directory, so
+	 * that later runs only read new or changed JARs (defaults to false).
+	 */
+	@Parameter(property="incremental", required=false, defaultValue="false")
+	private boolean incremental = false;
+
+	/**
+	 * A fixed timestamp to record in the generated p2 metadata, either as seconds
+	 * since the epoch or as an ISO-8601 date-time with offset. The current time is
+	 * used when unset.
+	 */
+	@Parameter(property="project.build.outputTimestamp", required=false, defaultValue="${project.build.outputTimestamp}")
+	private String outputTimestamp;
+
+	/**
+	 * Whether to also write XZ-compressed content.xml.xz and artifacts.xml.xz files
+	 * and a p2.index.
+	 */
+	@Parameter(property="xzMetadata", required=false, defaultValue="false")
+	private boolean xzMetadata;
+
+	@Override
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		Path destPath = dest.toPath();
+		if(!Files.isDirectory(destPath.resolve("plugins"))) { //$NON-NLS-1$
+			throw new MojoExecutionException(Messages.getString("GenerateP2MetadataMojo.unableToFindPlugins", destPath)); //$NON-NLS-1$
+		}
+
+		GenerateP2MetadataTask task = new GenerateP2MetadataTask(destPath);
+		task.setThreads(threads);
+		task.setIncremental(incremental);
+		task.setXzMetadata(xzMetadata);
+		Long timestamp = GenerateUpdateSiteMojo.parseOutputTimestamp(outputTimestamp);
+		if(timestamp != null) {
+			task.setTimestamp(timestamp);
+		}
+
+		if(getLog().isInfoEnabled()) {
+			getLog().info(Messages.getString("GenerateP2MetadataMojo.generatingMetadata", destPath)); //$NON-NLS-1$
+		}
+		try {
+			task.run();
+		} catch(Throwable t) {
+			throw new MojoExecutionException(Messages.getString("GenerateP2MetadataMojo.exceptionGeneratingMetadata", destPath), t); //$NON-NLS-1$
+		}
+	}
+}
@@ -21,6 +21,8 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
@@ -89,11 +91,88 @@ public class GenerateUpdateSiteMojo extends AbstractMojo {
 	@Parameter(property="flattenEmbeds", required=false, defaultValue="false")
 	private boolean flattenEmbeds = false;
 
+	/**
+	 * The maximum number of artifacts to copy concurrently. Values less than 1
+	 * use the number of available processors.
+	 * 
+	 * @since 6.1.0
+	 */
+	@Parameter(property="threads", required=false, defaultValue="0")
+	private int threads = 0;
+
+	/**
+	 * Whether to reuse the contents of an existing destination directory, only
+	 * copying or generating bundles whose sources have changed since the previous
+	 * run (defaults to false).
+	 * 
+	 * @since 6.1.0
+	 */
+	@Parameter(property="incremental", required=false, defaultValue="false")
+	private boolean incremental = false;
+
+	/**
+	 * The maximum number of source bundles to download concurrently from the
+	 * matching Eclipse update site (defaults to 4).
+	 * 
+	 * @since 6.1.0
+	 */
+	@Parameter(property="downloadThreads", required=false, defaultValue="4")
+	private int downloadThreads = GenerateUpdateSiteTask.DEFAULT_DOWNLOAD_THREADS;
+
+	/**
+	 * The directory used to cache downloaded Eclipse source bundles and the Eclipse
+	 * artifact index between runs.
+	 * 
+	 * @since 6.1.0
+	 */
+	@Parameter(property="cacheDirectory", required=false, defaultValue="${user.home}/.m2/generate-domino-update-site")
+	private File cacheDirectory;
+
+	/**
+	 * The maximum size of the source bundle cache in megabytes, beyond which the
+	 * least-recently-used bundles are removed. A value of 0 disables the source bundle
+	 * cache, though the Eclipse artifact index is still cached.
+	 * 
+	 * @since 6.1.0
+	 */
+	@Parameter(property="maxCacheSize", required=false, defaultValue="1024")
+	private long maxCacheSize = 1024;
+
+	/**
+	 * Whether to avoid all network access, using only source bundles already in the
+	 * cache directory (defaults to Maven's own offline setting).
+	 * 
+	 * @since 6.1.0
+	 */
+	@Parameter(property="offline", required=false, defaultValue="${settings.offline}")
+	private boolean offline;
+
+	/**
+	 * A fixed timestamp to record in the generated p2 metadata, either as seconds
+	 * since the epoch or as an ISO-8601 date-time with offset. This follows Maven's
+	 * reproducible builds convention, and the current time is used when unset.
+	 * 
+	 * @since 6.1.0
+	 */
+	@Parameter(property="project.build.outputTimestamp", required=false, defaultValue="${project.build.outputTimestamp}")
+	private String outputTimestamp;
+
+	/**
+	 * Whether to also write XZ-compressed content.xml.xz and artifacts.xml.xz files
+	 * and a p2.index, which p2 and Tycho clients download in preference to the JARs.
+	 * 
+	 * @since 6.1.0
+	 */
+	@Parameter(property="xzMetadata", required=false, defaultValue="false")
+	private boolean xzMetadata;
+
 	@Override
 	public void execute() throws MojoExecutionException, MojoFailureException {
 		Path destPath = dest.toPath();
+		// Parsed before anything is cleared, so a bad value leaves the destination alone
+		Long timestamp = parseOutputTimestamp(outputTimestamp);
 
-		if (Files.exists(destPath) && Files.isDirectory(destPath) && Objects.requireNonNull(destPath.toFile().list()).length > 0) {
+		if (!incremental && Files.exists(destPath) && Files.isDirectory(destPath) && Objects.requireNonNull(destPath.toFile().list()).length > 0) {
 		    try {
 		        FileUtils.cleanDirectory(destPath.toFile());
 		    } catch (IOException e) {
@@ -102,13 +181,13 @@ public class GenerateUpdateSiteMojo extends AbstractMojo {
 		}
 
 		if(StringUtils.isNotEmpty(srcContainer) || StringUtils.isNotEmpty(srcImageId)) {
-			executeWithDocker(destPath);
+			executeWithDocker(destPath, timestamp);
 		} else {
-			executeWithDomino(destPath);
+			executeWithDomino(destPath, timestamp);
 		}
 	}
 
-	private void executeWithDomino(Path destDir) throws MojoExecutionException {
+	private void executeWithDomino(Path destDir, Long timestamp) throws MojoExecutionException {
 		Path dominoDir;
 		if(src != null) {
 			dominoDir = src.toPath();
@@ -120,13 +199,13 @@ public class GenerateUpdateSiteMojo extends AbstractMojo {
 		}
 
 		try {
-			new GenerateUpdateSiteTask(dominoDir, destDir, flattenEmbeds, onlyDots, getLog()).run();
+			createTask(dominoDir, destDir, timestamp).run();
 		} catch(Throwable t) {
 			throw new MojoExecutionException(Messages.getString("GenerateUpdateSiteMojo.exceptionGeneratingUpdateSite"), t); //$NON-NLS-1$
 		}
 	}
 
-	private void executeWithDocker(Path destDir) throws MojoExecutionException {
+	private void executeWithDocker(Path destDir, Long timestamp) throws MojoExecutionException {
 		Builder dockerBuilder = DockerFileManager.newBuilder()
 		.withImage(srcImageId)
 		.withContainer(srcContainer);
@@ -135,13 +214,48 @@ public class GenerateUpdateSiteMojo extends AbstractMojo {
 
 			Path localPath = extractDockerContent(dockerFileManager); //$NON-NLS-1$
 
-			new GenerateUpdateSiteTask(localPath, destDir, flattenEmbeds, onlyDots, getLog()).run();
+			createTask(localPath, destDir, timestamp).run();
 		} catch(Throwable t) {
 			throw new MojoExecutionException(Messages.getString("GenerateUpdateSiteMojo.dockerHostIssue", srcContainer, srcImageId), t); //$NON-NLS-1$
 		}
 
 	}
 
+	/**
+	 * Parses a {@code project.build.outputTimestamp}-style value, where a single
+	 * character is taken to mean that no timestamp is set.
+	 * 
+	 * @throws MojoExecutionException if the value is neither a number nor an ISO-8601
+	 *         date-time with offset
+	 */
+	static Long parseOutputTimestamp(String value) throws MojoExecutionException {
+		if(StringUtils.isEmpty(value) || value.length() < 2) {
+			return null;
+		}
+		try {
+			if(StringUtils.isNumeric(value)) {
+				return Math.multiplyExact(Long.parseLong(value), 1000L);
+			}
+			return OffsetDateTime.parse(value).toInstant().toEpochMilli();
+		} catch(DateTimeParseException | ArithmeticException | NumberFormatException e) {
+			throw new MojoExecutionException(Messages.getString("GenerateUpdateSiteMojo.invalidOutputTimestamp", value), e); //$NON-NLS-1$
+		}
+	}
+
+	private GenerateUpdateSiteTask createTask(Path dominoDir, Path destDir, Long timestamp) {
+		GenerateUpdateSiteTask task = new GenerateUpdateSiteTask(dominoDir, destDir, flattenEmbeds, onlyDots, getLog());
+		task.setThreads(threads);
+		task.setIncremental(incremental);
+		task.setDownloadThreads(downloadThreads);
+		if(cacheDirectory != null) {
+			task.setCacheDir(cacheDirectory.toPath(), maxCacheSize * 1024 * 1024);
+		}
+		task.setOffline(offline);
+		task.setOutputTimestamp(timestamp);
+		task.setXzMetadata(xzMetadata);
+		return task;
+	}
+
 	// This mothod will extract the content of the Docker container to a temporary directory
 	private Path extractDockerContent(DockerFileManager dfm) throws DockerFileManagerException {
 		Log log = getLog();
@@ -15,29 +15,22 @@
  */
 package org.openntf.p2.domino.updatesite;
 
-import static org.twdata.maven.mojoexecutor.MojoExecutor.artifactId;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.configuration;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.element;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.executeMojo;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.executionEnvironment;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.goal;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.groupId;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.plugin;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.version;
-
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.openntf.p2.domino.updatesite.model.BundleEmbed;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.installation.InstallationException;
 import org.openntf.p2.domino.updatesite.model.BundleInfo;
-import org.twdata.maven.mojoexecutor.MojoExecutor;
+import org.openntf.p2.domino.updatesite.tasks.BundleInstaller;
 
 /**
  * Mavenizes any bundles in the provided XPages p2 directory.
@@ -57,93 +50,40 @@ public class MavenizeBundlesMojo extends AbstractMavenizeBundlesMojo {
 	@Parameter(property="localRepositoryPath", required=false)
 	private File localRepositoryPath;
 	
+	@Component
+	private RepositorySystem repositorySystem;
+	
+	private final List<Artifact> artifacts = new ArrayList<>();
+	private BundleInstaller installer;
+	
+	@Override
+	protected void startBundles() throws MojoExecutionException {
+		installer = new BundleInstaller(repositorySystem, mavenSession.getRepositorySession(), localRepositoryPath);
+		installer.setSkipExisting(skipExisting);
+	}
+	
 	@Override
 	protected void processBundle(BundleInfo bundle, List<BundleInfo> bundles, Map<String, BundleInfo> bundlesByName,
 			Path tempPom) throws MojoExecutionException {
-		executeMojo(
-			plugin(
-				groupId("org.apache.maven.plugins"), //$NON-NLS-1$
-				artifactId("maven-install-plugin"), //$NON-NLS-1$
-				version("2.5.2") //$NON-NLS-1$
-			),
-			goal("install-file"), //$NON-NLS-1$
-			configuration(
-				element("file", bundle.getFilePath()), //$NON-NLS-1$
-				element("groupId", groupId), //$NON-NLS-1$
-				element("artifactId", bundle.getArtifactId()), //$NON-NLS-1$
-				element("version", bundle.getVersion()), //$NON-NLS-1$
-				element("packaging", "jar"), //$NON-NLS-1$ //$NON-NLS-2$
-				element("pomFile", tempPom.toString()) //$NON-NLS-1$
-			),
-			executionEnvironment(
-				mavenProject,
-        		mavenSession,
-        		pluginManager
-			)
-		);
-		
-		// Generate additional executions for each embed
-		for(BundleEmbed embed : bundle.getEmbeds()) {
-			String baseName = embed.getName().substring(0, embed.getName().lastIndexOf('.')).replace('/', '$');
-			
-			List<MojoExecutor.Element> elements = new ArrayList<>(Arrays.asList(
-				element("file", embed.getFile().toString()), //$NON-NLS-1$
-				element("groupId", groupId), //$NON-NLS-1$
-				element("artifactId", bundle.getArtifactId()), //$NON-NLS-1$
-				element("version", bundle.getVersion()), //$NON-NLS-1$
-				element("packaging", "jar"), //$NON-NLS-1$ //$NON-NLS-2$
-				element("classifier", baseName) //$NON-NLS-1$
-			));
-			if(this.localRepositoryPath != null) {
-				element("localRepositoryPath", this.localRepositoryPath.toString()); //$NON-NLS-1$
-			}
-			executeMojo(
-				plugin(
-					groupId("org.apache.maven.plugins"), //$NON-NLS-1$
-					artifactId("maven-install-plugin"), //$NON-NLS-1$
-					version("2.5.2") //$NON-NLS-1$
-				),
-				goal("install-file"), //$NON-NLS-1$
-				configuration(
-					elements.toArray(new MojoExecutor.Element[elements.size()])
-				),
-				executionEnvironment(
-					mavenProject,
-	        		mavenSession,
-	        		pluginManager
-				)
-			);
-		}
-		
-		// Same goes for the source bundle if present
-		if(bundle.getSource() != null) {
-			List<MojoExecutor.Element> elements = new ArrayList<>(Arrays.asList(
-				element("file", bundle.getSource().toString()), //$NON-NLS-1$
-				element("groupId", groupId), //$NON-NLS-1$
-				element("artifactId", bundle.getArtifactId()), //$NON-NLS-1$
-				element("version", bundle.getVersion()), //$NON-NLS-1$
-				element("packaging", "jar"), //$NON-NLS-1$ //$NON-NLS-2$
-				element("classifier", "sources") //$NON-NLS-1$ //$NON-NLS-2$
-			));
-			if(this.localRepositoryPath != null) {
-				element("localRepositoryPath", this.localRepositoryPath.toString()); //$NON-NLS-1$
+		artifacts.addAll(toArtifacts(bundle, tempPom));
+	}
+	
+	@Override
+	protected void completeBundles(List<BundleInfo> bundles) throws MojoExecutionException {
+		try {
+			int skipped = installer.install(artifacts);
+			if(skipped > 0 && getLog().isInfoEnabled()) {
+				getLog().info(Messages.getString("MavenizeBundlesMojo.skippedArtifacts", skipped, installer.getLocalRepository())); //$NON-NLS-1$
 			}
-			executeMojo(
-				plugin(
-					groupId("org.apache.maven.plugins"), //$NON-NLS-1$
-					artifactId("maven-install-plugin"), //$NON-NLS-1$
-					version("2.5.2") //$NON-NLS-1$
-				),
-				goal("install-file"), //$NON-NLS-1$
-				configuration(
-					elements.toArray(new MojoExecutor.Element[elements.size()])
-				),
-				executionEnvironment(
-					mavenProject,
-	        		mavenSession,
-	        		pluginManager
-				)
-			);
+		} catch(InstallationException | IOException e) {
+			throw new MojoExecutionException(Messages.getString("MavenizeBundlesMojo.exceptionInstallingBundles"), e); //$NON-NLS-1$
+		} finally {
+			artifacts.clear();
 		}
 	}
+	
+	@Override
+	protected void finishBundles() {
+		installer = null;
+	}
 }
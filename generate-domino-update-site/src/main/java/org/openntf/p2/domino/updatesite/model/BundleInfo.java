@@ -17,6 +17,7 @@ package org.openntf.p2.domino.updatesite.model;
 
 import java.nio.file.Path;
 import java.text.MessageFormat;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -30,9 +31,24 @@ public class BundleInfo {
     private final List<String> requires;
     private final List<BundleEmbed> embeds;
     private final Path source;
+    private final String fragmentHost;
+    private final List<String> importedPackages;
+    private final List<String> exportedPackages;
 
     public BundleInfo(String name, String vendor, String artifactId, String version, String filePath, List<String> requires,
         List<BundleEmbed> embeds, Path source) {
+        this(name, vendor, artifactId, version, filePath, requires, embeds, source, null, Collections.emptyList(), Collections.emptyList());
+    }
+
+    /**
+     * @param fragmentHost the symbolic name of the fragment's host bundle, or {@code null} if
+     *        the bundle is not a fragment
+     * @param importedPackages the packages named in {@code Import-Package}, excluding optional imports
+     * @param exportedPackages the packages named in {@code Export-Package}
+     * @since 6.1.0
+     */
+    public BundleInfo(String name, String vendor, String artifactId, String version, String filePath, List<String> requires,
+        List<BundleEmbed> embeds, Path source, String fragmentHost, List<String> importedPackages, List<String> exportedPackages) {
         this.name = name;
         this.vendor = vendor;
         this.artifactId = artifactId;
@@ -41,6 +57,9 @@ public class BundleInfo {
         this.requires = requires;
         this.embeds = embeds;
         this.source = source;
+        this.fragmentHost = fragmentHost;
+        this.importedPackages = importedPackages;
+        this.exportedPackages = exportedPackages;
     }
 
     public String getName() {
@@ -75,9 +94,30 @@ public class BundleInfo {
         return source;
     }
 
+    /**
+     * @since 6.1.0
+     */
+    public String getFragmentHost() {
+        return fragmentHost;
+    }
+
+    /**
+     * @since 6.1.0
+     */
+    public List<String> getImportedPackages() {
+        return importedPackages;
+    }
+
+    /**
+     * @since 6.1.0
+     */
+    public List<String> getExportedPackages() {
+        return exportedPackages;
+    }
+
     @Override
     public String toString() {
-        return MessageFormat.format("[{0}: name={1}, vendor={2}, artifactId={3}, version={4}, filePath={5}, requires={6}, embeds={7}, source={8}]", //$NON-NLS-1$
+        return MessageFormat.format("[{0}: name={1}, vendor={2}, artifactId={3}, version={4}, filePath={5}, requires={6}, embeds={7}, source={8}, fragmentHost={9}, importedPackages={10}, exportedPackages={11}]", //$NON-NLS-1$
                                     getClass().getSimpleName(),
                                     name,
                                     vendor,
@@ -86,13 +126,16 @@ public class BundleInfo {
                                     filePath,
                                     requires,
                                     embeds,
-                                    source
+                                    source,
+                                    fragmentHost,
+                                    importedPackages,
+                                    exportedPackages
         );
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(name, vendor, artifactId, version, filePath, requires, embeds, source);
+        return Objects.hash(name, vendor, artifactId, version, filePath, requires, embeds, source, fragmentHost, importedPackages, exportedPackages);
     }
 
     @Override
@@ -111,6 +154,9 @@ public class BundleInfo {
             Objects.equals(filePath, that.filePath) &&
             Objects.equals(requires, that.requires) &&
             Objects.equals(embeds, that.embeds) &&
-            Objects.equals(source, that.source);
+            Objects.equals(source, that.source) &&
+            Objects.equals(fragmentHost, that.fragmentHost) &&
+            Objects.equals(importedPackages, that.importedPackages) &&
+            Objects.equals(exportedPackages, that.exportedPackages);
     }
 }
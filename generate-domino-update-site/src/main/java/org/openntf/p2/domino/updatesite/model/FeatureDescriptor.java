@@ -0,0 +1,126 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.model;
+
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Immutable description of a feature JAR in a generated site, holding the values
+ * from its {@code feature.xml} that are needed to write its p2 metadata.
+ *
+ * <p>Text values are as they appear in the feature, before any {@code %key}
+ * references are resolved against {@link #getLocalization()}. Missing attributes are
+ * empty strings and missing elements are {@code null}.</p>
+ *
+ * @since 6.1.0
+ */
+public class FeatureDescriptor {
+
+    private final Path file;
+    private final String id;
+    private final String version;
+    private final String label;
+    private final String description;
+    private final String descriptionUrl;
+    private final String license;
+    private final String licenseUrl;
+    private final String copyright;
+    private final String copyrightUrl;
+    private final Map<String, String> localization;
+    private final long size;
+    private final String contentType;
+
+    public FeatureDescriptor(Path file, String id, String version, String label, String description, String descriptionUrl,
+        String license, String licenseUrl, String copyright, String copyrightUrl, Map<String, String> localization, long size,
+        String contentType) {
+        this.file = file;
+        this.id = id;
+        this.version = version;
+        this.label = label;
+        this.description = description;
+        this.descriptionUrl = descriptionUrl;
+        this.license = license;
+        this.licenseUrl = licenseUrl;
+        this.copyright = copyright;
+        this.copyrightUrl = copyrightUrl;
+        this.localization = Collections.unmodifiableMap(localization);
+        this.size = size;
+        this.contentType = contentType;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getDescriptionUrl() {
+        return descriptionUrl;
+    }
+
+    public String getLicense() {
+        return license;
+    }
+
+    public String getLicenseUrl() {
+        return licenseUrl;
+    }
+
+    public String getCopyright() {
+        return copyright;
+    }
+
+    public String getCopyrightUrl() {
+        return copyrightUrl;
+    }
+
+    public Map<String, String> getLocalization() {
+        return localization;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the probed content type of the JAR, or {@code null} if unknown
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public String toString() {
+        return MessageFormat.format("[{0}: id={1}, version={2}]", getClass().getSimpleName(), id, version); //$NON-NLS-1$
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.model;
+
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable description of a plugin JAR in a generated site, holding everything
+ * needed to write its p2 metadata so that the JAR is only read once.
+ *
+ * @since 6.1.0
+ */
+public class PluginDescriptor {
+
+    private final Path file;
+    private final Map<String, String> headers;
+    private final String rawManifest;
+    private final Map<String, String> localization;
+    private final long size;
+
+    /**
+     * @param file the plugin JAR
+     * @param headers the main attributes of the bundle manifest
+     * @param rawManifest the unparsed text of the bundle manifest
+     * @param localization the contents of the bundle's localization properties
+     * @param size the size of the JAR in bytes
+     */
+    public PluginDescriptor(Path file, Map<String, String> headers, String rawManifest, Map<String, String> localization, long size) {
+        this.file = file;
+        Map<String, String> caseInsensitive = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        caseInsensitive.putAll(headers);
+        this.headers = Collections.unmodifiableMap(caseInsensitive);
+        this.rawManifest = rawManifest;
+        this.localization = Collections.unmodifiableMap(localization);
+        this.size = size;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @param name the name of a manifest header, matched case-insensitively
+     * @return the value of the header, or {@code null} if it is not present
+     */
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public String getRawManifest() {
+        return rawManifest;
+    }
+
+    public Map<String, String> getLocalization() {
+        return localization;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the bundle symbolic name, without any directives
+     */
+    public String getSymbolicName() {
+        String symbolicName = getHeader("Bundle-SymbolicName"); //$NON-NLS-1$
+        int semiIndex = symbolicName.indexOf(';');
+        if (semiIndex > -1) {
+            symbolicName = symbolicName.substring(0, semiIndex);
+        }
+        return symbolicName;
+    }
+
+    public String getVersion() {
+        return getHeader("Bundle-Version"); //$NON-NLS-1$
+    }
+
+    @Override
+    public String toString() {
+        return MessageFormat.format("[{0}: file={1}]", getClass().getSimpleName(), file); //$NON-NLS-1$
+    }
+}
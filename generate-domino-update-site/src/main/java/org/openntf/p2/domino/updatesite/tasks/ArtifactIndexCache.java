@@ -0,0 +1,169 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.tasks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.maven.plugin.logging.Log;
+import org.openntf.p2.domino.updatesite.Messages;
+import org.openntf.p2.domino.updatesite.util.HashUtil;
+
+/**
+ * Persistent cache of the {@link EclipseArtifactIndex} for a remote repository, along
+ * with the HTTP validators needed to revalidate it with a conditional request.
+ *
+ * <p>The index is stored in its compact form, so a revalidated or offline run skips
+ * both the download and the decompression of {@code artifacts.xml.xz}.</p>
+ *
+ * @since 6.1.0
+ */
+public class ArtifactIndexCache {
+	private static final String INDEX_FILE = "artifacts.idx.gz"; //$NON-NLS-1$
+	private static final String VALIDATORS_FILE = "validators.properties"; //$NON-NLS-1$
+	private static final String PROP_URL = "url"; //$NON-NLS-1$
+	private static final String PROP_ETAG = "etag"; //$NON-NLS-1$
+	private static final String PROP_LAST_MODIFIED = "lastModified"; //$NON-NLS-1$
+
+	private final Path dir;
+	private final String repositoryUrl;
+	private final Log log;
+
+	/**
+	 * @param cacheDir the root cache directory, within which an {@code index}
+	 *        directory will be used
+	 * @param repositoryUrl the URL of the repository the index belongs to
+	 * @param log the log to report problems to
+	 */
+	public ArtifactIndexCache(Path cacheDir, String repositoryUrl, Log log) {
+		this.dir = cacheDir.resolve("index").resolve(hash(repositoryUrl)); //$NON-NLS-1$
+		this.repositoryUrl = repositoryUrl;
+		this.log = log;
+	}
+
+	/**
+	 * @return the cached index and its validators, or an empty value if there is no
+	 *         usable cached copy
+	 */
+	public Optional<Entry> load() {
+		Path indexFile = dir.resolve(INDEX_FILE);
+		Path validatorsFile = dir.resolve(VALIDATORS_FILE);
+		if(!Files.isRegularFile(indexFile) || !Files.isRegularFile(validatorsFile)) {
+			return Optional.empty();
+		}
+		try {
+			Properties validators = new Properties();
+			try(InputStream is = Files.newInputStream(validatorsFile)) {
+				validators.load(is);
+			}
+			if(!repositoryUrl.equals(validators.getProperty(PROP_URL))) {
+				return Optional.empty();
+			}
+			EclipseArtifactIndex index;
+			try(InputStream is = new GZIPInputStream(Files.newInputStream(indexFile))) {
+				index = EclipseArtifactIndex.readCompact(is);
+			}
+			return Optional.of(new Entry(index, validators.getProperty(PROP_ETAG), validators.getProperty(PROP_LAST_MODIFIED)));
+		} catch(IOException e) {
+			if(log.isWarnEnabled()) {
+				log.warn(Messages.getString("ArtifactIndexCache.unableToReadIndex", indexFile), e); //$NON-NLS-1$
+			}
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Replaces the cached index. Failures are logged and otherwise ignored.
+	 *
+	 * @param index the index to store
+	 * @param etag the {@code ETag} of the response the index was read from, or {@code null}
+	 * @param lastModified the {@code Last-Modified} value of the response, or {@code null}
+	 */
+	public void store(EclipseArtifactIndex index, String etag, String lastModified) {
+		try {
+			Files.createDirectories(dir);
+			Path indexTemp = Files.createTempFile(dir, INDEX_FILE, ".tmp"); //$NON-NLS-1$
+			Path validatorsTemp = Files.createTempFile(dir, VALIDATORS_FILE, ".tmp"); //$NON-NLS-1$
+			try {
+				try(OutputStream os = new GZIPOutputStream(Files.newOutputStream(indexTemp))) {
+					index.write(os);
+				}
+				Properties validators = new Properties();
+				validators.setProperty(PROP_URL, repositoryUrl);
+				if(etag != null) {
+					validators.setProperty(PROP_ETAG, etag);
+				}
+				if(lastModified != null) {
+					validators.setProperty(PROP_LAST_MODIFIED, lastModified);
+				}
+				try(OutputStream os = Files.newOutputStream(validatorsTemp)) {
+					validators.store(os, null);
+				}
+
+				// Replace the validators last so they never describe a stale index
+				Files.deleteIfExists(dir.resolve(VALIDATORS_FILE));
+				Files.move(indexTemp, dir.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING);
+				Files.move(validatorsTemp, dir.resolve(VALIDATORS_FILE), StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Files.deleteIfExists(indexTemp);
+				Files.deleteIfExists(validatorsTemp);
+			}
+		} catch(IOException e) {
+			if(log.isWarnEnabled()) {
+				log.warn(Messages.getString("ArtifactIndexCache.unableToWriteIndex", dir), e); //$NON-NLS-1$
+			}
+		}
+	}
+
+	private static String hash(String value) {
+		return HashUtil.sha256(value).substring(0, 16);
+	}
+
+	/**
+	 * A cached index and the validators of the response it was read from.
+	 */
+	public static class Entry {
+		private final EclipseArtifactIndex index;
+		private final String etag;
+		private final String lastModified;
+
+		public Entry(EclipseArtifactIndex index, String etag, String lastModified) {
+			this.index = index;
+			this.etag = etag;
+			this.lastModified = lastModified;
+		}
+
+		public EclipseArtifactIndex getIndex() {
+			return index;
+		}
+
+		public String getETag() {
+			return etag;
+		}
+
+		public String getLastModified() {
+			return lastModified;
+		}
+	}
+}
@@ -0,0 +1,258 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.tasks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.deployment.DeployRequest;
+import org.eclipse.aether.deployment.DeploymentException;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.spi.connector.layout.RepositoryLayout;
+import org.eclipse.aether.spi.connector.layout.RepositoryLayoutProvider;
+import org.eclipse.aether.spi.connector.transport.GetTask;
+import org.eclipse.aether.spi.connector.transport.Transporter;
+import org.eclipse.aether.spi.connector.transport.TransporterProvider;
+import org.eclipse.aether.transfer.NoRepositoryLayoutException;
+import org.eclipse.aether.transfer.NoTransporterException;
+import org.openntf.p2.domino.updatesite.util.HashUtil;
+
+/**
+ * Deploys artifacts to a remote repository using several concurrent requests.
+ *
+ * <p>Artifacts are grouped by group and artifact ID, and each version of an artifact is
+ * deployed with a single {@link DeployRequest}. The versions of one artifact are deployed
+ * in sequence, so {@code maven-metadata.xml} is written once per artifact and version
+ * and is never updated by two requests at once. All requests share the same session,
+ * and so the same transport connection pool. Checksums are uploaded by the resolver
+ * alongside each file.</p>
+ *
+ * <p>With a {@link #setJournal journal} or a {@link #setProbe probe} in place, artifacts
+ * that are already in the repository with the same SHA-1 checksum are skipped. This
+ * lets a run that failed part of the way through pick up where it left off.</p>
+ *
+ * <p>The thread pool and the transporter used to probe the repository are created by
+ * the first call to {@link #deploy} and reused by later calls, so one deployer should
+ * be kept for a whole run and {@link #close closed} at the end of it.</p>
+ *
+ * @since 6.1.0
+ */
+public class BundleDeployer implements Closeable {
+	private final RepositorySystem repositorySystem;
+	private final RepositorySystemSession session;
+	private final RemoteRepository repository;
+	private final int threads;
+	private DeployJournal journal;
+	private TransporterProvider transporterProvider;
+	private RepositoryLayoutProvider layoutProvider;
+	private ExecutorService executor;
+	private Transporter transporter;
+	private RepositoryLayout layout;
+
+	/**
+	 * @param repositorySystem the repository system to deploy with
+	 * @param session the session to share between all requests
+	 * @param repository the target repository
+	 * @param threads the maximum number of concurrent deploy requests
+	 */
+	public BundleDeployer(RepositorySystem repositorySystem, RepositorySystemSession session, RemoteRepository repository, int threads) {
+		this.repositorySystem = repositorySystem;
+		this.session = session;
+		this.repository = repository;
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Sets a journal to skip artifacts already recorded as deployed and to record newly
+	 * deployed ones in.
+	 *
+	 * @param journal the journal to use, or {@code null} to not use one
+	 */
+	public void setJournal(DeployJournal journal) {
+		this.journal = journal;
+	}
+
+	/**
+	 * Enables checking the repository for the {@code .sha1} file of each artifact that
+	 * is not in the journal, skipping the artifact when the checksums match.
+	 *
+	 * @param transporterProvider the provider for the transporter used to read checksums
+	 * @param layoutProvider the provider for the layout used to locate checksums
+	 */
+	public void setProbe(TransporterProvider transporterProvider, RepositoryLayoutProvider layoutProvider) {
+		this.transporterProvider = transporterProvider;
+		this.layoutProvider = layoutProvider;
+	}
+
+	/**
+	 * Deploys the given artifacts, waiting until all requests have finished. This may
+	 * be called several times, such as once for each chunk of a larger run.
+	 *
+	 * @param artifacts the artifacts to deploy, with their files set
+	 * @return the number of artifacts skipped because they were already present
+	 * @throws DeploymentException if any artifact could not be deployed
+	 */
+	public int deploy(Collection<Artifact> artifacts) throws DeploymentException {
+		// The resolver only records one version per artifact in a request's metadata
+		Map<String, Map<String, List<Artifact>>> groups = new LinkedHashMap<>();
+		for(Artifact artifact : artifacts) {
+			groups.computeIfAbsent(artifact.getGroupId() + ':' + artifact.getArtifactId(), key -> new LinkedHashMap<>())
+				.computeIfAbsent(artifact.getVersion(), key -> new ArrayList<>())
+				.add(artifact);
+		}
+		if(groups.isEmpty()) {
+			return 0;
+		}
+
+		if(transporterProvider != null && transporter == null) {
+			try {
+				layout = layoutProvider.newRepositoryLayout(session, repository);
+				transporter = transporterProvider.newTransporter(session, repository);
+			} catch(NoTransporterException | NoRepositoryLayoutException e) {
+				throw new DeploymentException(e.getMessage(), e);
+			}
+		}
+		if(executor == null) {
+			AtomicInteger threadCount = new AtomicInteger();
+			executor = Executors.newFixedThreadPool(threads, r -> {
+				Thread t = new Thread(r, "generate-domino-update-site-deploy-" + threadCount.incrementAndGet()); //$NON-NLS-1$
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		Transporter probeTransporter = transporter;
+		RepositoryLayout probeLayout = layout;
+		AtomicInteger skipped = new AtomicInteger();
+
+		List<Future<?>> futures = new ArrayList<>(groups.size());
+		try {
+			for(Map<String, List<Artifact>> versions : groups.values()) {
+				futures.add(executor.submit(() -> {
+					for(List<Artifact> version : versions.values()) {
+						List<Artifact> changed = new ArrayList<>(version.size());
+						Map<Artifact, String> checksums = new HashMap<>();
+						for(Artifact artifact : version) {
+							if(journal == null && probeTransporter == null) {
+								changed.add(artifact);
+								continue;
+							}
+							String sha1 = HashUtil.sha1(artifact.getFile().toPath());
+							checksums.put(artifact, sha1);
+							if(isPresent(artifact, sha1, probeTransporter, probeLayout)) {
+								skipped.incrementAndGet();
+							} else {
+								changed.add(artifact);
+							}
+						}
+						if(changed.isEmpty()) {
+							continue;
+						}
+
+						DeployRequest request = new DeployRequest();
+						request.setRepository(repository);
+						request.setArtifacts(changed);
+						repositorySystem.deploy(session, request);
+						if(journal != null) {
+							for(Artifact artifact : changed) {
+								journal.record(artifact, checksums.get(artifact));
+							}
+						}
+					}
+					return null;
+				}));
+			}
+			for(Future<?> future : futures) {
+				future.get();
+			}
+			return skipped.get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DeploymentException(e.toString(), e);
+		} catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof DeploymentException) {
+				throw (DeploymentException)cause;
+			} else if(cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			} else {
+				throw new DeploymentException(String.valueOf(cause), cause);
+			}
+		} finally {
+			// Stop whatever is left of this call after a failure, leaving the pool for the next
+			for(Future<?> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Stops the deploy threads and closes the transporter used to probe the repository.
+	 * The journal, if any, is left open for its owner to close.
+	 */
+	@Override
+	public void close() {
+		if(executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+		if(transporter != null) {
+			transporter.close();
+			transporter = null;
+		}
+	}
+
+	private boolean isPresent(Artifact artifact, String sha1, Transporter transporter, RepositoryLayout layout) throws IOException {
+		if(journal != null && journal.contains(artifact, sha1)) {
+			return true;
+		}
+		if(transporter == null) {
+			return false;
+		}
+
+		URI location = layout.getLocation(artifact, true);
+		GetTask task = new GetTask(URI.create(location.toString() + ".sha1")); //$NON-NLS-1$
+		try {
+			transporter.get(task);
+		} catch(Exception e) {
+			// A missing or unreadable checksum means that the artifact is deployed again
+			return false;
+		}
+		// Some tools write the file name after the checksum
+		String remote = task.getDataString().trim().split("\\s+", 2)[0]; //$NON-NLS-1$
+		if(!sha1.equalsIgnoreCase(remote)) {
+			return false;
+		}
+		if(journal != null) {
+			journal.record(artifact, sha1);
+		}
+		return true;
+	}
+}
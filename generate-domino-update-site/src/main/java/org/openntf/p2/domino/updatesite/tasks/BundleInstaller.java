@@ -0,0 +1,128 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.tasks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.installation.InstallRequest;
+import org.eclipse.aether.installation.InstallationException;
+import org.eclipse.aether.repository.LocalRepository;
+import org.openntf.p2.domino.updatesite.util.HashUtil;
+
+/**
+ * Installs artifacts into a local repository in as few resolver requests as possible.
+ *
+ * <p>All artifacts go into one {@link InstallRequest}, so {@code maven-metadata-local.xml}
+ * is written once per artifact. The resolver only records one version per artifact in
+ * each request's metadata, though, so additional versions of an artifact go into later
+ * requests.</p>
+ *
+ * @since 6.1.0
+ */
+public class BundleInstaller {
+	private final RepositorySystem repositorySystem;
+	private final RepositorySystemSession session;
+	private boolean skipExisting;
+
+	/**
+	 * @param repositorySystem the repository system to install with
+	 * @param session the session to install with
+	 * @param localRepository an alternate local repository to install into, or
+	 *        {@code null} to use the session's own
+	 */
+	public BundleInstaller(RepositorySystem repositorySystem, RepositorySystemSession session, File localRepository) {
+		this.repositorySystem = repositorySystem;
+		if(localRepository == null) {
+			this.session = session;
+		} else {
+			DefaultRepositorySystemSession result = new DefaultRepositorySystemSession(session);
+			result.setLocalRepositoryManager(repositorySystem.newLocalRepositoryManager(result, new LocalRepository(localRepository)));
+			this.session = result;
+		}
+	}
+
+	/**
+	 * Sets whether to skip artifacts already installed with the same contents.
+	 *
+	 * @param skipExisting whether to skip installed artifacts
+	 */
+	public void setSkipExisting(boolean skipExisting) {
+		this.skipExisting = skipExisting;
+	}
+
+	/**
+	 * @return the base directory of the local repository artifacts are installed into
+	 */
+	public File getLocalRepository() {
+		return session.getLocalRepository().getBasedir();
+	}
+
+	/**
+	 * Installs the given artifacts.
+	 *
+	 * @param artifacts the artifacts to install, with their files set
+	 * @return the number of artifacts skipped because they were already installed
+	 * @throws InstallationException if any artifact could not be installed
+	 * @throws IOException if there is a problem comparing an artifact with the installed copy
+	 */
+	public int install(Collection<Artifact> artifacts) throws InstallationException, IOException {
+		List<Artifact> changed = new ArrayList<>(artifacts.size());
+		for(Artifact artifact : artifacts) {
+			if(!skipExisting || !isInstalled(artifact)) {
+				changed.add(artifact);
+			}
+		}
+
+		List<List<Artifact>> batches = new ArrayList<>();
+		Map<String, Map<String, Integer>> batchIndexes = new HashMap<>();
+		for(Artifact artifact : changed) {
+			Map<String, Integer> versions = batchIndexes.computeIfAbsent(artifact.getGroupId() + ':' + artifact.getArtifactId(), key -> new HashMap<>());
+			int index = versions.computeIfAbsent(artifact.getVersion(), version -> versions.size());
+			if(index == batches.size()) {
+				batches.add(new ArrayList<>());
+			}
+			batches.get(index).add(artifact);
+		}
+
+		for(List<Artifact> batch : batches) {
+			InstallRequest request = new InstallRequest();
+			request.setArtifacts(batch);
+			repositorySystem.install(session, request);
+		}
+		return artifacts.size() - changed.size();
+	}
+
+	private boolean isInstalled(Artifact artifact) throws IOException {
+		Path installed = getLocalRepository().toPath().resolve(session.getLocalRepositoryManager().getPathForLocalArtifact(artifact));
+		Path file = artifact.getFile().toPath();
+		if(!Files.isRegularFile(installed) || Files.size(installed) != Files.size(file)) {
+			return false;
+		}
+		return HashUtil.sha1(installed).equals(HashUtil.sha1(file));
+	}
+}
@@ -0,0 +1,222 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.tasks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Optional;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.eclipse.osgi.util.ManifestElement;
+import org.openntf.p2.domino.updatesite.model.BundleEmbed;
+import org.openntf.p2.domino.updatesite.model.BundleInfo;
+import org.openntf.p2.domino.updatesite.util.JarWriter;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Version;
+
+import com.ibm.commons.util.StringUtil;
+
+/**
+ * Writes the temporary files for a bundle being mavenized to a {@link MavenizeWorkspace}:
+ * a copy of the bundle with a patched manifest and its extracted embedded JARs.
+ *
+ * <p>The copy starts with the patched manifest, followed by every other entry of the
+ * original in physical order, copied without recompressing it. The manifest and any
+ * generated directory entries take the modification time of the original manifest,
+ * so the same bundle always produces the same copy.</p>
+ *
+ * @since 6.1.0
+ */
+public class BundleMaterializer {
+	private static final String NOTES_API_PREFIX = "com.ibm.notes.java.api_"; //$NON-NLS-1$
+	private static final String NOTES_FRAGMENT_PREFIX = "com.ibm.notes.java.api.win32.linux_"; //$NON-NLS-1$
+
+	private final MavenizeWorkspace workspace;
+
+	/**
+	 * @param workspace the workspace to create the temporary files in
+	 */
+	public BundleMaterializer(MavenizeWorkspace workspace) {
+		this.workspace = workspace;
+	}
+
+	/**
+	 * Writes the temporary files for a bundle.
+	 *
+	 * @param bundle the bundle, whose file path is still the original JAR
+	 * @return a copy of {@code bundle} referring to the temporary files
+	 * @throws IOException if there is a problem reading the bundle or writing the files
+	 * @throws BundleException if the bundle's {@code Require-Bundle} header cannot be parsed
+	 */
+	public BundleInfo materialize(BundleInfo bundle) throws IOException, BundleException {
+		Path path = Paths.get(bundle.getFilePath());
+		try(JarFile jarFile = new JarFile(path.toFile())) {
+			// Extract the embedded jars to the workspace
+			List<BundleEmbed> embeds = new ArrayList<>();
+			for(String cpEntry : findEmbedEntries(jarFile, jarFile.getManifest())) {
+				String embedName = toEmbedName(cpEntry);
+				Path embedFile = workspace.newFile(embedName, ".jar"); //$NON-NLS-1$
+				try(InputStream embedIs = jarFile.getInputStream(jarFile.getJarEntry(cpEntry))) {
+					Files.copy(embedIs, embedFile, StandardCopyOption.REPLACE_EXISTING);
+				}
+				embeds.add(new BundleEmbed(embedName, embedFile));
+			}
+
+			// Create a copy of the JAR in a temp location to tweak the requirements, copying
+			//   all other entries as-is without recompressing them
+			Path tempFile = workspace.newFile(path.getFileName().toString(), ".jar"); //$NON-NLS-1$
+			try(ZipFile zip = ZipFile.builder().setPath(path).get(); JarWriter jar = new JarWriter(tempFile)) {
+				ZipArchiveEntry manifestEntry = zip.getEntry(JarFile.MANIFEST_NAME);
+				if(manifestEntry != null) {
+					// Keep the copy reproducible, so that unchanged bundles can be skipped on later runs
+					jar.setTime(manifestEntry.getTime());
+					Manifest tempManifest;
+					try(InputStream is = zip.getInputStream(manifestEntry)) {
+						tempManifest = new Manifest(is);
+					}
+					patchManifest(tempManifest);
+
+					// The new manifest comes first, so the original entry is skipped below
+					jar.writeManifest(tempManifest);
+				}
+				Enumeration<ZipArchiveEntry> entries = zip.getEntriesInPhysicalOrder();
+				while(entries.hasMoreElements()) {
+					ZipArchiveEntry entry = entries.nextElement();
+					try(InputStream raw = zip.getRawInputStream(entry)) {
+						jar.writeRaw(entry, raw);
+					}
+				}
+
+				// Very special handling of com.ibm.notes.java.api to make it play nicer in other environments
+				if(path.getFileName().toString().startsWith(NOTES_API_PREFIX)) {
+					// Find the companion fragment
+					Optional<Path> maybeFragment;
+					try(Stream<Path> siblings = Files.list(path.getParent())) {
+						maybeFragment = siblings.filter(p -> p.getFileName().toString().startsWith(NOTES_FRAGMENT_PREFIX))
+							.sorted()
+							.findFirst();
+					}
+					if(maybeFragment.isPresent()) {
+						try(ZipFile fragmentZip = ZipFile.builder().setPath(maybeFragment.get()).get()) {
+							ZipArchiveEntry notesJar = fragmentZip.getEntry("Notes.jar"); //$NON-NLS-1$
+							if(notesJar != null) {
+								try(InputStream raw = fragmentZip.getRawInputStream(notesJar)) {
+									jar.writeRaw(notesJar, raw);
+								}
+							}
+						}
+					}
+				}
+			}
+
+			return new BundleInfo(bundle.getName(), bundle.getVendor(), bundle.getArtifactId(), bundle.getVersion(),
+				tempFile.toAbsolutePath().toString(), bundle.getRequires(), embeds, bundle.getSource(),
+				bundle.getFragmentHost(), bundle.getImportedPackages(), bundle.getExportedPackages());
+		}
+	}
+
+	/**
+	 * @param jarFile the bundle to search
+	 * @param manifest the manifest of {@code jarFile}
+	 * @return the names of the JAR entries in {@code Bundle-ClassPath} that exist in the bundle
+	 */
+	public static List<String> findEmbedEntries(JarFile jarFile, Manifest manifest) {
+		List<String> result = new ArrayList<>();
+		String classpath = manifest.getMainAttributes().getValue("Bundle-ClassPath"); //$NON-NLS-1$
+		if(classpath != null && !classpath.isEmpty()) {
+			String[] cpEntries = classpath.split("\\n|,"); //$NON-NLS-1$
+			for(String cpEntry : cpEntries) {
+				if(cpEntry.toLowerCase().endsWith(".jar") && jarFile.getJarEntry(cpEntry) != null) { //$NON-NLS-1$
+					result.add(cpEntry);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param cpEntry a {@code Bundle-ClassPath} entry
+	 * @return the name used for the embedded JAR
+	 */
+	public static String toEmbedName(String cpEntry) {
+		return Paths.get(cpEntry).getFileName().toString().replace('/', '$');
+	}
+
+	/**
+	 * Adjusts a bundle manifest for use outside of Domino's OSGi environment.
+	 */
+	private static void patchManifest(Manifest tempManifest) throws BundleException {
+		// Replace the com.ibm.pvc.servlet hard requirement with just servlet imports
+		String requireBundle = tempManifest.getMainAttributes().getValue("Require-Bundle"); //$NON-NLS-1$
+		if(StringUtil.isNotEmpty(requireBundle)) {
+			ManifestElement[] elements = ManifestElement.parseHeader("Require-Bundle", requireBundle); //$NON-NLS-1$
+			requireBundle = Stream.of(elements)
+				.filter(el -> !"com.ibm.pvc.servlet".equals(el.getValue())) //$NON-NLS-1$
+				.map(el -> el.toString() + ("optional".equals(el.getDirective("resolution")) ? "" : ";resolution:=optional")) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+				.collect(Collectors.joining(",")); //$NON-NLS-1$
+			if(StringUtil.isEmpty(requireBundle)) {
+				tempManifest.getMainAttributes().remove(new Attributes.Name("Require-Bundle")); //$NON-NLS-1$
+			} else {
+				tempManifest.getMainAttributes().putValue("Require-Bundle", requireBundle); //$NON-NLS-1$
+			}
+		}
+
+		// Validate the bundle version
+		String versionString = tempManifest.getMainAttributes().getValue("Bundle-Version"); //$NON-NLS-1$
+		if(StringUtil.isNotEmpty(versionString)) {
+			try {
+				new Version(versionString);
+			} catch(IllegalArgumentException e) {
+				// This case should be that there are more than three "."s
+				String[] bits = versionString.split("\\.", 4); //$NON-NLS-1$
+				if(bits.length >= 4) {
+					versionString = bits[0] + "." + bits[1] + "." + bits[2] + "." + bits[3].replace(".", "_"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+					tempManifest.getMainAttributes().putValue("Bundle-Version", versionString); //$NON-NLS-1$
+				} else {
+					throw e;
+				}
+			}
+		}
+
+		// Cover cases where bundles no longer automatically get javax.servlet transitively, as well
+		//   as some XML things that these bundles assume are passively available, but which newer OSGi
+		//   containers may not automatically provide
+		List<String> imports = Arrays.asList(
+			"javax.servlet", //$NON-NLS-1$
+			"javax.servlet.*", //$NON-NLS-1$
+			"org.w3c.dom", //$NON-NLS-1$
+			"org.w3c.dom.*", //$NON-NLS-1$
+			"org.xml.*", //$NON-NLS-1$
+			"javax.xml.*", //$NON-NLS-1$
+			"lotus.*" //$NON-NLS-1$
+		);
+		tempManifest.getMainAttributes().putValue("DynamicImport-Package", String.join(",", imports)); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.tasks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.openntf.nsfodp.commons.xml.NSFODPDomUtil;
+import org.openntf.p2.domino.updatesite.AbstractMavenizeBundlesMojo;
+import org.openntf.p2.domino.updatesite.model.BundleEmbed;
+import org.openntf.p2.domino.updatesite.model.BundleInfo;
+import org.openntf.p2.domino.updatesite.util.XmlWriter;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import com.ibm.commons.util.StringUtil;
+
+/**
+ * Writes the POMs for mavenized bundles from a base POM.
+ *
+ * <p>The base POM is parsed once and serialized up to its closing tag, and each bundle's
+ * coordinates, organization and dependencies are streamed after it. Instances reuse a
+ * buffer between POMs and so should only be used by one thread at a time.</p>
+ *
+ * @since 6.1.0
+ */
+public class BundlePomWriter {
+	private final String groupId;
+	private final boolean optionalDependencies;
+	/** The serialized base POM, up to but not including its closing tag */
+	private final String basePomHead;
+	/** Reused between bundles, since POMs are generated one at a time */
+	private final ByteArrayOutputStream pomBuffer = new ByteArrayOutputStream();
+
+	/**
+	 * @param basePom the content of the base POM
+	 * @param groupId the groupId to use for bundles and their dependencies
+	 * @param optionalDependencies whether {@code Require-Bundle} dependencies are marked
+	 *        optional
+	 * @throws IOException if there is a problem parsing the base POM
+	 */
+	public BundlePomWriter(String basePom, String groupId, boolean optionalDependencies) throws IOException {
+		this.groupId = groupId;
+		this.optionalDependencies = optionalDependencies;
+		this.basePomHead = toPomHead(basePom);
+	}
+
+	/**
+	 * Writes the POM for a bundle.
+	 *
+	 * @param bundle the bundle to write the POM for
+	 * @param bundles the bundles in the run, by artifact ID, used to resolve {@code Require-Bundle}
+	 * @param pom the file to write the POM to
+	 * @throws IOException if there is a problem writing the POM
+	 */
+	public void write(BundleInfo bundle, Map<String, BundleInfo> bundles, Path pom) throws IOException {
+		pomBuffer.reset();
+		Writer out = new OutputStreamWriter(pomBuffer, StandardCharsets.UTF_8);
+		try {
+			out.write(basePomHead);
+
+			XmlWriter w = new XmlWriter(out, 1);
+			w.textElement("groupId", this.groupId); //$NON-NLS-1$
+			w.textElement("artifactId", bundle.getArtifactId()); //$NON-NLS-1$
+			w.textElement("version", bundle.getVersion()); //$NON-NLS-1$
+
+			if(StringUtil.isNotEmpty(bundle.getVendor())) {
+				w.startElement("organization"); //$NON-NLS-1$
+				w.textElement("name", bundle.getVendor()); //$NON-NLS-1$
+				w.endElement();
+			}
+
+			w.startElement("dependencies"); //$NON-NLS-1$
+
+			// Add dependencies based on Require-Bundle
+			for(String require : bundle.getRequires()) {
+				BundleInfo dep = bundles.get(require);
+				if(dep != null) {
+					w.startElement("dependency"); //$NON-NLS-1$
+					w.textElement("groupId", this.groupId); //$NON-NLS-1$
+					w.textElement("artifactId", dep.getArtifactId()); //$NON-NLS-1$
+					w.textElement("version", dep.getVersion()); //$NON-NLS-1$
+					if(optionalDependencies) {
+						w.textElement("optional", "true"); //$NON-NLS-1$ //$NON-NLS-2$
+					}
+					w.endElement();
+				}
+			}
+
+			// Add internal dependencies for Bundle-ClassPath entries
+			for(BundleEmbed embed : bundle.getEmbeds()) {
+				w.startElement("dependency"); //$NON-NLS-1$
+				w.textElement("groupId", this.groupId); //$NON-NLS-1$
+				w.textElement("artifactId", bundle.getArtifactId()); //$NON-NLS-1$
+				w.textElement("version", bundle.getVersion()); //$NON-NLS-1$
+				w.textElement("classifier", AbstractMavenizeBundlesMojo.toEmbedClassifierName(embed.getName())); //$NON-NLS-1$
+				w.endElement();
+			}
+
+			w.endElement();
+			w.flush();
+			out.write("\n</project>\n"); //$NON-NLS-1$
+			out.flush();
+		} catch(XMLStreamException e) {
+			throw new IOException(e);
+		}
+
+		try(OutputStream os = Files.newOutputStream(pom)) {
+			pomBuffer.writeTo(os);
+		}
+	}
+
+	/**
+	 * Parses the base POM and serializes its declaration, root start tag and children,
+	 * leaving the root element open for the bundle-specific elements.
+	 */
+	private static String toPomHead(String basePom) throws IOException {
+		Document xml = NSFODPDomUtil.createDocument(new StringReader(basePom));
+		Element project = xml.getDocumentElement();
+		StringWriter result = new StringWriter();
+		result.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"); //$NON-NLS-1$
+		try {
+			XmlWriter w = new XmlWriter(result, 0);
+			w.startElement(project.getTagName());
+			NamedNodeMap attributes = project.getAttributes();
+			for(int i = 0; i < attributes.getLength(); i++) {
+				Node attr = attributes.item(i);
+				w.attribute(attr.getNodeName(), attr.getNodeValue());
+			}
+			// Ensure that the start tag is written even if there are no children
+			w.text(""); //$NON-NLS-1$
+			writeChildren(w, project);
+			w.flush();
+		} catch(XMLStreamException e) {
+			throw new IOException(e);
+		}
+		return result.toString();
+	}
+
+	private static void writeChildren(XmlWriter w, Element element) throws XMLStreamException {
+		NodeList children = element.getChildNodes();
+		for(int i = 0; i < children.getLength(); i++) {
+			Node child = children.item(i);
+			if(child.getNodeType() != Node.ELEMENT_NODE) {
+				continue;
+			}
+			Element childElement = (Element)child;
+			w.startElement(childElement.getTagName());
+			NamedNodeMap attributes = childElement.getAttributes();
+			for(int j = 0; j < attributes.getLength(); j++) {
+				Node attr = attributes.item(j);
+				w.attribute(attr.getNodeName(), attr.getNodeValue());
+			}
+			boolean hasElements = false;
+			for(Node n = childElement.getFirstChild(); n != null; n = n.getNextSibling()) {
+				hasElements |= n.getNodeType() == Node.ELEMENT_NODE;
+			}
+			if(hasElements) {
+				writeChildren(w, childElement);
+			} else {
+				String text = childElement.getTextContent();
+				if(StringUtil.isNotEmpty(text)) {
+					w.text(text);
+				}
+			}
+			w.endElement();
+		}
+	}
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.tasks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.openntf.p2.domino.updatesite.model.BundleInfo;
+
+/**
+ * Selects the bundles in the transitive dependency closure of a set of root bundles.
+ *
+ * <p>The closure follows {@code Require-Bundle} and, optionally, {@code Import-Package}
+ * to the bundle exporting each package. Fragments are included along with their hosts.
+ * Root and exclusion patterns are bundle symbolic names, in which {@code *} matches any
+ * sequence of characters. Excluded bundles are neither selected nor followed.</p>
+ *
+ * @since 6.1.0
+ */
+public class BundleSelector {
+	private final Map<String, Pattern> roots;
+	private final Map<String, Pattern> excludes;
+	private final List<String> unmatchedRoots = new ArrayList<>();
+	private boolean followImportPackage;
+
+	/**
+	 * @param roots the root bundle patterns; if empty, all bundles not excluded are selected
+	 * @param excludes the patterns of bundles to exclude
+	 */
+	public BundleSelector(Collection<String> roots, Collection<String> excludes) {
+		this.roots = toPatterns(roots);
+		this.excludes = toPatterns(excludes);
+	}
+
+	/**
+	 * Sets whether {@code Import-Package} entries are followed to the bundles that export
+	 * them. When several bundles export a package, a selected one is preferred over the
+	 * first in the list.
+	 */
+	public void setFollowImportPackage(boolean followImportPackage) {
+		this.followImportPackage = followImportPackage;
+	}
+
+	/**
+	 * @param bundles the available bundles
+	 * @return the selected bundles, in the same order as {@code bundles}
+	 */
+	public List<BundleInfo> select(List<BundleInfo> bundles) {
+		unmatchedRoots.clear();
+		List<BundleInfo> candidates = bundles.stream()
+			.filter(b -> !matches(excludes.values(), b.getArtifactId()))
+			.collect(Collectors.toList());
+		if(roots.isEmpty()) {
+			return candidates;
+		}
+
+		Map<String, BundleInfo> byName = new HashMap<>();
+		Map<String, List<BundleInfo>> fragments = new HashMap<>();
+		Map<String, List<BundleInfo>> exporters = new HashMap<>();
+		for(BundleInfo bundle : candidates) {
+			byName.putIfAbsent(bundle.getArtifactId(), bundle);
+			if(bundle.getFragmentHost() != null) {
+				fragments.computeIfAbsent(bundle.getFragmentHost(), key -> new ArrayList<>()).add(bundle);
+			}
+			for(String pkg : bundle.getExportedPackages()) {
+				exporters.computeIfAbsent(pkg, key -> new ArrayList<>()).add(bundle);
+			}
+		}
+
+		Set<String> selected = new HashSet<>();
+		Deque<BundleInfo> queue = new ArrayDeque<>();
+		for(Map.Entry<String, Pattern> root : roots.entrySet()) {
+			List<BundleInfo> matched = candidates.stream()
+				.filter(b -> root.getValue().matcher(b.getArtifactId()).matches())
+				.collect(Collectors.toList());
+			if(matched.isEmpty()) {
+				unmatchedRoots.add(root.getKey());
+			}
+			for(BundleInfo bundle : matched) {
+				if(selected.add(bundle.getArtifactId())) {
+					queue.add(bundle);
+				}
+			}
+		}
+
+		while(!queue.isEmpty()) {
+			BundleInfo bundle = queue.remove();
+			List<BundleInfo> next = new ArrayList<>();
+			for(String require : bundle.getRequires()) {
+				BundleInfo dep = byName.get(require);
+				if(dep != null) {
+					next.add(dep);
+				}
+			}
+			if(bundle.getFragmentHost() != null) {
+				BundleInfo host = byName.get(bundle.getFragmentHost());
+				if(host != null) {
+					next.add(host);
+				}
+			}
+			next.addAll(fragments.getOrDefault(bundle.getArtifactId(), Collections.emptyList()));
+			if(followImportPackage) {
+				for(String pkg : bundle.getImportedPackages()) {
+					List<BundleInfo> exporting = exporters.get(pkg);
+					if(exporting != null && exporting.stream().noneMatch(b -> selected.contains(b.getArtifactId()))) {
+						next.add(exporting.get(0));
+					}
+				}
+			}
+			for(BundleInfo dep : next) {
+				if(selected.add(dep.getArtifactId())) {
+					queue.add(dep);
+				}
+			}
+		}
+
+		return candidates.stream()
+			.filter(b -> selected.contains(b.getArtifactId()))
+			.collect(Collectors.toList());
+	}
+
+	/**
+	 * @return the root patterns that did not match any bundle in the last call to
+	 *         {@link #select(List)}
+	 */
+	public List<String> getUnmatchedRoots() {
+		return unmatchedRoots;
+	}
+
+	private static Map<String, Pattern> toPatterns(Collection<String> patterns) {
+		Map<String, Pattern> result = new LinkedHashMap<>();
+		if(patterns != null) {
+			for(String pattern : patterns) {
+				String trimmed = pattern == null ? "" : pattern.trim(); //$NON-NLS-1$
+				if(!trimmed.isEmpty()) {
+					String regex = Pattern.quote(trimmed).replace("*", "\\E.*\\Q"); //$NON-NLS-1$ //$NON-NLS-2$
+					result.putIfAbsent(trimmed, Pattern.compile(regex));
+				}
+			}
+		}
+		return result;
+	}
+
+	private static boolean matches(Collection<Pattern> patterns, String name) {
+		return patterns.stream().anyMatch(p -> p.matcher(name).matches());
+	}
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.tasks;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.openntf.p2.domino.updatesite.util.HashUtil;
+
+/**
+ * Append-only record of the artifacts deployed to a remote repository and the SHA-1
+ * checksums of the files that were uploaded.
+ *
+ * <p>Each deployed artifact is written as a line of {@code <sha1> <coordinates>} as
+ * soon as its request completes, so a run that fails part of the way through keeps
+ * everything deployed before the failure. Unreadable lines, such as one cut short by
+ * the failure, are ignored.</p>
+ *
+ * @since 6.1.0
+ */
+public class DeployJournal implements Closeable {
+	private static final int SHA1_LENGTH = 40;
+
+	private final Map<String, String> checksums = new ConcurrentHashMap<>();
+	private final Writer writer;
+
+	private DeployJournal(Writer writer) {
+		this.writer = writer;
+	}
+
+	/**
+	 * Opens the journal for the given repository within {@code cacheDir}, creating it
+	 * if needed.
+	 *
+	 * @param cacheDir the root cache directory, within which a {@code deploy}
+	 *        directory will be used
+	 * @param repositoryUrl the URL of the repository the journal belongs to
+	 * @return the open journal
+	 * @throws IOException if there is a problem reading or creating the journal
+	 */
+	public static DeployJournal open(Path cacheDir, String repositoryUrl) throws IOException {
+		return open(cacheDir.resolve("deploy").resolve(HashUtil.sha256(repositoryUrl).substring(0, 16) + ".journal")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * Opens the journal in the given file, creating it if needed.
+	 *
+	 * @param file the journal file
+	 * @return the open journal
+	 * @throws IOException if there is a problem reading or creating the journal
+	 */
+	public static DeployJournal open(Path file) throws IOException {
+		Files.createDirectories(file.getParent());
+		Map<String, String> existing = new ConcurrentHashMap<>();
+		if(Files.isRegularFile(file)) {
+			try(BufferedReader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+				String line;
+				while((line = r.readLine()) != null) {
+					int space = line.indexOf(' ');
+					if(space == SHA1_LENGTH) {
+						existing.put(line.substring(space + 1), line.substring(0, space));
+					}
+				}
+			}
+		}
+		DeployJournal result = new DeployJournal(Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+		result.checksums.putAll(existing);
+		return result;
+	}
+
+	/**
+	 * @param artifact the artifact to check
+	 * @param sha1 the SHA-1 checksum of the artifact's file
+	 * @return whether the artifact was deployed with the same checksum
+	 */
+	public boolean contains(Artifact artifact, String sha1) {
+		return sha1.equals(checksums.get(toKey(artifact)));
+	}
+
+	/**
+	 * Records that the artifact has been deployed with the given checksum.
+	 *
+	 * @param artifact the deployed artifact
+	 * @param sha1 the SHA-1 checksum of the artifact's file
+	 * @throws IOException if there is a problem writing the journal
+	 */
+	public synchronized void record(Artifact artifact, String sha1) throws IOException {
+		String key = toKey(artifact);
+		if(!sha1.equals(checksums.put(key, sha1))) {
+			writer.write(sha1 + ' ' + key + '\n');
+			writer.flush();
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		writer.close();
+	}
+
+	private static String toKey(Artifact artifact) {
+		return artifact.getGroupId() + ':' + artifact.getArtifactId() + ':' + artifact.getExtension() + ':' + artifact.getClassifier() + ':' + artifact.getVersion();
+	}
+}
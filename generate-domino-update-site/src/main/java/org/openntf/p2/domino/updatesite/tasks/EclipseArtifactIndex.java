@@ -0,0 +1,165 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.tasks;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Immutable index of the artifacts declared in a p2 {@code artifacts.xml} file,
+ * keyed by classifier, ID and version.
+ *
+ * <p>The index is built with a streaming parse, so the document as a whole is never
+ * held in memory, and is safe for concurrent lookups.</p>
+ *
+ * @since 6.1.0
+ */
+public class EclipseArtifactIndex {
+	private static final String[] ARTIFACT_PATH = { "repository", "artifacts", "artifact" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+	private final Set<String> keys;
+
+	private EclipseArtifactIndex(Set<String> keys) {
+		this.keys = Collections.unmodifiableSet(keys);
+	}
+
+	/**
+	 * Reads the {@code /repository/artifacts/artifact} elements from the given
+	 * {@code artifacts.xml} content.
+	 *
+	 * @param is a stream of the uncompressed XML
+	 * @return the new index
+	 * @throws IOException if there is a problem reading or parsing the XML
+	 */
+	public static EclipseArtifactIndex read(InputStream is) throws IOException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+		Set<String> keys = new HashSet<>();
+		try {
+			XMLStreamReader r = factory.createXMLStreamReader(is);
+			try {
+				// Track how much of ARTIFACT_PATH the current element stack matches
+				int depth = 0;
+				int matched = 0;
+				while(r.hasNext()) {
+					switch(r.next()) {
+					case XMLStreamConstants.START_ELEMENT:
+						if(matched == depth && depth < ARTIFACT_PATH.length && ARTIFACT_PATH[depth].equals(r.getLocalName())) {
+							matched++;
+							if(matched == ARTIFACT_PATH.length) {
+								String classifier = r.getAttributeValue(null, "classifier"); //$NON-NLS-1$
+								String id = r.getAttributeValue(null, "id"); //$NON-NLS-1$
+								String version = r.getAttributeValue(null, "version"); //$NON-NLS-1$
+								if(classifier != null && id != null && version != null) {
+									keys.add(toKey(classifier, id, version));
+								}
+							}
+						}
+						depth++;
+						break;
+					case XMLStreamConstants.END_ELEMENT:
+						depth--;
+						if(matched > depth) {
+							matched = depth;
+						}
+						break;
+					default:
+						break;
+					}
+				}
+			} finally {
+				r.close();
+			}
+		} catch(XMLStreamException e) {
+			throw new IOException(e);
+		}
+		return new EclipseArtifactIndex(keys);
+	}
+
+	/**
+	 * Reads an index previously written by {@link #write(OutputStream)}.
+	 *
+	 * @param is a stream of the compact index
+	 * @return the new index
+	 * @throws IOException if there is a problem reading the index
+	 */
+	public static EclipseArtifactIndex readCompact(InputStream is) throws IOException {
+		Set<String> keys = new HashSet<>();
+		BufferedReader r = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+		String line;
+		while((line = r.readLine()) != null) {
+			if(!line.isEmpty()) {
+				keys.add(line);
+			}
+		}
+		return new EclipseArtifactIndex(keys);
+	}
+
+	/**
+	 * Writes the index in a compact line-based form that can be read back with
+	 * {@link #readCompact(InputStream)} without parsing the original XML.
+	 *
+	 * @param os the stream to write to, which is flushed but not closed
+	 * @throws IOException if there is a problem writing the index
+	 */
+	public void write(OutputStream os) throws IOException {
+		Writer w = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+		for(String key : new TreeSet<>(keys)) {
+			w.write(key);
+			w.write('\n');
+		}
+		w.flush();
+	}
+
+	/**
+	 * @param classifier the artifact classifier, such as {@code "osgi.bundle"}
+	 * @param id the artifact ID
+	 * @param version the artifact version
+	 * @return whether the repository declares a matching artifact
+	 */
+	public boolean contains(String classifier, String id, String version) {
+		return keys.contains(toKey(classifier, id, version));
+	}
+
+	/**
+	 * @return the number of artifacts in the index
+	 */
+	public int size() {
+		return keys.size();
+	}
+
+	private static String toKey(String classifier, String id, String version) {
+		return classifier + '/' + id + '/' + version;
+	}
+}
@@ -15,610 +15,662 @@
  */
 package org.openntf.p2.domino.updatesite.tasks;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.commons.io.output.TeeOutputStream;
 import org.eclipse.osgi.util.ManifestElement;
 import org.openntf.nsfodp.commons.xml.NSFODPDomUtil;
-import org.w3c.dom.DOMException;
+import org.openntf.p2.domino.updatesite.model.FeatureDescriptor;
+import org.openntf.p2.domino.updatesite.model.PluginDescriptor;
+import org.openntf.p2.domino.updatesite.util.NLSUtil;
+import org.openntf.p2.domino.updatesite.util.XmlWriter;
+import org.osgi.framework.BundleException;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZOutputStream;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.w3c.dom.ProcessingInstruction;
 
 import com.ibm.commons.util.StringUtil;
 import com.ibm.commons.util.io.StreamUtil;
 
 public class GenerateP2MetadataTask implements Runnable {
+	private static final String P2_INDEX = "p2.index"; //$NON-NLS-1$
+	private static final String P2_INDEX_CONTENT = "version=1\n" //$NON-NLS-1$
+		+ "metadata.repository.factory.order=content.xml.xz,content.xml,!\n" //$NON-NLS-1$
+		+ "artifact.repository.factory.order=artifacts.xml.xz,artifacts.xml,!\n"; //$NON-NLS-1$
+	/** The indentation depth of {@code unit} elements in {@code content.xml} */
+	private static final int UNIT_DEPTH = 2;
+	private static final Comparator<FeatureDescriptor> FEATURE_ORDER = Comparator.comparing(FeatureDescriptor::getId)
+		.thenComparing(FeatureDescriptor::getVersion)
+		.thenComparing(f -> f.getFile().getFileName().toString());
+	private static final Comparator<PluginDescriptor> PLUGIN_ORDER = Comparator.comparing(PluginDescriptor::getSymbolicName)
+		.thenComparing(p -> StringUtil.toString(p.getVersion()))
+		.thenComparing(p -> p.getFile().getFileName().toString());
+
 	private final Path dest;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private long timestamp = System.currentTimeMillis();
+	private boolean xzMetadata = false;
+	private boolean incremental = false;
+	private P2DescriptorCache descriptorCache;
 	
 	public GenerateP2MetadataTask(Path dest) {
 		this.dest = dest;
 	}
 
+	/**
+	 * Sets the number of threads used to read bundles and generate their units.
+	 * Values less than 1 use the number of available processors.
+	 *
+	 * @param threads the size of the fork-join pool
+	 * @since 6.1.0
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
+	}
+
+	/**
+	 * Sets the time recorded as {@code p2.timestamp} and on the metadata JAR entries,
+	 * which allows repeated runs over the same site to produce identical files.
+	 *
+	 * @param timestamp the timestamp in milliseconds since the epoch
+	 * @since 6.1.0
+	 */
+	public void setTimestamp(long timestamp) {
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * Sets whether to also write XZ-compressed {@code content.xml.xz} and
+	 * {@code artifacts.xml.xz} files, along with a {@code p2.index} file that directs
+	 * p2 clients to prefer them over the JAR forms.
+	 *
+	 * @param xzMetadata whether to write XZ metadata
+	 * @since 6.1.0
+	 */
+	public void setXzMetadata(boolean xzMetadata) {
+		this.xzMetadata = xzMetadata;
+	}
+
+	/**
+	 * Sets whether to keep a cache of bundle descriptors and units in the repository
+	 * directory, so that only new or changed JARs are read on later runs.
+	 *
+	 * @param incremental whether to generate metadata incrementally
+	 * @see P2DescriptorCache
+	 * @since 6.1.0
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
 	@Override
 	public void run() {
+		ForkJoinPool pool = new ForkJoinPool(threads);
 		try {
-			Document artifactsXml = createArtifactsXml();
-			try(OutputStream os = Files.newOutputStream(dest.resolve("artifacts.jar"), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) { //$NON-NLS-1$
-				try(ZipOutputStream zos = new ZipOutputStream(os, StandardCharsets.UTF_8)) {
-					zos.putNextEntry(new ZipEntry("artifacts.xml")); //$NON-NLS-1$
-					try(Writer w = new OutputStreamWriter(zos, StandardCharsets.UTF_8)) {
-						NSFODPDomUtil.serialize(w, artifactsXml, null);
-					}
-				}
+			this.descriptorCache = incremental ? P2DescriptorCache.load(dest) : null;
+			List<FeatureDescriptor> features = inPool(pool, this::readFeatures);
+			List<PluginDescriptor> plugins = inPool(pool, this::readPlugins);
+			PluginRegistry registry = new PluginRegistry();
+			plugins.stream()
+				.filter(plugin -> plugin.getSymbolicName() != null && plugin.getVersion() != null)
+				.forEach(plugin -> registry.register(plugin.getSymbolicName(), plugin.getVersion(), plugin.getFile()));
+
+			// Units are generated independently, then merged in the sorted bundle order
+			List<String> featureUnits = inPool(pool, () -> features.parallelStream()
+				.map(this::toFeatureUnit)
+				.collect(Collectors.toList()));
+			List<String> pluginUnits = inPool(pool, () -> plugins.parallelStream()
+				.map(plugin -> toPluginUnit(plugin, registry))
+				.collect(Collectors.toList()));
+
+			writeXml("artifacts", w -> writeArtifactsXml(w, features, plugins)); //$NON-NLS-1$
+			writeXml("content", w -> writeContentXml(w, featureUnits, pluginUnits)); //$NON-NLS-1$
+
+			Path p2Index = dest.resolve(P2_INDEX);
+			if(xzMetadata) {
+				Files.write(p2Index, P2_INDEX_CONTENT.getBytes(StandardCharsets.ISO_8859_1));
+			} else {
+				Files.deleteIfExists(p2Index);
 			}
-			Document contentXml = createContentXml();
-			try(OutputStream os = Files.newOutputStream(dest.resolve("content.jar"), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) { //$NON-NLS-1$
-				try(ZipOutputStream zos = new ZipOutputStream(os, StandardCharsets.UTF_8)) {
-					zos.putNextEntry(new ZipEntry("content.xml")); //$NON-NLS-1$
-					try(Writer w = new OutputStreamWriter(zos, StandardCharsets.UTF_8)) {
-						NSFODPDomUtil.serialize(w, contentXml, null);	
-					}
-				}
+
+			if(descriptorCache != null) {
+				descriptorCache.save();
 			}
-			
-		} catch (IOException e) {
+		} catch (IOException | XMLStreamException e) {
 			throw new RuntimeException(e);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Runs {@code task} in {@code pool}, so that any parallel streams it uses are
+	 * limited to the pool's threads.
+	 */
+	private static <T> T inPool(ForkJoinPool pool, IOCallable<T> task) throws IOException {
+		try {
+			return pool.submit(() -> {
+				try {
+					return task.call();
+				} catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}).get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof UncheckedIOException) {
+				throw ((UncheckedIOException)cause).getCause();
+			} else if(cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			} else if(cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * Streams an XML document directly into {@code <name>.jar} and, when enabled,
+	 * {@code <name>.xml.xz} in a single pass, so that the document is never held in
+	 * memory as a whole.
+	 */
+	private void writeXml(String name, XmlContent content) throws IOException, XMLStreamException {
+		Path xz = dest.resolve(name + ".xml.xz"); //$NON-NLS-1$
+		if(!xzMetadata) {
+			Files.deleteIfExists(xz);
+		}
+		try(OutputStream os = Files.newOutputStream(dest.resolve(name + ".jar"), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING); //$NON-NLS-1$
+				ZipOutputStream zos = new ZipOutputStream(os, StandardCharsets.UTF_8);
+				XZOutputStream xzos = xzMetadata ? new XZOutputStream(Files.newOutputStream(xz), new LZMA2Options()) : null) {
+			ZipEntry entry = new ZipEntry(name + ".xml"); //$NON-NLS-1$
+			entry.setTime(timestamp);
+			zos.putNextEntry(entry);
+			OutputStream out = xzos == null ? zos : new TeeOutputStream(zos, xzos);
+			// Not closed, since that would close the underlying streams
+			Writer w = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+			content.write(new XmlWriter(w, 0));
+			zos.closeEntry();
+			if(xzos != null) {
+				xzos.finish();
+			}
 		}
 	}
 	
-	private Document createArtifactsXml() throws IOException {
-		org.w3c.dom.Document doc = NSFODPDomUtil.createDocument();
+	private void writeArtifactsXml(XmlWriter w, List<FeatureDescriptor> features, List<PluginDescriptor> plugins) throws XMLStreamException {
+		w.startDocument("artifactRepository", "version='1.1.0'"); //$NON-NLS-1$ //$NON-NLS-2$
 		
-		{
-			ProcessingInstruction proc = doc.createProcessingInstruction("artifactRepository", "version='1.1.0'"); //$NON-NLS-1$ //$NON-NLS-2$
-			doc.appendChild(proc);
-		}
+		w.startElement("repository") //$NON-NLS-1$
+			.attribute("name", "XPages Runtime Artifacts") //$NON-NLS-1$ //$NON-NLS-2$
+			.attribute("type", "org.eclipse.equinox.p2.artifact.repository.simpleRepository") //$NON-NLS-1$ //$NON-NLS-2$
+			.attribute("version", "1"); //$NON-NLS-1$ //$NON-NLS-2$
 		
-		Element repository = NSFODPDomUtil.createElement(doc, "repository"); //$NON-NLS-1$
-		repository.setAttribute("name", "XPages Runtime Artifacts"); //$NON-NLS-1$ //$NON-NLS-2$
-		repository.setAttribute("type", "org.eclipse.equinox.p2.artifact.repository.simpleRepository"); //$NON-NLS-1$ //$NON-NLS-2$
-		repository.setAttribute("version", "1"); //$NON-NLS-1$ //$NON-NLS-2$
+		writeRepositoryProperties(w);
 		
-		{
-			Element properties = NSFODPDomUtil.createElement(repository, "properties"); //$NON-NLS-1$
-			properties.setAttribute("size", "2"); //$NON-NLS-1$ //$NON-NLS-2$
-			
-			Element timestamp = NSFODPDomUtil.createElement(properties, "property"); //$NON-NLS-1$
-			timestamp.setAttribute("name", "p2.timestamp"); //$NON-NLS-1$ //$NON-NLS-2$
-			timestamp.setAttribute("value", String.valueOf(System.currentTimeMillis())); //$NON-NLS-1$
-			
-			Element compressed = NSFODPDomUtil.createElement(properties, "property"); //$NON-NLS-1$
-			compressed.setAttribute("name", "p2.compressed"); //$NON-NLS-1$ //$NON-NLS-2$
-			compressed.setAttribute("value", "false"); //$NON-NLS-1$ //$NON-NLS-2$
-		}
+		w.startElement("mappings").attribute("size", "3"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		w.emptyElement("rule", "filter", "(& (classifier=osgi.bundle))", "output", "${repoUrl}/plugins/${id}_${version}.jar"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+		w.emptyElement("rule", "filter", "(& (classifier=binary))", "output", "${repoUrl}/binary/${id}_${version}"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+		w.emptyElement("rule", "filter", "(& (classifier=org.eclipse.update.feature))", "output", "${repoUrl}/features/${id}_${version}.jar"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+		w.endElement();
 		
-		{
-			Element mappings = NSFODPDomUtil.createElement(repository, "mappings"); //$NON-NLS-1$
-			mappings.setAttribute("size", "3"); //$NON-NLS-1$ //$NON-NLS-2$
-			
-			Element rule1 = NSFODPDomUtil.createElement(mappings, "rule"); //$NON-NLS-1$
-			rule1.setAttribute("filter", "(& (classifier=osgi.bundle))"); //$NON-NLS-1$ //$NON-NLS-2$
-			rule1.setAttribute("output", "${repoUrl}/plugins/${id}_${version}.jar"); //$NON-NLS-1$ //$NON-NLS-2$
-			
-			Element rule2 = NSFODPDomUtil.createElement(mappings, "rule"); //$NON-NLS-1$
-			rule2.setAttribute("filter", "(& (classifier=binary))"); //$NON-NLS-1$ //$NON-NLS-2$
-			rule2.setAttribute("output", "${repoUrl}/binary/${id}_${version}"); //$NON-NLS-1$ //$NON-NLS-2$
-			
-			Element rule3 = NSFODPDomUtil.createElement(mappings, "rule"); //$NON-NLS-1$
-			rule3.setAttribute("filter", "(& (classifier=org.eclipse.update.feature))"); //$NON-NLS-1$ //$NON-NLS-2$
-			rule3.setAttribute("output", "${repoUrl}/features/${id}_${version}.jar"); //$NON-NLS-1$ //$NON-NLS-2$
+		w.startElement("artifacts").attribute("size", String.valueOf(features.size() + plugins.size())); //$NON-NLS-1$ //$NON-NLS-2$
+		for(FeatureDescriptor feature : features) {
+			w.startElement("artifact") //$NON-NLS-1$
+				.attribute("classifier", "org.eclipse.update.feature") //$NON-NLS-1$ //$NON-NLS-2$
+				.attribute("id", feature.getId()) //$NON-NLS-1$
+				.attribute("version", feature.getVersion()); //$NON-NLS-1$
+			w.startElement("properties").attribute("size", "3"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			w.emptyElement("property", "name", "artifact.size", "value", String.valueOf(feature.getSize())); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			w.emptyElement("property", "name", "download.size", "value", String.valueOf(feature.getSize())); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			w.emptyElement("property", "name", "download.contentType", "value", feature.getContentType()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			w.endElement();
+			w.endElement();
+		}
+		for(PluginDescriptor plugin : plugins) {
+			w.startElement("artifact") //$NON-NLS-1$
+				.attribute("classifier", "osgi.bundle") //$NON-NLS-1$ //$NON-NLS-2$
+				.attribute("id", plugin.getSymbolicName()) //$NON-NLS-1$
+				.attribute("version", plugin.getVersion()); //$NON-NLS-1$
+			w.startElement("properties").attribute("size", "2"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			w.emptyElement("property", "name", "artifact.size", "value", String.valueOf(plugin.getSize())); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			w.emptyElement("property", "name", "download.size", "value", String.valueOf(plugin.getSize())); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			w.endElement();
+			w.endElement();
 		}
+		w.endElement();
 		
-		Element artifacts = NSFODPDomUtil.createElement(repository, "artifacts"); //$NON-NLS-1$
-		int[] size = new int[] { 0 };
+		w.endDocument();
+	}
+	
+	private void writeContentXml(XmlWriter w, List<String> featureUnits, List<String> pluginUnits) throws XMLStreamException {
+		w.startDocument("metadataRepository", "version='1.1.0'"); //$NON-NLS-1$ //$NON-NLS-2$
 		
-		Files.list(dest.resolve("features")).forEach(feature -> { //$NON-NLS-1$
-			size[0]++;
-			try {
-				Document featureXml = getFeatureXml(feature);
-				Element rootElement = featureXml.getDocumentElement();
-				
-				Element artifact = NSFODPDomUtil.createElement(artifacts, "artifact"); //$NON-NLS-1$
-				artifact.setAttribute("classifier", "org.eclipse.update.feature"); //$NON-NLS-1$ //$NON-NLS-2$
-				artifact.setAttribute("id", rootElement.getAttribute("id")); //$NON-NLS-1$ //$NON-NLS-2$
-				artifact.setAttribute("version", rootElement.getAttribute("version")); //$NON-NLS-1$ //$NON-NLS-2$
-				
-				Element properties = NSFODPDomUtil.createElement(artifact, "properties"); //$NON-NLS-1$
-				properties.setAttribute("size", "3"); //$NON-NLS-1$ //$NON-NLS-2$
-				
-				Element artifactSize = NSFODPDomUtil.createElement(properties, "property"); //$NON-NLS-1$
-				artifactSize.setAttribute("name", "artifact.size"); //$NON-NLS-1$ //$NON-NLS-2$
-				artifactSize.setAttribute("value", String.valueOf(Files.size(feature))); //$NON-NLS-1$
-				
-				Element downloadSize = NSFODPDomUtil.createElement(properties, "property"); //$NON-NLS-1$
-				downloadSize.setAttribute("name", "download.size"); //$NON-NLS-1$ //$NON-NLS-2$
-				downloadSize.setAttribute("value", String.valueOf(Files.size(feature))); //$NON-NLS-1$
-				
-				Element contentType = NSFODPDomUtil.createElement(properties, "property"); //$NON-NLS-1$
-				contentType.setAttribute("name", "download.contentType"); //$NON-NLS-1$ //$NON-NLS-2$
-				contentType.setAttribute("value", Files.probeContentType(feature)); //$NON-NLS-1$
-			} catch(Exception e) {
-				throw new RuntimeException(e);
-			}
-		});
-		Files.list(dest.resolve("plugins")).forEach(plugin -> { //$NON-NLS-1$
-			size[0]++;
-			try {
-				Manifest manifest = getPluginManifest(plugin);
-				
-				Element artifact = NSFODPDomUtil.createElement(artifacts, "artifact"); //$NON-NLS-1$
-				artifact.setAttribute("classifier", "osgi.bundle"); //$NON-NLS-1$ //$NON-NLS-2$
-				String symbolicName = getPluginId(manifest);
-				artifact.setAttribute("id", symbolicName); //$NON-NLS-1$
-				artifact.setAttribute("version", manifest.getMainAttributes().getValue("Bundle-Version")); //$NON-NLS-1$ //$NON-NLS-2$
-				
-				Element properties = NSFODPDomUtil.createElement(artifact, "properties"); //$NON-NLS-1$
-				properties.setAttribute("size", "2"); //$NON-NLS-1$ //$NON-NLS-2$
-				
-				Element artifactSize = NSFODPDomUtil.createElement(properties, "property"); //$NON-NLS-1$
-				artifactSize.setAttribute("name", "artifact.size"); //$NON-NLS-1$ //$NON-NLS-2$
-				artifactSize.setAttribute("value", String.valueOf(Files.size(plugin))); //$NON-NLS-1$
-				
-				Element downloadSize = NSFODPDomUtil.createElement(properties, "property"); //$NON-NLS-1$
-				downloadSize.setAttribute("name", "download.size"); //$NON-NLS-1$ //$NON-NLS-2$
-				downloadSize.setAttribute("value", String.valueOf(Files.size(plugin))); //$NON-NLS-1$
-			} catch(Exception e) {
-				throw new RuntimeException(MessageFormat.format("Encountered exception processing bundle {0}", plugin), e);
-			}
-		});
+		w.startElement("repository") //$NON-NLS-1$
+			.attribute("name", "XPages Runtime") //$NON-NLS-1$ //$NON-NLS-2$
+			.attribute("type", "org.eclipse.equinox.internal.p2.metadata.repository.LocalMetadataRepository") //$NON-NLS-1$ //$NON-NLS-2$
+			.attribute("version", "1"); //$NON-NLS-1$ //$NON-NLS-2$
 		
-		artifacts.setAttribute("size", String.valueOf(size[0])); //$NON-NLS-1$
+		writeRepositoryProperties(w);
 		
-		return doc;
+		w.startElement("units").attribute("size", String.valueOf(featureUnits.size() + pluginUnits.size())); //$NON-NLS-1$ //$NON-NLS-2$
+		for(String unit : featureUnits) {
+			w.fragment(unit);
+		}
+		for(String unit : pluginUnits) {
+			w.fragment(unit);
+		}
+		w.endElement();
+		
+		w.endDocument();
 	}
 	
-	private Document createContentXml() throws IOException, DOMException {
-		org.w3c.dom.Document doc = NSFODPDomUtil.createDocument();
+	/**
+	 * Serializes the unit for a feature as a fragment of {@code content.xml}.
+	 */
+	private String toFeatureUnit(FeatureDescriptor feature) {
+		if(descriptorCache != null) {
+			Optional<String> cached = descriptorCache.findUnit(feature.getFile());
+			if(cached.isPresent()) {
+				return cached.get();
+			}
+		}
+		try {
+			StringWriter result = new StringWriter();
+			XmlWriter w = new XmlWriter(result, UNIT_DEPTH);
+			writeFeatureUnit(w, feature);
+			w.flush();
+			String unit = result.toString();
+			if(descriptorCache != null) {
+				descriptorCache.putUnit(feature.getFile(), unit);
+			}
+			return unit;
+		} catch(Exception e) {
+			throw new RuntimeException(MessageFormat.format("Encountered exception processing feature {0}", feature.getFile()), e);
+		}
+	}
 
-		{
-			ProcessingInstruction proc = doc.createProcessingInstruction("metadataRepository", "version='1.1.0'"); //$NON-NLS-1$ //$NON-NLS-2$
-			doc.appendChild(proc);
+	/**
+	 * Serializes the unit for a plugin as a fragment of {@code content.xml}.
+	 */
+	private String toPluginUnit(PluginDescriptor plugin, PluginRegistry registry) {
+		if(descriptorCache != null) {
+			Optional<String> cached = descriptorCache.findUnit(plugin.getFile());
+			if(cached.isPresent()) {
+				return cached.get();
+			}
 		}
-		
-		Element repository = NSFODPDomUtil.createElement(doc, "repository"); //$NON-NLS-1$
-		repository.setAttribute("name", "XPages Runtime"); //$NON-NLS-1$ //$NON-NLS-2$
-		repository.setAttribute("type", "org.eclipse.equinox.internal.p2.metadata.repository.LocalMetadataRepository"); //$NON-NLS-1$ //$NON-NLS-2$
-		repository.setAttribute("version", "1"); //$NON-NLS-1$ //$NON-NLS-2$
-		
-		{
-			Element properties = NSFODPDomUtil.createElement(repository, "properties"); //$NON-NLS-1$
-			properties.setAttribute("size", "2"); //$NON-NLS-1$ //$NON-NLS-2$
-			
-			Element timestamp = NSFODPDomUtil.createElement(properties, "property"); //$NON-NLS-1$
-			timestamp.setAttribute("name", "p2.timestamp"); //$NON-NLS-1$ //$NON-NLS-2$
-			timestamp.setAttribute("value", String.valueOf(System.currentTimeMillis())); //$NON-NLS-1$
-			
-			Element compressed = NSFODPDomUtil.createElement(properties, "property"); //$NON-NLS-1$
-			compressed.setAttribute("name", "p2.compressed"); //$NON-NLS-1$ //$NON-NLS-2$
-			compressed.setAttribute("value", "false"); //$NON-NLS-1$ //$NON-NLS-2$
+		try {
+			StringWriter result = new StringWriter();
+			XmlWriter w = new XmlWriter(result, UNIT_DEPTH);
+			writePluginUnit(w, plugin, registry);
+			w.flush();
+			String unit = result.toString();
+			if(descriptorCache != null && !usesHostBundleVersion(plugin)) {
+				descriptorCache.putUnit(plugin.getFile(), unit);
+			}
+			return unit;
+		} catch(Exception e) {
+			throw new RuntimeException(MessageFormat.format("Encountered exception processing bundle {0}", plugin.getFile()), e);
 		}
+	}
+	
+	/**
+	 * @return whether {@code plugin} is a fragment that takes its host version from
+	 *         the host bundle in the repository, which may change independently, so
+	 *         that its unit cannot be cached
+	 */
+	private static boolean usesHostBundleVersion(PluginDescriptor plugin) {
+		String hostHeader = plugin.getHeader("Fragment-Host"); //$NON-NLS-1$
+		return StringUtil.isNotEmpty(hostHeader) && Stream.of(StringUtil.splitString(hostHeader, ';'))
+			.noneMatch(p -> p.startsWith("bundle-version=")); //$NON-NLS-1$
+	}
+
+	private void writeRepositoryProperties(XmlWriter w) throws XMLStreamException {
+		w.startElement("properties").attribute("size", "2"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		w.emptyElement("property", "name", "p2.timestamp", "value", String.valueOf(timestamp)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		w.emptyElement("property", "name", "p2.compressed", "value", "false"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+		w.endElement();
+	}
+	
+	private void writeFeatureUnit(XmlWriter w, FeatureDescriptor feature) throws XMLStreamException {
+		Map<String, String> props = feature.getLocalization();
 		
-		Element units = NSFODPDomUtil.createElement(repository, "units"); //$NON-NLS-1$
-		int size[] = new int[] { 0 };
+		String id = feature.getId();
+		String version = feature.getVersion();
+		String name = resolveWithProperties(feature.getLabel(), props);
 		
-		Files.list(dest.resolve("features")).forEach(feature -> { //$NON-NLS-1$
-			try {
-				Document featureXml = getFeatureXml(feature);
-				Element rootElement = featureXml.getDocumentElement();
-				Properties props = getFeatureProperties(feature);
-				
-				String id = rootElement.getAttribute("id"); //$NON-NLS-1$
-				String version = rootElement.getAttribute("version"); //$NON-NLS-1$
-				String name = resolveWithProperties(rootElement.getAttribute("label"), props); //$NON-NLS-1$
-				
-				String description = selectTextValue(featureXml, "/feature/description"); //$NON-NLS-1$
-				description = resolveWithProperties(description, props);
-				String descriptionUrl = selectAttribute(featureXml, "/feature/description", "url"); //$NON-NLS-1$ //$NON-NLS-2$
-				descriptionUrl = resolveWithProperties(descriptionUrl, props);
+		String description = resolveWithProperties(feature.getDescription(), props);
+		String descriptionUrl = resolveWithProperties(feature.getDescriptionUrl(), props);
 
-				String license = selectTextValue(featureXml, "/feature/license"); //$NON-NLS-1$
-				license = resolveWithProperties(license, props);
-				String licenseUrl = selectAttribute(featureXml, "/feature/license", "url"); //$NON-NLS-1$ //$NON-NLS-2$
-				licenseUrl = resolveWithProperties(licenseUrl, props);
+		String license = resolveWithProperties(feature.getLicense(), props);
+		String licenseUrl = resolveWithProperties(feature.getLicenseUrl(), props);
 
-				String copyright = selectTextValue(featureXml, "/feature/copyright"); //$NON-NLS-1$
-				copyright = resolveWithProperties(copyright, props);
-				String copyrightUrl = selectAttribute(featureXml, "/feature/copyright", "url"); //$NON-NLS-1$ //$NON-NLS-2$
-				copyrightUrl = resolveWithProperties(copyrightUrl, props);
-				
-				Element unit = NSFODPDomUtil.createElement(units, "unit"); //$NON-NLS-1$
-				unit.setAttribute("id", id + ".feature.group"); //$NON-NLS-1$ //$NON-NLS-2$
-				unit.setAttribute("version", version); //$NON-NLS-1$
-				
-				{
-					Element update = NSFODPDomUtil.createElement(unit, "update"); //$NON-NLS-1$
-					update.setAttribute("id", rootElement.getAttribute("id") + ".feature.group"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-					update.setAttribute("range", "[0.0.0," + rootElement.getAttribute("version") + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
-					update.setAttribute("severity", "0"); //$NON-NLS-1$ //$NON-NLS-2$
-				}
-				
-				{
-					Element properties = NSFODPDomUtil.createElement(unit, "properties"); //$NON-NLS-1$
-					properties.setAttribute("size", "4"); //$NON-NLS-1$ //$NON-NLS-2$
-					
-					Element propName = NSFODPDomUtil.createElement(properties, "property"); //$NON-NLS-1$
-					propName.setAttribute("name", "org.eclipse.equinox.p2.name"); //$NON-NLS-1$ //$NON-NLS-2$
-					propName.setAttribute("value", name); //$NON-NLS-1$
+		String copyright = resolveWithProperties(feature.getCopyright(), props);
+		String copyrightUrl = resolveWithProperties(feature.getCopyrightUrl(), props);
 		
-					Element propDesc = NSFODPDomUtil.createElement(properties, "property"); //$NON-NLS-1$
-					propDesc.setAttribute("name", "org.eclipse.equinox.p2.description"); //$NON-NLS-1$ //$NON-NLS-2$
-					propDesc.setAttribute("value", description); //$NON-NLS-1$
+		w.startElement("unit") //$NON-NLS-1$
+			.attribute("id", id + ".feature.group") //$NON-NLS-1$ //$NON-NLS-2$
+			.attribute("version", version); //$NON-NLS-1$
 		
-					Element propDescUrl = NSFODPDomUtil.createElement(properties, "property"); //$NON-NLS-1$
-					propDescUrl.setAttribute("name", "org.eclipse.equinox.p2.description.url"); //$NON-NLS-1$ //$NON-NLS-2$
-					propDescUrl.setAttribute("value", descriptionUrl); //$NON-NLS-1$
-					
-					Element propTypeGroup = NSFODPDomUtil.createElement(properties, "property"); //$NON-NLS-1$
-					propTypeGroup.setAttribute("name", "org.eclipse.equinox.p2.type.group"); //$NON-NLS-1$ //$NON-NLS-2$
-					propTypeGroup.setAttribute("value", "true"); //$NON-NLS-1$ //$NON-NLS-2$
-				}
-				
-				{
-					Element provides = NSFODPDomUtil.createElement(unit, "provides"); //$NON-NLS-1$
-					provides.setAttribute("size", "1"); //$NON-NLS-1$ //$NON-NLS-2$
-					
-					Element provided = NSFODPDomUtil.createElement(provides, "provided"); //$NON-NLS-1$
-					provided.setAttribute("namespace", "org.eclipse.equinox.p2.iu"); //$NON-NLS-1$ //$NON-NLS-2$
-					provided.setAttribute("name", id + ".feature.group"); //$NON-NLS-1$ //$NON-NLS-2$
-					provided.setAttribute("version", version); //$NON-NLS-1$
-				}
-				
-				{
-					int requiresSize = 0;
-					Element requires = NSFODPDomUtil.createElement(unit, "requires"); //$NON-NLS-1$
-					
-					NodeList plugins = NSFODPDomUtil.selectNodes(doc, "/feature/plugin"); //$NON-NLS-1$
-					
-					for(int i = 0; i < plugins.getLength(); i++) {
-						Element plugin = (Element)plugins.item(i);
-						
-						Element required = NSFODPDomUtil.createElement(requires, "required"); //$NON-NLS-1$
-						required.setAttribute("namespace", "org.eclipse.equinox.p2.iu"); //$NON-NLS-1$ //$NON-NLS-2$
-						required.setAttribute("name", plugin.getAttribute("id")); //$NON-NLS-1$ //$NON-NLS-2$
-						required.setAttribute("range", "[" + plugin.getAttribute("version") + "," + plugin.getAttribute("version") + "]"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
-						
-						requiresSize++;
-					}
-					
-					{
-						Element required = NSFODPDomUtil.createElement(requires, "required"); //$NON-NLS-1$
-						required.setAttribute("namespace", "org.eclipse.equinox.p2.iu"); //$NON-NLS-1$ //$NON-NLS-2$
-						required.setAttribute("name", id + ".feature.jar"); //$NON-NLS-1$ //$NON-NLS-2$
-						required.setAttribute("range", "[" + version + "," + version + "]"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
-						
-						Element filter = NSFODPDomUtil.createElement(required, "filter"); //$NON-NLS-1$
-						filter.setTextContent("(org.eclipse.update.install.features=true)"); //$NON-NLS-1$
-						
-						requiresSize++;
-					}
-					
-					requires.setAttribute("size", String.valueOf(requiresSize)); //$NON-NLS-1$
-				}
-				
-				{
-					Element touchpoint = NSFODPDomUtil.createElement(unit, "touchpoint"); //$NON-NLS-1$
-					touchpoint.setAttribute("id", "null"); //$NON-NLS-1$ //$NON-NLS-2$
-					touchpoint.setAttribute("version", "0.0.0"); //$NON-NLS-1$ //$NON-NLS-2$
-				}
-				
-				{
-					Element licenses = NSFODPDomUtil.createElement(unit, "licenses"); //$NON-NLS-1$
-					licenses.setAttribute("size", "1"); //$NON-NLS-1$ //$NON-NLS-2$
-					
-					Element licenseNode = NSFODPDomUtil.createElement(licenses, "license"); //$NON-NLS-1$
-					licenseNode.setAttribute("uri", licenseUrl); //$NON-NLS-1$
-					licenseNode.setAttribute("url", licenseUrl); //$NON-NLS-1$
-					licenseNode.setTextContent(license);
-				}
-				
-				{
-					Element copyrightNode = NSFODPDomUtil.createElement(unit, "copyright"); //$NON-NLS-1$
-					copyrightNode.setAttribute("uri", copyrightUrl); //$NON-NLS-1$
-					copyrightNode.setAttribute("url", copyrightUrl); //$NON-NLS-1$
-					copyrightNode.setTextContent(copyright);
+		w.emptyElement("update", "id", id + ".feature.group", "range", "[0.0.0," + version + ")", "severity", "0"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$
+		
+		w.startElement("properties").attribute("size", "4"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		w.emptyElement("property", "name", "org.eclipse.equinox.p2.name", "value", name); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		w.emptyElement("property", "name", "org.eclipse.equinox.p2.description", "value", description); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		w.emptyElement("property", "name", "org.eclipse.equinox.p2.description.url", "value", descriptionUrl); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		w.emptyElement("property", "name", "org.eclipse.equinox.p2.type.group", "value", "true"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+		w.endElement();
+		
+		w.startElement("provides").attribute("size", "1"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		w.emptyElement("provided", "namespace", "org.eclipse.equinox.p2.iu", "name", id + ".feature.group", "version", version); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+		w.endElement();
+		
+		w.startElement("requires").attribute("size", "1"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		w.startElement("required") //$NON-NLS-1$
+			.attribute("namespace", "org.eclipse.equinox.p2.iu") //$NON-NLS-1$ //$NON-NLS-2$
+			.attribute("name", id + ".feature.jar") //$NON-NLS-1$ //$NON-NLS-2$
+			.attribute("range", "[" + version + "," + version + "]"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		w.textElement("filter", "(org.eclipse.update.install.features=true)"); //$NON-NLS-1$ //$NON-NLS-2$
+		w.endElement();
+		w.endElement();
+		
+		w.emptyElement("touchpoint", "id", "null", "version", "0.0.0"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+		
+		w.startElement("licenses").attribute("size", "1"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		w.textElement("license", license, "uri", licenseUrl, "url", licenseUrl); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		w.endElement();
+		
+		w.textElement("copyright", copyright, "uri", copyrightUrl, "url", copyrightUrl); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		
+		w.endElement();
+	}
+	
+	private void writePluginUnit(XmlWriter w, PluginDescriptor plugin, PluginRegistry registry) throws BundleException, XMLStreamException {
+		Map<String, String> props = plugin.getLocalization();
+		String id = plugin.getSymbolicName();
+		String version = plugin.getVersion();
+		String name = resolveWithProperties(plugin.getHeader("Bundle-Name"), props); //$NON-NLS-1$
+		String provider = resolveWithProperties(plugin.getHeader("Bundle-Vendor"), props); //$NON-NLS-1$
+		
+		// Parse the headers first, since each element's size precedes its children
+		String exportPackage = plugin.getHeader("Export-Package"); //$NON-NLS-1$
+		ManifestElement[] exports = StringUtil.isEmpty(exportPackage) ? new ManifestElement[0] : ManifestElement.parseHeader("Export-Package", exportPackage); //$NON-NLS-1$
+		String requireBundle = plugin.getHeader("Require-Bundle"); //$NON-NLS-1$
+		ManifestElement[] requiredBundles = StringUtil.isEmpty(requireBundle) ? new ManifestElement[0] : ManifestElement.parseHeader("Require-Bundle", requireBundle); //$NON-NLS-1$
+		String importPackages = plugin.getHeader("Import-Package"); //$NON-NLS-1$
+		ManifestElement[] imports = StringUtil.isEmpty(importPackages) ? new ManifestElement[0] : ManifestElement.parseHeader("Import-Package", importPackages); //$NON-NLS-1$
+		
+		String host = null;
+		String hostVersion = null;
+		String hostHeader = plugin.getHeader("Fragment-Host"); //$NON-NLS-1$
+		if(StringUtil.isNotEmpty(hostHeader)) {
+			String[] parts = StringUtil.splitString(hostHeader, ';');
+			String hostName = parts[0];
+			hostVersion = Stream.of(parts)
+					.filter(p -> p.startsWith("bundle-version=")) //$NON-NLS-1$
+					.findFirst()
+					.map(p -> p.substring("bundle-version=".length()+1)) //$NON-NLS-1$
+					.orElse(""); //$NON-NLS-1$
+			if(StringUtil.isNotEmpty(hostVersion)) {
+				if(hostVersion.startsWith("\"")) { //$NON-NLS-1$
+					hostVersion = hostVersion.substring(1, hostVersion.length()-1);
 				}
-			} catch(Exception e) {
-				throw new RuntimeException(e);
+			} else {
+				hostVersion = registry.findHighestVersion(hostName).orElse("0.0.0"); //$NON-NLS-1$
 			}
-		});
-		Files.list(dest.resolve("plugins")).forEach(plugin -> { //$NON-NLS-1$
-			try {
-				Manifest manifest = getPluginManifest(plugin);
-				Properties props = getPluginProperties(plugin);
-				String id = getPluginId(manifest);
-				String version = manifest.getMainAttributes().getValue("Bundle-Version"); //$NON-NLS-1$
-				String name = manifest.getMainAttributes().getValue("Bundle-Name"); //$NON-NLS-1$
-				name = resolveWithProperties(name, props);
-				String provider = manifest.getMainAttributes().getValue("Bundle-Vendor"); //$NON-NLS-1$
-				provider = resolveWithProperties(provider, props);
-				boolean fragment = StringUtil.isNotEmpty(manifest.getMainAttributes().getValue("Fragment-Host")); //$NON-NLS-1$
-				
-				Element unit = NSFODPDomUtil.createElement(units, "unit"); //$NON-NLS-1$
-				unit.setAttribute("id", id); //$NON-NLS-1$
-				unit.setAttribute("version", version); //$NON-NLS-1$
-				
-				{
-					Element update = NSFODPDomUtil.createElement(unit, "update"); //$NON-NLS-1$
-					update.setAttribute("id", id); //$NON-NLS-1$
-					update.setAttribute("range", "[0.0.0," + version + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-					update.setAttribute("severity", "0"); //$NON-NLS-1$ //$NON-NLS-2$
-				}
-				
-				{
-					Element properties = NSFODPDomUtil.createElement(unit, "properties"); //$NON-NLS-1$
-					properties.setAttribute("size", "2"); //$NON-NLS-1$ //$NON-NLS-2$
-					
-					Element propName = NSFODPDomUtil.createElement(properties, "property"); //$NON-NLS-1$
-					propName.setAttribute("name", "org.eclipse.equinox.p2.name"); //$NON-NLS-1$ //$NON-NLS-2$
-					propName.setAttribute("value", name); //$NON-NLS-1$
-					
-					Element propProvider = NSFODPDomUtil.createElement(properties, "provider"); //$NON-NLS-1$
-					propProvider.setAttribute("name", "org.eclipse.equinox.p2.provider"); //$NON-NLS-1$ //$NON-NLS-2$
-					propProvider.setAttribute("value", provider); //$NON-NLS-1$
-				}
-				
-				{
-					int[] providedSize = new int[] { 0 };
-					Element provides = NSFODPDomUtil.createElement(unit, "provides"); //$NON-NLS-1$
-					
-					Element providedIu = NSFODPDomUtil.createElement(provides, "provided"); //$NON-NLS-1$
-					providedIu.setAttribute("namespace", "org.eclipse.equinox.p2.iu"); //$NON-NLS-1$ //$NON-NLS-2$
-					providedIu.setAttribute("name", id); //$NON-NLS-1$
-					providedIu.setAttribute("version", version); //$NON-NLS-1$
-					
-					Element providedBundle = NSFODPDomUtil.createElement(provides, "provided"); //$NON-NLS-1$
-					providedBundle.setAttribute("namespace", "osgi.bundle"); //$NON-NLS-1$ //$NON-NLS-2$
-					providedBundle.setAttribute("name", id); //$NON-NLS-1$
-					providedBundle.setAttribute("version", version); //$NON-NLS-1$
-					
-					Element providedType = NSFODPDomUtil.createElement(provides, "provided"); //$NON-NLS-1$
-					providedType.setAttribute("namespace", "org.eclipse.equinox.p2.eclipse.type"); //$NON-NLS-1$ //$NON-NLS-2$
-					providedType.setAttribute("name", "bundle"); //$NON-NLS-1$ //$NON-NLS-2$
-					providedType.setAttribute("version", "1.0.0"); //$NON-NLS-1$ //$NON-NLS-2$
-					
-					String exportPackage = manifest.getMainAttributes().getValue("Export-Package"); //$NON-NLS-1$
-					if(StringUtil.isNotEmpty(exportPackage)) {
-						ManifestElement[] elements = ManifestElement.parseHeader("Export-Package", exportPackage); //$NON-NLS-1$
-						for(ManifestElement el : elements) {
-							providedSize[0]++;
-							
-							String packageVersion = el.getAttribute("version"); //$NON-NLS-1$
-							if(StringUtil.isEmpty(packageVersion)) {
-								packageVersion = "0.0.0"; //$NON-NLS-1$
-							}
-							Element exportElement = NSFODPDomUtil.createElement(provides, "provided"); //$NON-NLS-1$
-							exportElement.setAttribute("namespace", "java.package"); //$NON-NLS-1$ //$NON-NLS-2$
-							exportElement.setAttribute("name", el.getValue()); //$NON-NLS-1$
-							exportElement.setAttribute("version", packageVersion); //$NON-NLS-1$
-						}
-					}
-					
-					
-					if(fragment) {
-						providedSize[0]++;
-						String hostHeader = manifest.getMainAttributes().getValue("Fragment-Host"); //$NON-NLS-1$
-						String[] parts = StringUtil.splitString(hostHeader, ';');
-						String host = parts[0];
-						String hostVersion = Stream.of(parts)
-								.filter(p -> p.startsWith("bundle-version=")) //$NON-NLS-1$
-								.findFirst()
-								.map(p -> p.substring("bundle-version=".length()+1)) //$NON-NLS-1$
-								.orElse(""); //$NON-NLS-1$
-						if(StringUtil.isNotEmpty(hostVersion)) {
-							if(hostVersion.startsWith("\"")) { //$NON-NLS-1$
-								hostVersion = hostVersion.substring(1, hostVersion.length()-1);
-							}
-						} else {
-							Optional<String> hostPlugin = Files.list(dest.resolve("plugins")) //$NON-NLS-1$
-									.map(Path::getFileName)
-									.map(Path::toString)
-									.filter(p -> p.startsWith(host))
-									.findFirst();
-							if(hostPlugin.isPresent()) {
-								hostVersion = hostPlugin.get().substring(host.length()+1, hostPlugin.get().length()-".jar".length()); //$NON-NLS-1$
-							} else {
-								hostVersion = "0.0.0"; //$NON-NLS-1$
-							}
-						}
-						
-						Element providedFragment = NSFODPDomUtil.createElement(provides, "provided"); //$NON-NLS-1$
-						providedFragment.setAttribute("namespace", "osgi.fragment"); //$NON-NLS-1$ //$NON-NLS-2$
-						providedFragment.setAttribute("name", host); //$NON-NLS-1$
-						providedFragment.setAttribute("version", hostVersion); //$NON-NLS-1$
-					}
-					provides.setAttribute("size", String.valueOf(providedSize[0])); //$NON-NLS-1$
-				}
-				
-				{
-					Element requires = NSFODPDomUtil.createElement(unit, "requires"); //$NON-NLS-1$
-					int[] requiresCount = new int[] { 0 };
-					
-					String requireBundle = manifest.getMainAttributes().getValue("Require-Bundle"); //$NON-NLS-1$
-					if(StringUtil.isNotEmpty(requireBundle)) {
-						ManifestElement[] elements = ManifestElement.parseHeader("Require-Bundle", requireBundle); //$NON-NLS-1$
-						for(ManifestElement el : elements) {
-							Element required = NSFODPDomUtil.createElement(requires, "required"); //$NON-NLS-1$
-							required.setAttribute("namespace", "osgi.bundle"); //$NON-NLS-1$ //$NON-NLS-2$
-							
-							String requireVersion = el.getAttribute("bundle-version"); //$NON-NLS-1$
-							if(StringUtil.isEmpty(requireVersion)) {
-								requireVersion = "0.0.0"; //$NON-NLS-1$
-							}
-							boolean optional = "optional".equals(el.getDirective("resolution")); //$NON-NLS-1$ //$NON-NLS-2$
-							
-							required.setAttribute("name", el.getValue()); //$NON-NLS-1$
-							required.setAttribute("range", requireVersion); //$NON-NLS-1$
-							required.setAttribute("optional", Boolean.toString(optional)); //$NON-NLS-1$
-						}
-					}
-					
-					String importPackages = manifest.getMainAttributes().getValue("Import-Package"); //$NON-NLS-1$
-					if(StringUtil.isNotEmpty(importPackages)) {
-						ManifestElement[] elements = ManifestElement.parseHeader("Import-Package", importPackages); //$NON-NLS-1$
-						for(ManifestElement el : elements) {
-							Element required = NSFODPDomUtil.createElement(requires, "required"); //$NON-NLS-1$
-							required.setAttribute("namespace", "java.package"); //$NON-NLS-1$ //$NON-NLS-2$
-							
-							String requireVersion = el.getAttribute("version"); //$NON-NLS-1$
-							if(StringUtil.isEmpty(requireVersion)) {
-								requireVersion = "0.0.0"; //$NON-NLS-1$
-							}
-							boolean optional = "optional".equals(el.getDirective("resolution")); //$NON-NLS-1$ //$NON-NLS-2$
-							
-							required.setAttribute("name", el.getValue()); //$NON-NLS-1$
-							required.setAttribute("range", requireVersion); //$NON-NLS-1$
-							required.setAttribute("optional", Boolean.toString(optional)); //$NON-NLS-1$
-						}
-					}
-					
-					requires.setAttribute("size", String.valueOf(requiresCount[0])); //$NON-NLS-1$
-				}
-				
-				{
-					Element artifacts = NSFODPDomUtil.createElement(unit, "artifacts"); //$NON-NLS-1$
-					artifacts.setAttribute("size", "1"); //$NON-NLS-1$ //$NON-NLS-2$
-					
-					Element artifact = NSFODPDomUtil.createElement(artifacts, "artifact"); //$NON-NLS-1$
-					artifact.setAttribute("classifier", "osgi.bundle"); //$NON-NLS-1$ //$NON-NLS-2$
-					artifact.setAttribute("id", id); //$NON-NLS-1$
-					artifact.setAttribute("version", version); //$NON-NLS-1$
-				}
-				
-				{
-					Element touchpoint = NSFODPDomUtil.createElement(unit, "touchpoint"); //$NON-NLS-1$
-					touchpoint.setAttribute("id", "org.eclipse.equinox.p2.osgi"); //$NON-NLS-1$ //$NON-NLS-2$
-					touchpoint.setAttribute("version", "1.0.0"); //$NON-NLS-1$ //$NON-NLS-2$
-				}
-				{
-					Element touchpointData = NSFODPDomUtil.createElement(unit, "touchpointData"); //$NON-NLS-1$
-					touchpointData.setAttribute("size", "1"); //$NON-NLS-1$ //$NON-NLS-2$
-					
-					Element instructions = NSFODPDomUtil.createElement(touchpointData, "instructions"); //$NON-NLS-1$
-					instructions.setAttribute("size", "2"); //$NON-NLS-1$ //$NON-NLS-2$
-					
-					Element instZipped = NSFODPDomUtil.createElement(instructions, "instruction"); //$NON-NLS-1$
-					instZipped.setAttribute("key", "zipped"); //$NON-NLS-1$ //$NON-NLS-2$
-					instZipped.setTextContent("false"); //$NON-NLS-1$
-					
-					Element instManifest = NSFODPDomUtil.createElement(instructions, "manifest"); //$NON-NLS-1$
-					instManifest.setAttribute("key", "manifest"); //$NON-NLS-1$ //$NON-NLS-2$
-					// TODO trim this down?
-					try(JarFile jar = new JarFile(plugin.toFile())) {
-						ZipEntry manifestEntry = jar.getEntry("META-INF/MANIFEST.MF"); //$NON-NLS-1$
-						try(InputStream is = jar.getInputStream(manifestEntry)) {
-							instManifest.setTextContent(StreamUtil.readString(is));
-						}
-					}
-				}
-			} catch(Exception e) {
-				throw new RuntimeException(MessageFormat.format("Encountered exception processing bundle {0}", plugin), e);
+			host = hostName;
+		}
+		
+		w.startElement("unit") //$NON-NLS-1$
+			.attribute("id", id) //$NON-NLS-1$
+			.attribute("version", version); //$NON-NLS-1$
+		
+		w.emptyElement("update", "id", id, "range", "[0.0.0," + version + ")", "severity", "0"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$
+		
+		w.startElement("properties").attribute("size", "2"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		w.emptyElement("property", "name", "org.eclipse.equinox.p2.name", "value", name); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		w.emptyElement("property", "name", "org.eclipse.equinox.p2.provider", "value", provider); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		w.endElement();
+		
+		w.startElement("provides").attribute("size", String.valueOf(3 + exports.length + (host == null ? 0 : 1))); //$NON-NLS-1$ //$NON-NLS-2$
+		w.emptyElement("provided", "namespace", "org.eclipse.equinox.p2.iu", "name", id, "version", version); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+		w.emptyElement("provided", "namespace", "osgi.bundle", "name", id, "version", version); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+		w.emptyElement("provided", "namespace", "org.eclipse.equinox.p2.eclipse.type", "name", "bundle", "version", "1.0.0"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$
+		for(ManifestElement el : exports) {
+			String packageVersion = el.getAttribute("version"); //$NON-NLS-1$
+			if(StringUtil.isEmpty(packageVersion)) {
+				packageVersion = "0.0.0"; //$NON-NLS-1$
 			}
-		});
+			w.emptyElement("provided", "namespace", "java.package", "name", el.getValue(), "version", packageVersion); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+		}
+		if(host != null) {
+			w.emptyElement("provided", "namespace", "osgi.fragment", "name", host, "version", hostVersion); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+		}
+		w.endElement();
 		
-
-		units.setAttribute("size", String.valueOf(size[0])); //$NON-NLS-1$
+		w.startElement("requires").attribute("size", String.valueOf(requiredBundles.length + imports.length)); //$NON-NLS-1$ //$NON-NLS-2$
+		for(ManifestElement el : requiredBundles) {
+			writeRequired(w, "osgi.bundle", el, "bundle-version"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		for(ManifestElement el : imports) {
+			writeRequired(w, "java.package", el, "version"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		w.endElement();
+		
+		w.startElement("artifacts").attribute("size", "1"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		w.emptyElement("artifact", "classifier", "osgi.bundle", "id", id, "version", version); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+		w.endElement();
+		
+		w.emptyElement("touchpoint", "id", "org.eclipse.equinox.p2.osgi", "version", "1.0.0"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
 		
-		return doc;
+		w.startElement("touchpointData").attribute("size", "1"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		w.startElement("instructions").attribute("size", "2"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		w.textElement("instruction", "false", "key", "zipped"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		// TODO trim this down?
+		w.textElement("instruction", plugin.getRawManifest(), "key", "manifest"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		w.endElement();
+		w.endElement();
+		
+		w.endElement();
+	}
+	
+	private void writeRequired(XmlWriter w, String namespace, ManifestElement el, String versionAttribute) throws XMLStreamException {
+		String requireVersion = el.getAttribute(versionAttribute);
+		if(StringUtil.isEmpty(requireVersion)) {
+			requireVersion = "0.0.0"; //$NON-NLS-1$
+		}
+		boolean optional = "optional".equals(el.getDirective("resolution")); //$NON-NLS-1$ //$NON-NLS-2$
+		w.emptyElement("required", //$NON-NLS-1$
+			"namespace", namespace, //$NON-NLS-1$
+			"name", el.getValue(), //$NON-NLS-1$
+			"range", requireVersion, //$NON-NLS-1$
+			"optional", Boolean.toString(optional) //$NON-NLS-1$
+		);
 	}
 
-	private Document getFeatureXml(Path feature) {
+	private List<FeatureDescriptor> readFeatures() throws IOException {
+		return listJars("features").parallelStream() //$NON-NLS-1$
+			.map(this::readFeature)
+			.sorted(FEATURE_ORDER)
+			.collect(Collectors.toList());
+	}
+
+	/**
+	 * Lists the JAR files in a directory of the repository, which may be missing in
+	 * a hand-assembled repository with no features.
+	 */
+	private List<Path> listJars(String dirName) throws IOException {
+		Path dir = dest.resolve(dirName);
+		if(!Files.isDirectory(dir)) {
+			return Collections.emptyList();
+		}
+		try(Stream<Path> files = Files.list(dir)) {
+			return files.filter(Files::isRegularFile)
+				.filter(file -> file.getFileName().toString().toLowerCase().endsWith(".jar")) //$NON-NLS-1$
+				.collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * Reads everything needed from a feature JAR with a single open of the file, or
+	 * not at all when the descriptor cache holds an unchanged copy.
+	 */
+	private FeatureDescriptor readFeature(Path feature) {
 		try {
+			if(descriptorCache != null) {
+				Optional<FeatureDescriptor> cached = descriptorCache.findFeature(feature);
+				if(cached.isPresent()) {
+					return cached.get();
+				}
+			}
+			Document featureXml;
+			Map<String, String> localization;
 			try(JarFile featureJar = new JarFile(feature.toFile())) {
 				ZipEntry xmlEntry = featureJar.getEntry("feature.xml"); //$NON-NLS-1$
 				try(InputStream is = featureJar.getInputStream(xmlEntry)) {
-					return NSFODPDomUtil.createDocument(is);
+					featureXml = NSFODPDomUtil.createDocument(is);
 				}
+				localization = readProperties(featureJar, "feature.properties"); //$NON-NLS-1$
 			}
+			Element rootElement = featureXml.getDocumentElement();
+			FeatureDescriptor result = new FeatureDescriptor(
+				feature,
+				rootElement.getAttribute("id"), //$NON-NLS-1$
+				rootElement.getAttribute("version"), //$NON-NLS-1$
+				rootElement.getAttribute("label"), //$NON-NLS-1$
+				selectTextValue(featureXml, "/feature/description"), //$NON-NLS-1$
+				selectAttribute(featureXml, "/feature/description", "url"), //$NON-NLS-1$ //$NON-NLS-2$
+				selectTextValue(featureXml, "/feature/license"), //$NON-NLS-1$
+				selectAttribute(featureXml, "/feature/license", "url"), //$NON-NLS-1$ //$NON-NLS-2$
+				selectTextValue(featureXml, "/feature/copyright"), //$NON-NLS-1$
+				selectAttribute(featureXml, "/feature/copyright", "url"), //$NON-NLS-1$ //$NON-NLS-2$
+				localization,
+				Files.size(feature),
+				Files.probeContentType(feature)
+			);
+			if(descriptorCache != null) {
+				descriptorCache.putFeature(result);
+			}
+			return result;
 		} catch(IOException e) {
 			throw new RuntimeException(e);
 		}
 	}
-	
-	private Properties getFeatureProperties(Path feature) {
+
+	private List<PluginDescriptor> readPlugins() throws IOException {
+		return listJars("plugins").parallelStream() //$NON-NLS-1$
+			.map(this::readPlugin)
+			.filter(Objects::nonNull)
+			.sorted(PLUGIN_ORDER)
+			.collect(Collectors.toList());
+	}
+
+	/**
+	 * Reads everything needed from a plugin JAR with a single open of the file, or
+	 * not at all when the descriptor cache holds an unchanged copy.
+	 *
+	 * @return the descriptor, or {@code null} if the JAR is not an OSGi bundle
+	 */
+	private PluginDescriptor readPlugin(Path plugin) {
 		try {
-			try(JarFile jar = new JarFile(feature.toFile())) {
-				ZipEntry entry = jar.getEntry("feature.properties"); //$NON-NLS-1$
-				if(entry == null) {
-					return new Properties();
-				}
-				try(InputStream is = jar.getInputStream(entry)) {
-					Properties result = new Properties();
-					result.load(is);
-					return result;
+			if(descriptorCache != null) {
+				Optional<PluginDescriptor> cached = descriptorCache.findPlugin(plugin);
+				if(cached.isPresent()) {
+					return cached.get();
 				}
 			}
-		} catch(IOException e) {
-			throw new RuntimeException(e);
-		}
-	}
-	
-	private Manifest getPluginManifest(Path plugin) {
-		try {
 			try(JarFile pluginJar = new JarFile(plugin.toFile())) {
-				return pluginJar.getManifest();
-			}
-		} catch(IOException e) {
-			throw new RuntimeException(e);
-		}
-	}
-	
-	private Properties getPluginProperties(Path plugin) {
-		try {
-			try(JarFile jar = new JarFile(plugin.toFile())) {
-				ZipEntry entry = jar.getEntry("plugin.properties"); //$NON-NLS-1$
-				if(entry == null) {
-					entry = jar.getEntry("fragment.properties"); //$NON-NLS-1$
+				ZipEntry manifestEntry = pluginJar.getEntry(JarFile.MANIFEST_NAME);
+				if(manifestEntry == null) {
+					// Not a bundle
+					return null;
 				}
-				if(entry == null) {
-					return new Properties();
+				ByteArrayOutputStream manifestBytes = new ByteArrayOutputStream();
+				try(InputStream is = pluginJar.getInputStream(manifestEntry)) {
+					StreamUtil.copyStream(is, manifestBytes);
 				}
-				try(InputStream is = jar.getInputStream(entry)) {
-					Properties result = new Properties();
-					result.load(is);
-					return result;
+				Manifest manifest = new Manifest(new ByteArrayInputStream(manifestBytes.toByteArray()));
+				Map<String, String> headers = new LinkedHashMap<>();
+				manifest.getMainAttributes().forEach((key, value) -> headers.put(String.valueOf(key), String.valueOf(value)));
+				if(StringUtil.isEmpty(manifest.getMainAttributes().getValue("Bundle-SymbolicName"))) { //$NON-NLS-1$
+					return null;
 				}
+				String rawManifest = StreamUtil.readString(new ByteArrayInputStream(manifestBytes.toByteArray()));
+
+				Map<String, String> localization;
+				if(pluginJar.getEntry("plugin.properties") != null) { //$NON-NLS-1$
+					localization = readProperties(pluginJar, "plugin.properties"); //$NON-NLS-1$
+				} else {
+					localization = readProperties(pluginJar, "fragment.properties"); //$NON-NLS-1$
+				}
+
+				PluginDescriptor result = new PluginDescriptor(plugin, headers, rawManifest, localization, Files.size(plugin));
+				if(descriptorCache != null) {
+					descriptorCache.putPlugin(result);
+				}
+				return result;
 			}
-		} catch(IOException e) {
-			throw new RuntimeException(e);
+		} catch(Exception e) {
+			throw new RuntimeException(MessageFormat.format("Encountered exception processing bundle {0}", plugin), e);
 		}
 	}
-	
-	private String resolveWithProperties(String value, Properties properties) {
-		String v = StringUtil.toString(value);
-		for(Map.Entry<Object, Object> prop : properties.entrySet()) {
-			String key = StringUtil.toString(prop.getKey());
-			String val = StringUtil.toString(prop.getValue());
-			v = v.replace("%" + key, val); //$NON-NLS-1$
+
+	/**
+	 * Reads a properties file from the JAR, or an empty map if it is not present.
+	 */
+	private Map<String, String> readProperties(JarFile jar, String name) throws IOException {
+		Map<String, String> result = new LinkedHashMap<>();
+		ZipEntry entry = jar.getEntry(name);
+		if(entry != null) {
+			Properties props = new Properties();
+			try(InputStream is = jar.getInputStream(entry)) {
+				props.load(is);
+			}
+			for(Map.Entry<Object, Object> prop : props.entrySet()) {
+				result.put(StringUtil.toString(prop.getKey()), StringUtil.toString(prop.getValue()));
+			}
 		}
-		return v;
+		return result;
 	}
 	
-	private String getPluginId(Manifest manifest) {
-		String symbolicName = manifest.getMainAttributes().getValue("Bundle-SymbolicName"); //$NON-NLS-1$
-		int semiIndex = symbolicName.indexOf(';');
-		if(semiIndex > -1) {
-			symbolicName = symbolicName.substring(0, semiIndex);
-		}
-		return symbolicName;
+	private String resolveWithProperties(String value, Map<String, String> properties) {
+		return StringUtil.toString(NLSUtil.resolve(value, properties));
 	}
 	
 	private String selectTextValue(Node node, String xpathString) {
@@ -638,4 +690,14 @@ public class GenerateP2MetadataTask implements Runnable {
 			return ""; //$NON-NLS-1$
 		}
 	}
+	
+	@FunctionalInterface
+	private interface XmlContent {
+		void write(XmlWriter w) throws XMLStreamException;
+	}
+	
+	@FunctionalInterface
+	private interface IOCallable<T> {
+		T call() throws IOException;
+	}
 }
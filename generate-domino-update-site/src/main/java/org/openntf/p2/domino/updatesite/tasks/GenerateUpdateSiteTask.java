@@ -15,55 +15,68 @@
  */
 package org.openntf.p2.domino.updatesite.tasks;
 
-import com.ibm.commons.util.PathUtil;
 import com.ibm.commons.util.StringUtil;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.UncheckedIOException;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.FileSystem;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
-import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.plugin.logging.Log;
-import org.openntf.nsfodp.commons.NSFODPUtil;
 import org.openntf.nsfodp.commons.xml.NSFODPDomUtil;
 import org.openntf.p2.domino.updatesite.Messages;
+import org.openntf.p2.domino.updatesite.util.JarWriter;
 import org.openntf.p2.domino.updatesite.util.VersionUtil;
 import org.tukaani.xz.XZInputStream;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
 
 public class GenerateUpdateSiteTask implements Runnable {
 
@@ -97,12 +110,34 @@ public class GenerateUpdateSiteTask implements Runnable {
 	 */
 	public static final String UPDATE_SITE_202312 = "https://download.eclipse.org/releases/2023-12/202312061001/"; //$NON-NLS-1$
 
+	/**
+	 * The default number of concurrent source bundle downloads.
+	 * @since 6.1.0
+	 */
+	public static final int DEFAULT_DOWNLOAD_THREADS = 4;
+
 	private final Path dominoDir;
 	private final Path destDir;
 	private final boolean flattenEmbeds;
 	private final boolean onlyDots;
 	private final Log log;
 	private String eclipseUpdateSite = UPDATE_SITE_NEON;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private boolean incremental = false;
+	private int downloadThreads = DEFAULT_DOWNLOAD_THREADS;
+	private Path cacheDir;
+	private long maxCacheSize = SourceBundleCache.DEFAULT_MAX_SIZE;
+	private boolean offline = false;
+	private Long outputTimestamp;
+	private boolean xzMetadata = false;
+	private SourceBundleCache sourceCache;
+	private final Map<Path, DestinationClaim> destinationClaims = new ConcurrentHashMap<>();
+	private SiteFingerprints fingerprints;
+	private SourceBundleDownloader downloader;
+	private CompletableFuture<EclipseArtifactIndex> eclipseArtifacts;
+	private final Queue<CompletableFuture<?>> sourceDownloads = new ConcurrentLinkedQueue<>();
+	private final PluginRegistry pluginRegistry = new PluginRegistry();
+	private Path destPlugins;
 
 	public GenerateUpdateSiteTask(Path dominoDir, Path destDir, boolean flattenEmbeds, boolean onlyDots, Log log) {
 		super();
@@ -113,6 +148,89 @@ public class GenerateUpdateSiteTask implements Runnable {
 		this.log = log;
 	}
 
+	/**
+	 * Sets the maximum number of artifacts to copy concurrently. Values less than 1
+	 * use the number of available processors.
+	 *
+	 * @param threads the size of the copy thread pool
+	 * @since 6.1.0
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
+	}
+
+	/**
+	 * Sets whether the task should reuse the contents of an existing destination
+	 * directory. When enabled, sources that are unchanged since the previous run are
+	 * not copied again and outputs whose sources have disappeared are removed.
+	 *
+	 * @param incremental whether to regenerate the site incrementally
+	 * @see SiteFingerprints
+	 * @since 6.1.0
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
+	/**
+	 * Sets the maximum number of source bundles to download concurrently. Values less
+	 * than 1 use {@link #DEFAULT_DOWNLOAD_THREADS}.
+	 *
+	 * @param downloadThreads the size of the download thread pool
+	 * @since 6.1.0
+	 */
+	public void setDownloadThreads(int downloadThreads) {
+		this.downloadThreads = downloadThreads < 1 ? DEFAULT_DOWNLOAD_THREADS : downloadThreads;
+	}
+
+	/**
+	 * Sets the directory used to cache downloaded files between runs.
+	 *
+	 * @param cacheDir the cache directory, or {@code null} to disable caching
+	 * @param maxCacheSize the maximum size of cached source bundles, in bytes, where
+	 *        0 disables the source bundle cache but not the artifact index cache
+	 * @see SourceBundleCache
+	 * @since 6.1.0
+	 */
+	public void setCacheDir(Path cacheDir, long maxCacheSize) {
+		this.cacheDir = cacheDir;
+		this.maxCacheSize = maxCacheSize;
+	}
+
+	/**
+	 * Sets whether to avoid all network access, using only source bundles already in
+	 * the cache directory.
+	 *
+	 * @param offline whether to work offline
+	 * @since 6.1.0
+	 */
+	public void setOffline(boolean offline) {
+		this.offline = offline;
+	}
+
+	/**
+	 * Sets a fixed time to record in the generated p2 metadata, in place of the
+	 * current time, so that regenerating an unchanged site gives identical files.
+	 *
+	 * @param outputTimestamp the timestamp in milliseconds since the epoch, or
+	 *        {@code null} to use the current time
+	 * @since 6.1.0
+	 */
+	public void setOutputTimestamp(Long outputTimestamp) {
+		this.outputTimestamp = outputTimestamp;
+	}
+
+	/**
+	 * Sets whether to also write XZ-compressed p2 metadata and a {@code p2.index}.
+	 *
+	 * @param xzMetadata whether to write XZ metadata
+	 * @see GenerateP2MetadataTask#setXzMetadata(boolean)
+	 * @since 6.1.0
+	 */
+	public void setXzMetadata(boolean xzMetadata) {
+		this.xzMetadata = xzMetadata;
+	}
+
 	@Override
 	public void run() {
 		Path domino = checkDirectory(dominoDir);
@@ -125,22 +243,37 @@ public class GenerateUpdateSiteTask implements Runnable {
 			// Which update site to use for source codes?
 			calculateEclipseUpdateSite(eclipsePaths);
 
-			Document eclipseArtifacts = fetchEclipseArtifacts();
+			// Load the source index in the background while artifacts are copied
+			this.downloader = new SourceBundleDownloader(eclipseUpdateSite, downloadThreads, log);
+			if(cacheDir != null) {
+				this.sourceCache = new SourceBundleCache(cacheDir, maxCacheSize, log);
+			}
+			this.eclipseArtifacts = fetchEclipseArtifacts();
 
 			Path dest = mkDir(destDir);
 			Path destFeatures = mkDir(dest.resolve("features")); //$NON-NLS-1$
 			Path destPlugins = mkDir(dest.resolve("plugins")); //$NON-NLS-1$
+			this.destPlugins = destPlugins;
+			if(incremental) {
+				String options = StringUtil.format("flattenEmbeds={0};onlyDots={1}", flattenEmbeds, onlyDots); //$NON-NLS-1$
+				this.fingerprints = SiteFingerprints.load(dest, domino, options);
+			}
 
+			List<ArtifactCopy> copies = new ArrayList<>();
 			for(Path eclipse : eclipsePaths) {
 				Path features = eclipse.resolve("features"); //$NON-NLS-1$
 				if(Files.isDirectory(features)) {
-					copyArtifacts(features, destFeatures, null);
+					listArtifacts(features, destFeatures, false, copies);
 				}
 				Path plugins = eclipse.resolve("plugins"); //$NON-NLS-1$
 				if(Files.isDirectory(plugins)) {
-					copyArtifacts(plugins, destPlugins, eclipseArtifacts);
+					listArtifacts(plugins, destPlugins, true, copies);
 				}
 			}
+			copyArtifacts(copies);
+			if(Thread.currentThread().isInterrupted()) {
+				return;
+			}
 
 			String baseVersion = readNotesVersion(notesJar);
 			if(StringUtils.isEmpty(baseVersion)) {
@@ -157,29 +290,62 @@ public class GenerateUpdateSiteTask implements Runnable {
 			// "-1500" is taken from common suffixes seen from IBM/HCL
 			String version = baseVersion + "-1500"; //$NON-NLS-1$
 
-			createNotesJarWrapper(notesJar, baseVersion, version, destPlugins);
-			createsFauxNotesJarFragment(notesJar, version, destPlugins);
+			String notesVersion = baseVersion;
+			generate(notesJar, version, () -> {
+				List<Path> outputs = new ArrayList<>();
+				createNotesJarWrapper(notesJar, notesVersion, version, destPlugins).ifPresent(outputs::add);
+				outputs.add(createsFauxNotesJarFragment(notesJar, version, destPlugins));
+				return outputs;
+			});
 
 			// Skip xspBootstrap and NAPI if only generating dots
 			if(! onlyDots) {
 				Optional<Path> xspBootstrap = findXspBootstrap(domino);
 				if(xspBootstrap.isPresent()) {
-					createXspBootstrap(xspBootstrap.get(), domino, version, destPlugins);
+					generate(xspBootstrap.get(), version, () -> Collections.singletonList(createXspBootstrap(xspBootstrap.get(), domino, version, destPlugins)));
 				} else {
 					log.info(Messages.getString("GenerateUpdateSiteTask.0")); //$NON-NLS-1$
 				}
 
 				// Build a NAPI fragment if on 12.0.2+
-				findNapiJar(domino).ifPresent(napiJar -> createNapiBundle(napiJar, version, destPlugins));
+				Optional<Path> napiJar = findNapiJar(domino);
+				if(napiJar.isPresent()) {
+					patchNapiBundle(destPlugins);
+					generate(napiJar.get(), version, () -> Collections.singletonList(createNapiFragment(napiJar.get(), version, destPlugins)));
+				}
+			}
+
+			awaitSourceDownloads();
+			if(Thread.currentThread().isInterrupted()) {
+				return;
+			}
+
+			if(fingerprints != null) {
+				removeStaleOutputs(destFeatures, destPlugins);
 			}
 
 			// Create site.xml
 			buildSiteXml(dest);
 
 			// Generate p2 metadata based on the site.xml
-			new GenerateP2MetadataTask(dest).run();
+			GenerateP2MetadataTask p2Task = new GenerateP2MetadataTask(dest);
+			p2Task.setThreads(threads);
+			p2Task.setXzMetadata(xzMetadata);
+			p2Task.setIncremental(incremental);
+			if(outputTimestamp != null) {
+				p2Task.setTimestamp(outputTimestamp);
+			}
+			p2Task.run();
+
+			if(fingerprints != null) {
+				fingerprints.save();
+			}
 		} catch(Exception e) {
 			throw new RuntimeException(e);
+		} finally {
+			if(this.downloader != null) {
+				this.downloader.close();
+			}
 		}
 	}
 
@@ -212,202 +378,249 @@ public class GenerateUpdateSiteTask implements Runnable {
 	}
 
 	// Create a Notes.jar wrapper bundle pair
-	private void createNotesJarWrapper(Path notesJar, String baseVersion, String version, Path destPlugins) throws IOException {
+	private Optional<Path> createNotesJarWrapper(Path notesJar, String baseVersion, String version, Path destPlugins) throws IOException {
 		String bundleId = "com.ibm.notes.java.api"; //$NON-NLS-1$
+		Path plugin = destPlugins.resolve(bundleId + "_" + version + ".jar"); //$NON-NLS-1$ //$NON-NLS-2$
 
-		try(Stream<Path> pluginStream = Files.list(destPlugins)) {
-			if(pluginStream.anyMatch(p -> p.getFileName().toString().startsWith(bundleId + '_' + baseVersion))) {
-				// In case it already exists, skip
-				return;
-			}
+		// Ignore a wrapper left over from a previous incremental run
+		boolean exists = pluginRegistry.getVersions(bundleId).entrySet().stream()
+			.filter(e -> !e.getValue().equals(plugin))
+			.anyMatch(e -> e.getKey().startsWith(baseVersion));
+		if(exists) {
+			// In case it already exists, skip
+			return Optional.empty();
 		}
 
 		// Create the Notes API plugin for the true version, since the shipping plugin one is often out of step
-		Path plugin = destPlugins.resolve(bundleId + "_" + version + ".jar"); //$NON-NLS-1$ //$NON-NLS-2$
-		try(OutputStream fos = Files.newOutputStream(plugin, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
-			try(JarOutputStream jos = new JarOutputStream(fos)) {
-				jos.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF")); //$NON-NLS-1$
-				Manifest manifest = new Manifest();
-				Attributes attrs = manifest.getMainAttributes();
-				attrs.putValue("Manifest-Version", "1.0"); //$NON-NLS-1$ //$NON-NLS-2$
-				attrs.putValue("Bundle-SymbolicName", bundleId + ";singleton:=true"); //$NON-NLS-1$ //$NON-NLS-2$
-				attrs.putValue("Bundle-Vendor", "IBM"); //$NON-NLS-1$ //$NON-NLS-2$
-				attrs.putValue("Bundle-Name", "Notes Java API"); //$NON-NLS-1$ //$NON-NLS-2$
-				attrs.putValue("Bundle-Version", version); //$NON-NLS-1$
-				attrs.putValue("Bundle-ManifestVersion", "2"); //$NON-NLS-1$ //$NON-NLS-2$
-				attrs.putValue("Eclipse-ExtensibleAPI", "true"); //$NON-NLS-1$ //$NON-NLS-2$
-
-				// Find the packages to export from the Notes.jar
-				try(JarFile notesJarFile = new JarFile(notesJar.toFile())) {
-					String exports = notesJarFile.stream()
-												 .map(jarEntry -> Paths.get(jarEntry.getName()).getParent())
-												 .filter(Objects::nonNull)
-												 .map(path -> path.toString().replace('/', '.').replace('\\', '.'))
-												 .distinct()
-												 .filter(name -> !"META-INF".equals(name)) //$NON-NLS-1$
-												 .collect(Collectors.joining(",")); //$NON-NLS-1$
-
-					attrs.putValue("Export-Package", exports); //$NON-NLS-1$
-				}
-
-				manifest.write(jos);
-				jos.closeEntry();
+		Files.deleteIfExists(plugin);
+		try(JarWriter jar = new JarWriter(plugin)) {
+			Manifest manifest = new Manifest();
+			Attributes attrs = manifest.getMainAttributes();
+			attrs.putValue("Manifest-Version", "1.0"); //$NON-NLS-1$ //$NON-NLS-2$
+			attrs.putValue("Bundle-SymbolicName", bundleId + ";singleton:=true"); //$NON-NLS-1$ //$NON-NLS-2$
+			attrs.putValue("Bundle-Vendor", "IBM"); //$NON-NLS-1$ //$NON-NLS-2$
+			attrs.putValue("Bundle-Name", "Notes Java API"); //$NON-NLS-1$ //$NON-NLS-2$
+			attrs.putValue("Bundle-Version", version); //$NON-NLS-1$
+			attrs.putValue("Bundle-ManifestVersion", "2"); //$NON-NLS-1$ //$NON-NLS-2$
+			attrs.putValue("Eclipse-ExtensibleAPI", "true"); //$NON-NLS-1$ //$NON-NLS-2$
+
+			// Find the packages to export from the Notes.jar
+			try(JarFile notesJarFile = new JarFile(notesJar.toFile())) {
+				String exports = notesJarFile.stream()
+											 .map(jarEntry -> Paths.get(jarEntry.getName()).getParent())
+											 .filter(Objects::nonNull)
+											 .map(path -> path.toString().replace('/', '.').replace('\\', '.'))
+											 .distinct()
+											 .filter(name -> !"META-INF".equals(name)) //$NON-NLS-1$
+											 .collect(Collectors.joining(",")); //$NON-NLS-1$
+
+				attrs.putValue("Export-Package", exports); //$NON-NLS-1$
 			}
+
+			jar.writeManifest(manifest);
 		}
+		return Optional.of(plugin);
 	}
 
-	private void createsFauxNotesJarFragment(Path notesJar, String version, Path destPlugins) throws IOException {
+	private Path createsFauxNotesJarFragment(Path notesJar, String version, Path destPlugins) throws IOException {
 
 		// Create the faux Notes.jar fragment
 		String fragmentId = "com.ibm.notes.java.api.win32.linux"; //$NON-NLS-1$
 		Path plugin = destPlugins.resolve(fragmentId + "_" + version + ".jar"); //$NON-NLS-1$ //$NON-NLS-2$
+		Files.deleteIfExists(plugin);
 
-		try(FileSystem zip = NSFODPUtil.openZipPath(plugin)) {
-			Path root = zip.getPath("/"); //$NON-NLS-1$
+		try(JarWriter jar = new JarWriter(plugin)) {
 			// Write the manifest file to declare it a fragment
-			Path manifestPath = root.resolve("META-INF").resolve("MANIFEST.MF"); //$NON-NLS-1$ //$NON-NLS-2$
-			Files.createDirectories(manifestPath.getParent());
-			try(OutputStream os = Files.newOutputStream(manifestPath, StandardOpenOption.CREATE)) {
-				Manifest manifest = new Manifest();
-				Attributes attrs = manifest.getMainAttributes();
-				attrs.putValue("Manifest-Version", "1.0"); //$NON-NLS-1$ //$NON-NLS-2$
-				if(!this.flattenEmbeds) {
-					attrs.putValue("Bundle-ClassPath", "Notes.jar"); //$NON-NLS-1$ //$NON-NLS-2$
-				}
-				attrs.putValue("Bundle-Vendor", "IBM"); //$NON-NLS-1$ //$NON-NLS-2$
-				attrs.putValue("Fragment-Host", "com.ibm.notes.java.api"); //$NON-NLS-1$ //$NON-NLS-2$
-				attrs.putValue("Bundle-Name", "Notes Java API Windows and Linux Fragment"); //$NON-NLS-1$ //$NON-NLS-2$
-				attrs.putValue("Bundle-SymbolicName", fragmentId + ";singleton:=true"); //$NON-NLS-1$ //$NON-NLS-2$
-				attrs.putValue("Bundle-Version", version); //$NON-NLS-1$
-				attrs.putValue("Bundle-ManifestVersion", "2"); //$NON-NLS-1$ //$NON-NLS-2$
-				manifest.write(os);
+			Manifest manifest = new Manifest();
+			Attributes attrs = manifest.getMainAttributes();
+			attrs.putValue("Manifest-Version", "1.0"); //$NON-NLS-1$ //$NON-NLS-2$
+			if(!this.flattenEmbeds) {
+				attrs.putValue("Bundle-ClassPath", "Notes.jar"); //$NON-NLS-1$ //$NON-NLS-2$
 			}
+			attrs.putValue("Bundle-Vendor", "IBM"); //$NON-NLS-1$ //$NON-NLS-2$
+			attrs.putValue("Fragment-Host", "com.ibm.notes.java.api"); //$NON-NLS-1$ //$NON-NLS-2$
+			attrs.putValue("Bundle-Name", "Notes Java API Windows and Linux Fragment"); //$NON-NLS-1$ //$NON-NLS-2$
+			attrs.putValue("Bundle-SymbolicName", fragmentId + ";singleton:=true"); //$NON-NLS-1$ //$NON-NLS-2$
+			attrs.putValue("Bundle-Version", version); //$NON-NLS-1$
+			attrs.putValue("Bundle-ManifestVersion", "2"); //$NON-NLS-1$ //$NON-NLS-2$
+			jar.writeManifest(manifest);
 
 			// Either copy in the contents of the source or just bring in the JAR outright
 			if(this.flattenEmbeds) {
-				try(FileSystem notesFs = NSFODPUtil.openZipPath(notesJar)) {
-					Path notesRoot = notesFs.getPath("/"); //$NON-NLS-1$
-					copyBundleEmbed(notesRoot, root);
-				}
+				copyEmbedEntries(notesJar, jar);
 			} else {
-				Files.copy(notesJar, root.resolve("Notes.jar")); //$NON-NLS-1$
+				jar.write("Notes.jar", notesJar); //$NON-NLS-1$
 			}
 
 		}
+		return plugin;
 	}
 
-	private void createXspBootstrap(Path xspBootstrap, Path domino, String version, Path destPlugins) throws IOException {
+	private Path createXspBootstrap(Path xspBootstrap, Path domino, String version, Path destPlugins) throws IOException {
 		// Create an XSP HTTP Bootstrap bundle, if possible
 		String bundleId = "com.ibm.xsp.http.bootstrap"; //$NON-NLS-1$
 		Path plugin = destPlugins.resolve(bundleId + "_" + version + ".jar"); //$NON-NLS-1$ //$NON-NLS-2$
-		try(FileSystem zip = NSFODPUtil.openZipPath(plugin)) {
-			Path root = zip.getPath("/"); //$NON-NLS-1$
+		Files.deleteIfExists(plugin);
+		try(JarWriter jar = new JarWriter(plugin)) {
 			// Write the manifest file to declare it a fragment
-			Path manifestPath = root.resolve("META-INF").resolve("MANIFEST.MF"); //$NON-NLS-1$ //$NON-NLS-2$
-			Files.createDirectories(manifestPath.getParent());
-			try(OutputStream os = Files.newOutputStream(manifestPath, StandardOpenOption.CREATE)) {
-				Manifest manifest = new Manifest();
-				Attributes attrs = manifest.getMainAttributes();
-				attrs.putValue("Manifest-Version", "1.0"); //$NON-NLS-1$ //$NON-NLS-2$
-				if(!this.flattenEmbeds) {
-					attrs.putValue("Bundle-ClassPath", "xsp.http.bootstrap.jar"); //$NON-NLS-1$ //$NON-NLS-2$
-				}
-				attrs.putValue("Bundle-Vendor", "IBM"); //$NON-NLS-1$ //$NON-NLS-2$
-				attrs.putValue("Bundle-Name", "XSP HTTP Bootstrap"); //$NON-NLS-1$ //$NON-NLS-2$
-				attrs.putValue("Bundle-SymbolicName", bundleId); //$NON-NLS-1$
-				attrs.putValue("Bundle-Version", version); //$NON-NLS-1$
-				attrs.putValue("Bundle-ManifestVersion", "2"); //$NON-NLS-1$ //$NON-NLS-2$
-				// Find the packages to export
-				try(JarFile notesJarFile = new JarFile(xspBootstrap.toFile())) {
-					String exports = notesJarFile.stream()
-												 .filter(jarEntry -> StringUtil.toString(jarEntry.getName())
-																			   .endsWith(".class")) //$NON-NLS-1$
-												 .map(jarEntry -> Paths.get(jarEntry.getName()).getParent())
-												 .filter(Objects::nonNull)
-												 .map(path -> path.toString().replace('/', '.').replace('\\', '.'))
-												 .distinct()
-												 .filter(name -> !"META-INF".equals(name)) //$NON-NLS-1$
-												 .collect(Collectors.joining(",")); //$NON-NLS-1$
-					attrs.putValue("Export-Package", exports); //$NON-NLS-1$
-				}
-				manifest.write(os);
+			Manifest manifest = new Manifest();
+			Attributes attrs = manifest.getMainAttributes();
+			attrs.putValue("Manifest-Version", "1.0"); //$NON-NLS-1$ //$NON-NLS-2$
+			if(!this.flattenEmbeds) {
+				attrs.putValue("Bundle-ClassPath", "xsp.http.bootstrap.jar"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			attrs.putValue("Bundle-Vendor", "IBM"); //$NON-NLS-1$ //$NON-NLS-2$
+			attrs.putValue("Bundle-Name", "XSP HTTP Bootstrap"); //$NON-NLS-1$ //$NON-NLS-2$
+			attrs.putValue("Bundle-SymbolicName", bundleId); //$NON-NLS-1$
+			attrs.putValue("Bundle-Version", version); //$NON-NLS-1$
+			attrs.putValue("Bundle-ManifestVersion", "2"); //$NON-NLS-1$ //$NON-NLS-2$
+			// Find the packages to export
+			try(JarFile notesJarFile = new JarFile(xspBootstrap.toFile())) {
+				String exports = notesJarFile.stream()
+											 .filter(jarEntry -> StringUtil.toString(jarEntry.getName())
+																		   .endsWith(".class")) //$NON-NLS-1$
+											 .map(jarEntry -> Paths.get(jarEntry.getName()).getParent())
+											 .filter(Objects::nonNull)
+											 .map(path -> path.toString().replace('/', '.').replace('\\', '.'))
+											 .distinct()
+											 .filter(name -> !"META-INF".equals(name)) //$NON-NLS-1$
+											 .collect(Collectors.joining(",")); //$NON-NLS-1$
+				attrs.putValue("Export-Package", exports); //$NON-NLS-1$
 			}
+			jar.writeManifest(manifest);
 
 			// Either copy in the contents of the source or just bring in the JAR outright
 			if(this.flattenEmbeds) {
-				try(FileSystem notesFs = NSFODPUtil.openZipPath(xspBootstrap)) {
-					Path notesRoot = notesFs.getPath("/"); //$NON-NLS-1$
-					copyBundleEmbed(notesRoot, root);
-				}
+				copyEmbedEntries(xspBootstrap, jar);
 			} else {
-				Files.copy(xspBootstrap, root.resolve("xsp.http.bootstrap.jar")); //$NON-NLS-1$
+				jar.write("xsp.http.bootstrap.jar", xspBootstrap); //$NON-NLS-1$
 			}
 		}
+		return plugin;
+	}
+
+	private Path findNapiBundle(Path destPlugins) {
+		return pluginRegistry.findHighest("com.ibm.domino.napi") //$NON-NLS-1$
+			.orElseThrow(() -> new IllegalStateException(Messages.getString("GenerateUpdateSiteTask.unableToFindNapiBundle", destPlugins))); //$NON-NLS-1$
 	}
 
-	private void createNapiBundle(Path napiJar, String version, Path destPlugins) {
-		try(Stream<Path> pluginStream = Files.list(destPlugins)) {
-			// Find the existing bundle to get its version number
-			Path napiBundle = pluginStream.filter(p -> p.getFileName().toString().startsWith("com.ibm.domino.napi_")) //$NON-NLS-1$
-										  .findFirst()
-										  .orElseThrow(() -> new IllegalStateException(Messages.getString("GenerateUpdateSiteTask.unableToFindNapiBundle", destPlugins))); //$NON-NLS-1$
+	private void patchNapiBundle(Path destPlugins) throws IOException {
+		Path napiBundle = findNapiBundle(destPlugins);
 
-			// Rewrite the MANIFEST.MF to allow Eclipse to resolve fragment classes
-			try(FileSystem napiFs = NSFODPUtil.openZipPath(napiBundle)) {
-				Path root = napiFs.getPath("/"); //$NON-NLS-1$
-				Path manifestPath = root.resolve("META-INF/MANIFEST.MF"); //$NON-NLS-1$
+		// Rewrite the MANIFEST.MF to allow Eclipse to resolve fragment classes
+		Path patched = Files.createTempFile(destPlugins, napiBundle.getFileName().toString(), ".tmp"); //$NON-NLS-1$
+		try {
+			try(ZipFile zip = ZipFile.builder().setPath(napiBundle).get()) {
+				ZipArchiveEntry manifestEntry = zip.getEntry(JarFile.MANIFEST_NAME);
+				if(manifestEntry == null) {
+					throw new NoSuchFileException(napiBundle + "!/" + JarFile.MANIFEST_NAME); //$NON-NLS-1$
+				}
 				Manifest napiManifest;
-				try(InputStream is = Files.newInputStream(manifestPath)) {
+				try(InputStream is = zip.getInputStream(manifestEntry)) {
 					napiManifest = new Manifest(is);
 				}
+				if("true".equals(napiManifest.getMainAttributes().getValue("Eclipse-ExtensibleAPI"))) { //$NON-NLS-1$ //$NON-NLS-2$
+					// Already patched by a previous incremental run
+					return;
+				}
 				napiManifest.getMainAttributes().putValue("Eclipse-ExtensibleAPI", "true"); //$NON-NLS-1$ //$NON-NLS-2$
-				try(OutputStream os = Files.newOutputStream(manifestPath, StandardOpenOption.TRUNCATE_EXISTING)) {
-					napiManifest.write(os);
-				}
-			}
-
-			String napiVersion = napiBundle.getFileName().toString().substring("com.ibm.domino.napi_".length()); //$NON-NLS-1$
-			napiVersion = napiVersion.substring(0, version.length() - ".jar".length()); //$NON-NLS-1$
-
-			// Create the fragment to house the JAR
-			{
-				String fragmentId = "com.ibm.domino.napi.impl"; //$NON-NLS-1$
-				Path plugin = destPlugins.resolve(fragmentId + "_" + version + ".jar"); //$NON-NLS-1$ //$NON-NLS-2$
-				try(FileSystem zip = NSFODPUtil.openZipPath(plugin)) {
-					Path root = zip.getPath("/"); //$NON-NLS-1$
-					// Write the manifest file to declare it a fragment
-					Path manifestPath = root.resolve("META-INF").resolve("MANIFEST.MF"); //$NON-NLS-1$ //$NON-NLS-2$
-					Files.createDirectories(manifestPath.getParent());
-					try(OutputStream os = Files.newOutputStream(manifestPath, StandardOpenOption.CREATE)) {
-						Manifest manifest = new Manifest();
-						Attributes attrs = manifest.getMainAttributes();
-						attrs.putValue("Manifest-Version", "1.0"); //$NON-NLS-1$ //$NON-NLS-2$
-						if(!this.flattenEmbeds) {
-							attrs.putValue("Bundle-ClassPath", "lwpd.domino.napi.jar"); //$NON-NLS-1$ //$NON-NLS-2$
+
+				// The new manifest comes first, so the original entry is skipped below
+				try(JarWriter jar = new JarWriter(patched)) {
+					jar.writeManifest(napiManifest);
+					Enumeration<ZipArchiveEntry> entries = zip.getEntriesInPhysicalOrder();
+					while(entries.hasMoreElements()) {
+						ZipArchiveEntry entry = entries.nextElement();
+						try(InputStream is = zip.getRawInputStream(entry)) {
+							jar.writeRaw(entry, is);
 						}
-						attrs.putValue("Bundle-Vendor", "IBM"); //$NON-NLS-1$ //$NON-NLS-2$
-						attrs.putValue("Fragment-Host", "com.ibm.domino.napi"); //$NON-NLS-1$ //$NON-NLS-2$
-						attrs.putValue("Bundle-Name", "Api Plug-in Implementation JAR"); //$NON-NLS-1$ //$NON-NLS-2$
-						attrs.putValue("Bundle-SymbolicName", fragmentId + ";singleton:=true"); //$NON-NLS-1$ //$NON-NLS-2$
-						attrs.putValue("Bundle-Version", version); //$NON-NLS-1$
-						attrs.putValue("Bundle-ManifestVersion", "2"); //$NON-NLS-1$ //$NON-NLS-2$
-						attrs.putValue("Require-Bundle", "com.ibm.notes.java.api,com.ibm.commons,org.eclipse.core.runtime"); //$NON-NLS-1$ //$NON-NLS-2$
-						manifest.write(os);
 					}
+				}
+			}
+			Files.move(patched, napiBundle, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(patched);
+		}
+	}
+
+	private Path createNapiFragment(Path napiJar, String version, Path destPlugins) throws IOException {
+		// Create the fragment to house the JAR
+		String fragmentId = "com.ibm.domino.napi.impl"; //$NON-NLS-1$
+		Path plugin = destPlugins.resolve(fragmentId + "_" + version + ".jar"); //$NON-NLS-1$ //$NON-NLS-2$
+		Files.deleteIfExists(plugin);
+		try(JarWriter jar = new JarWriter(plugin)) {
+			// Write the manifest file to declare it a fragment
+			Manifest manifest = new Manifest();
+			Attributes attrs = manifest.getMainAttributes();
+			attrs.putValue("Manifest-Version", "1.0"); //$NON-NLS-1$ //$NON-NLS-2$
+			if(!this.flattenEmbeds) {
+				attrs.putValue("Bundle-ClassPath", "lwpd.domino.napi.jar"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			attrs.putValue("Bundle-Vendor", "IBM"); //$NON-NLS-1$ //$NON-NLS-2$
+			attrs.putValue("Fragment-Host", "com.ibm.domino.napi"); //$NON-NLS-1$ //$NON-NLS-2$
+			attrs.putValue("Bundle-Name", "Api Plug-in Implementation JAR"); //$NON-NLS-1$ //$NON-NLS-2$
+			attrs.putValue("Bundle-SymbolicName", fragmentId + ";singleton:=true"); //$NON-NLS-1$ //$NON-NLS-2$
+			attrs.putValue("Bundle-Version", version); //$NON-NLS-1$
+			attrs.putValue("Bundle-ManifestVersion", "2"); //$NON-NLS-1$ //$NON-NLS-2$
+			attrs.putValue("Require-Bundle", "com.ibm.notes.java.api,com.ibm.commons,org.eclipse.core.runtime"); //$NON-NLS-1$ //$NON-NLS-2$
+			jar.writeManifest(manifest);
+
+			// Either copy in the contents of the source or just bring in the JAR outright
+			if(this.flattenEmbeds) {
+				copyEmbedEntries(napiJar, jar);
+			} else {
+				jar.write("lwpd.domino.napi.jar", napiJar); //$NON-NLS-1$
+			}
+		}
+		return plugin;
+	}
+
+	/**
+	 * Runs {@code generator} to produce bundles derived from {@code source}, unless the
+	 * outputs of a previous incremental run are still current.
+	 *
+	 * @since 6.1.0
+	 */
+	private void generate(Path source, String variant, Generator generator) throws Exception {
+		if(fingerprints != null) {
+			Optional<List<String>> unchanged = fingerprints.findUnchanged(source, variant);
+			if(unchanged.isPresent()) {
+				List<Path> outputs = unchanged.get().stream().map(destDir::resolve).collect(Collectors.toList());
+				outputs.forEach(this::registerPlugin);
+				fingerprints.record(source, variant, outputs);
+				return;
+			}
+		}
+		List<Path> outputs = generator.call();
+		outputs.forEach(this::registerPlugin);
+		if(fingerprints != null) {
+			fingerprints.record(source, variant, outputs);
+		}
+	}
 
-					// Either copy in the contents of the source or just bring in the JAR outright
-					if(this.flattenEmbeds) {
-						try(FileSystem notesFs = NSFODPUtil.openZipPath(napiJar)) {
-							Path notesRoot = notesFs.getPath("/"); //$NON-NLS-1$
-							copyBundleEmbed(notesRoot, root);
+	/**
+	 * Removes any feature or plugin that was not produced or reused during this run.
+	 *
+	 * @since 6.1.0
+	 */
+	private void removeStaleOutputs(Path... dirs) throws IOException {
+		Set<String> outputs = fingerprints.getOutputs();
+		for(Path dir : dirs) {
+			try(Stream<Path> files = Files.list(dir)) {
+				for(Path file : files.collect(Collectors.toList())) {
+					String relativePath = destDir.relativize(file).toString().replace(File.separatorChar, '/');
+					if(!outputs.contains(relativePath)) {
+						if(log.isInfoEnabled()) {
+							log.info(Messages.getString("GenerateUpdateSiteTask.removingStaleArtifact", relativePath)); //$NON-NLS-1$
+						}
+						if(Files.isDirectory(file)) {
+							FileUtils.deleteDirectory(file.toFile());
+						} else {
+							Files.delete(file);
 						}
-					} else {
-						Files.copy(napiJar, root.resolve("lwpd.domino.napi.jar")); //$NON-NLS-1$
 					}
 				}
 			}
-		} catch(IOException e) {
-			throw new UncheckedIOException(e);
 		}
 	}
 
@@ -432,50 +645,209 @@ public class GenerateUpdateSiteTask implements Runnable {
 		return dir;
 	}
 
-	private void copyArtifacts(Path sourceDir, Path destDir, Document eclipseArtifacts) throws Exception {
+	private void listArtifacts(Path sourceDir, Path destDir, boolean downloadSource, List<ArtifactCopy> copies) throws IOException {
 		try(Stream<Path> pluginStream = Files.list(sourceDir)) {
-			pluginStream.forEach(artifact -> {
+			pluginStream.sorted().forEach(artifact -> {
 				if(Files.isRegularFile(artifact) && ! artifact.toString().toLowerCase().endsWith(".jar")) { //$NON-NLS-1$
 					log.info("Skipping non-JAR file " + artifact.getFileName().toString()); //$NON-NLS-1$
 
 					// Skip non-JAR files
 					return;
 				}
+				copies.add(new ArtifactCopy(copies.size(), artifact, destDir, downloadSource));
+			});
+		}
+	}
 
-				if(log.isInfoEnabled()) {
-					log.info(Messages.getString("GenerateUpdateSiteTask.copying") + artifact.getFileName().toString()); //$NON-NLS-1$
-				}
-				try {
-					Path destJar = copyOrPack(artifact, destDir);
-
-					if(eclipseArtifacts != null && destJar != null) {
-						downloadSource(destJar, destDir, eclipseArtifacts);
-					}
-
+	/**
+	 * Copies the provided artifacts using a pool of {@link #threads} workers, reporting
+	 * any failures per-artifact once all copies have finished.
+	 *
+	 * <p>Artifacts are listed in priority order: when two sources map to the same
+	 * destination file, only the one earlier in the list is copied, regardless of
+	 * thread scheduling. Before 6.1.0, each later source was instead written into the
+	 * existing file, replacing the entries the two had in common and keeping the rest,
+	 * so the result depended on the order in which the directories were listed.</p>
+	 *
+	 * @since 6.1.0
+	 */
+	private void copyArtifacts(List<ArtifactCopy> copies) {
+		AtomicInteger threadCount = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(this.threads, r -> {
+			Thread t = new Thread(r, "generate-domino-update-site-copy-" + threadCount.incrementAndGet()); //$NON-NLS-1$
+			t.setDaemon(true);
+			return t;
+		});
+		Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+		try {
+			List<Future<?>> futures = new ArrayList<>(copies.size());
+			for(ArtifactCopy copy : copies) {
+				futures.add(executor.submit(() -> {
 					if(Thread.currentThread().isInterrupted()) {
 						return;
 					}
-				} catch(Exception e) {
-					throw new RuntimeException(e);
+					if(log.isInfoEnabled()) {
+						log.info(Messages.getString("GenerateUpdateSiteTask.copying") + copy.source.getFileName().toString()); //$NON-NLS-1$
+					}
+					try {
+						copyArtifact(copy);
+					} catch(Throwable e) {
+						if(log.isErrorEnabled()) {
+							log.error(Messages.getString("GenerateUpdateSiteTask.exceptionCopyingArtifact", copy.source), e); //$NON-NLS-1$
+						}
+						failures.add(new RuntimeException(Messages.getString("GenerateUpdateSiteTask.exceptionCopyingArtifact", copy.source), e)); //$NON-NLS-1$
+					}
+				}));
+			}
+
+			for(Future<?> future : futures) {
+				try {
+					future.get();
+				} catch(InterruptedException e) {
+					// Stop scheduling new copies and let the caller see the interruption
+					executor.shutdownNow();
+					Thread.currentThread().interrupt();
+					return;
+				} catch(ExecutionException e) {
+					failures.add(e.getCause());
 				}
-			});
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		if(!failures.isEmpty()) {
+			RuntimeException e = new RuntimeException(Messages.getString("GenerateUpdateSiteTask.failedCopyingArtifacts", failures.size())); //$NON-NLS-1$
+			failures.forEach(e::addSuppressed);
+			throw e;
+		}
+	}
+
+	private void copyArtifact(ArtifactCopy copy) throws Exception {
+		List<Path> outputs = new ArrayList<>();
+		Optional<List<String>> unchanged = fingerprints == null ? Optional.empty() : fingerprints.findUnchanged(copy.source, ""); //$NON-NLS-1$
+		Path destJar;
+		if(unchanged.isPresent()) {
+			// The first output is always the bundle itself, followed by any downloaded source bundle
+			List<String> previousOutputs = unchanged.get();
+			Path previousDest = destDir.resolve(previousOutputs.get(0));
+			boolean claimed = writeClaimed(previousDest, copy.priority, true, () -> copyOrPack(copy.source, copy.destDir, copy.priority));
+			destJar = claimed ? previousDest : null;
+			if(destJar != null) {
+				outputs.add(destJar);
+				previousOutputs.stream().skip(1).map(destDir::resolve).forEach(outputs::add);
+			}
+		} else {
+			destJar = copyOrPack(copy.source, copy.destDir, copy.priority);
+			if(destJar != null) {
+				outputs.add(destJar);
+			}
+		}
+
+		if(destJar == null) {
+			return;
+		}
+		outputs.forEach(this::registerPlugin);
+		if(copy.downloadSource && outputs.size() == 1) {
+			// Record the fingerprint once the source bundle has been resolved
+			sourceDownloads.add(downloadSource(destJar, copy.destDir).thenAccept(source -> {
+				source.ifPresent(s -> {
+					registerPlugin(s);
+					outputs.add(s);
+				});
+				recordOutputs(copy.source, outputs);
+			}));
+		} else {
+			recordOutputs(copy.source, outputs);
+		}
+	}
+
+	/**
+	 * Adds {@code output} to {@link #pluginRegistry} if it is a bundle, so that later
+	 * steps can find it without listing the plugins directory.
+	 *
+	 * @since 6.1.0
+	 */
+	private void registerPlugin(Path output) {
+		if(destPlugins.equals(output.getParent())) {
+			pluginRegistry.register(output);
+		}
+	}
+
+	private void recordOutputs(Path source, List<Path> outputs) {
+		if(fingerprints != null) {
+			try {
+				fingerprints.record(source, "", outputs); //$NON-NLS-1$
+			} catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Waits for the source bundle downloads queued while copying artifacts.
+	 *
+	 * @since 6.1.0
+	 */
+	private void awaitSourceDownloads() {
+		CompletableFuture<?> download;
+		while((download = sourceDownloads.poll()) != null) {
+			try {
+				download.get();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch(ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Claims {@code dest} on behalf of an artifact with the given priority and, if no
+	 * higher-priority artifact has written it, runs {@code writer} while holding the
+	 * claim. Lower priority values win, and an artifact may re-claim its own destination.
+	 *
+	 * @param reusable whether an existing file at {@code dest} is known to be current,
+	 *        in which case {@code writer} is skipped unless another artifact has written
+	 *        the destination during this run
+	 * @return {@code true} if the destination now belongs to the artifact; {@code false}
+	 *         if it belongs to another artifact
+	 * @since 6.1.0
+	 */
+	private boolean writeClaimed(Path dest, int priority, boolean reusable, IOCallable writer) throws Exception {
+		DestinationClaim claim = destinationClaims.computeIfAbsent(dest.toAbsolutePath().normalize(), key -> new DestinationClaim());
+		synchronized(claim) {
+			if(claim.priority < priority) {
+				if(log.isInfoEnabled()) {
+					log.info(Messages.getString("GenerateUpdateSiteTask.skippingDuplicateDestination", dest.getFileName())); //$NON-NLS-1$
+				}
+				return false;
+			}
+			boolean untouched = claim.priority == Integer.MAX_VALUE;
+			claim.priority = priority;
+			if(untouched && reusable && Files.isRegularFile(dest)) {
+				return true;
+			}
+			Files.deleteIfExists(dest);
+			writer.call();
+			return true;
 		}
 	}
 
-	private Path copyOrPack(Path source, Path destDir) throws Exception {
+	private Path copyOrPack(Path source, Path destDir, int priority) throws Exception {
 		if(Files.isRegularFile(source) && source.getFileName().toString().toLowerCase().endsWith(".jar")) { //$NON-NLS-1$
 			// Check for a MANIFEST.MF inside the Jar
 			Path dest = destDir.resolve(source.getFileName());
-			try(FileSystem jarFs = NSFODPUtil.openZipPath(source)) {
-				Path root = jarFs.getPath("/"); //$NON-NLS-1$
-				Path manifestMf = root.resolve("META-INF").resolve("MANIFEST.MF"); //$NON-NLS-1$ //$NON-NLS-2$
-				if(!Files.exists(manifestMf)) {
+			try(ZipFile zip = ZipFile.builder().setPath(source).get()) {
+				ZipArchiveEntry manifestMf = zip.getEntry(JarFile.MANIFEST_NAME);
+				if(manifestMf == null) {
 					return null;
 				}
 
 				// Check for a Bundle-ClassPath for embeds
 				Manifest jarManifest;
-				try(InputStream is = Files.newInputStream(manifestMf)) {
+				try(InputStream is = zip.getInputStream(manifestMf)) {
 					jarManifest = new Manifest(is);
 				}
 				Attributes attrs = jarManifest.getMainAttributes();
@@ -492,12 +864,19 @@ public class GenerateUpdateSiteTask implements Runnable {
 
 				String classpath = attrs.getValue("Bundle-ClassPath"); //$NON-NLS-1$
 
-				if(this.flattenEmbeds && StringUtil.isNotEmpty(classpath)) {
-					// Perform a complex copy if there are embeds to flatten
-					Set<String> embeds = new HashSet<>(Arrays.asList(StringUtil.splitString(classpath, ',')));
-					zipFolder(jarFs.getPath("/"), dest, embeds); //$NON-NLS-1$
-				} else {
-					zipFolder(jarFs.getPath("/"), dest, Collections.emptySet()); //$NON-NLS-1$
+				Path jarDest = dest;
+				boolean copied = writeClaimed(dest, priority, false, () -> {
+					if(this.flattenEmbeds && StringUtil.isNotEmpty(classpath)) {
+						// Perform a complex copy if there are embeds to flatten
+						Set<String> embeds = new HashSet<>(Arrays.asList(StringUtil.splitString(classpath, ',')));
+						copyJarEntries(zip, jarDest, embeds);
+					} else {
+						// Otherwise, transfer the compressed entries as-is
+						copyJarEntries(zip, jarDest, Collections.emptySet());
+					}
+				});
+				if(!copied) {
+					return null;
 				}
 			}
 			return dest;
@@ -509,7 +888,7 @@ public class GenerateUpdateSiteTask implements Runnable {
 			}
 
 			// Check for a Bundle-ClassPath for embeds
-			String classpath = null;
+			String classpath;
 			try(InputStream is = Files.newInputStream(manifestPath)) {
 				Manifest manifest = new Manifest(is);
 				Attributes attrs = manifest.getMainAttributes();
@@ -518,20 +897,22 @@ public class GenerateUpdateSiteTask implements Runnable {
 
 			// Must be an unpacked plugin
 			Path destPlugin = destDir.resolve(source.getFileName() + ".jar"); //$NON-NLS-1$
-			if(this.flattenEmbeds && StringUtil.isNotEmpty(classpath)) {
-				Set<String> embeds = new HashSet<>(Arrays.asList(StringUtil.splitString(classpath, ',')));
-				zipFolder(source.toAbsolutePath(), destPlugin.toAbsolutePath(), embeds);
-			} else {
-				zipFolder(source.toAbsolutePath(), destPlugin.toAbsolutePath(), Collections.emptySet());
-			}
-			return destPlugin;
+			boolean copied = writeClaimed(destPlugin, priority, false, () -> {
+				if(this.flattenEmbeds && StringUtil.isNotEmpty(classpath)) {
+					Set<String> embeds = new HashSet<>(Arrays.asList(StringUtil.splitString(classpath, ',')));
+					zipFolder(source.toAbsolutePath(), destPlugin.toAbsolutePath(), embeds);
+				} else {
+					zipFolder(source.toAbsolutePath(), destPlugin.toAbsolutePath(), Collections.emptySet());
+				}
+			});
+			return copied ? destPlugin : null;
 		}
 		return null;
 	}
 
 	private void zipFolder(Path sourceFolderPath, Path zipPath, Collection<String> embeds) throws Exception {
-		try(FileSystem fs = NSFODPUtil.openZipPath(zipPath)) {
-			Path root = fs.getPath("/"); //$NON-NLS-1$
+		List<Path> embedFiles = new ArrayList<>();
+		try(JarWriter jar = new JarWriter(zipPath)) {
 			Files.walkFileTree(sourceFolderPath, new SimpleFileVisitor<Path>() {
 				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
 					String relativePath = sourceFolderPath.relativize(file).toString().replace(File.separatorChar, '/');
@@ -543,50 +924,157 @@ public class GenerateUpdateSiteTask implements Runnable {
 					if(GenerateUpdateSiteTask.this.flattenEmbeds && "MANIFEST.MF".equals(file.getFileName().toString())) { //$NON-NLS-1$
 						// Do this specially to remove the Bundle-ClassPath header
 						try(InputStream is = Files.newInputStream(file)) {
-							Manifest manifest = new Manifest(is);
-							Path target = root.resolve(relativePath);
-							Files.createDirectories(target.getParent());
-							try(OutputStream os = Files.newOutputStream(target, StandardOpenOption.CREATE)) {
-								Manifest newManifest = new Manifest();
-								Attributes newAttrs = newManifest.getMainAttributes();
-								manifest.getMainAttributes()
-										.entrySet()
-										.stream()
-										.filter(e -> !"Bundle-ClassPath".equalsIgnoreCase(e.getKey().toString())) //$NON-NLS-1$
-										.filter(e -> !("Name".equalsIgnoreCase(e.getKey().toString())
-											|| "SHA-256-Digest".equals(e.getKey().toString()))) //$NON-NLS-1$ //$NON-NLS-2$
-										.forEach(e -> newAttrs.put(e.getKey(), e.getValue()));
-								newManifest.write(os);
-							}
+							jar.write(relativePath, new ByteArrayInputStream(flattenManifest(is)), attrs.lastModifiedTime().toMillis());
 						}
 						return FileVisitResult.CONTINUE;
 					}
 
 					if(embeds.contains(relativePath)) {
-						// Make a temp copy of the file in case it's inside a JAR
-						Path tempEmbed = Files.createTempFile(file.getFileName().toString(), ".jar"); //$NON-NLS-1$
-						Files.copy(file, tempEmbed, StandardCopyOption.REPLACE_EXISTING);
-						try {
-							try(FileSystem tempFs = NSFODPUtil.openZipPath(tempEmbed)) {
-								if(log.isInfoEnabled()) {
-									log.info(Messages.getString("GenerateUpdateSiteTask.flatteningEmbed", relativePath)); //$NON-NLS-1$
-								}
-								copyBundleEmbed(tempFs.getPath("/"), root); //$NON-NLS-1$
-							}
-						} finally {
-							Files.deleteIfExists(tempEmbed);
-						}
+						// Embeds are merged in afterward so that the bundle's own files take precedence
+						embedFiles.add(file);
 					} else {
-						Path target = root.resolve(relativePath);
-						if(!Files.exists(target.getParent())) {
-							Files.createDirectories(target.getParent());
-						}
-						Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+						jar.write(relativePath, file);
 					}
 					return FileVisitResult.CONTINUE;
 				}
 			});
+
+			for(Path file : embedFiles) {
+				if(log.isInfoEnabled()) {
+					log.info(Messages.getString("GenerateUpdateSiteTask.flatteningEmbed", sourceFolderPath.relativize(file))); //$NON-NLS-1$
+				}
+				copyEmbedEntries(file, jar);
+			}
+		}
+	}
+
+	/**
+	 * Copies the entries of {@code zip} to a new JAR at {@code dest} without
+	 * decompressing them, skipping excluded files. The manifest is the only entry that
+	 * may be rewritten, and only when flattening embeds.
+	 *
+	 * <p>The contents of any entry named in {@code embeds} are streamed directly from
+	 * the parent archive into the output after the bundle's own entries, so that the
+	 * bundle's files take precedence and earlier embeds win over later ones.</p>
+	 *
+	 * @since 6.1.0
+	 */
+	private void copyJarEntries(ZipFile zip, Path dest, Collection<String> embeds) throws IOException {
+		try(JarWriter jar = new JarWriter(dest)) {
+			List<ZipArchiveEntry> embedEntries = new ArrayList<>();
+			Enumeration<ZipArchiveEntry> entries = zip.getEntriesInPhysicalOrder();
+			while(entries.hasMoreElements()) {
+				ZipArchiveEntry entry = entries.nextElement();
+				String name = entry.getName();
+				String fileName = name.substring(name.lastIndexOf('/', name.length() - 2) + 1);
+				if(EXCLUDED_FILENAMES.stream().anyMatch(p -> p.matcher(fileName).matches())) {
+					continue;
+				}
+
+				if(this.flattenEmbeds && "MANIFEST.MF".equals(fileName)) { //$NON-NLS-1$
+					try(InputStream is = zip.getInputStream(entry)) {
+						jar.write(name, new ByteArrayInputStream(flattenManifest(is)), entry.getTime());
+					}
+				} else if(embeds.contains(name)) {
+					embedEntries.add(entry);
+				} else if(entry.isDirectory()) {
+					jar.writeDirectory(name);
+				} else {
+					try(InputStream is = zip.getRawInputStream(entry)) {
+						jar.writeRaw(entry, is);
+					}
+				}
+			}
+
+			for(ZipArchiveEntry embed : embedEntries) {
+				if(log.isInfoEnabled()) {
+					log.info(Messages.getString("GenerateUpdateSiteTask.flatteningEmbed", embed.getName())); //$NON-NLS-1$
+				}
+				try(InputStream is = zip.getInputStream(embed)) {
+					copyEmbedEntries(is, jar);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copies the entries of a nested JAR read from {@code is}, skipping its manifest,
+	 * excluded files and any entry already present in {@code jar}.
+	 *
+	 * @since 6.1.0
+	 */
+	private static void copyEmbedEntries(InputStream is, JarWriter jar) throws IOException {
+		try(ZipArchiveInputStream zis = new ZipArchiveInputStream(is, StandardCharsets.UTF_8.name(), true, true)) {
+			ZipArchiveEntry entry;
+			while((entry = zis.getNextEntry()) != null) {
+				if(isSkippedEmbedEntry(entry)) {
+					continue;
+				}
+				if(entry.isDirectory()) {
+					jar.writeDirectory(entry.getName());
+				} else {
+					jar.write(entry.getName(), zis, entry.getTime());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copies the entries of the embedded JAR at {@code embed} without decompressing
+	 * them, skipping its manifest, excluded files and any entry already present in
+	 * {@code jar}.
+	 *
+	 * @since 6.1.0
+	 */
+	private static void copyEmbedEntries(Path embed, JarWriter jar) throws IOException {
+		try(ZipFile zip = ZipFile.builder().setPath(embed).get()) {
+			Enumeration<ZipArchiveEntry> entries = zip.getEntriesInPhysicalOrder();
+			while(entries.hasMoreElements()) {
+				ZipArchiveEntry entry = entries.nextElement();
+				if(isSkippedEmbedEntry(entry)) {
+					continue;
+				}
+
+				if(entry.isDirectory()) {
+					jar.writeDirectory(entry.getName());
+				} else {
+					try(InputStream is = zip.getRawInputStream(entry)) {
+						jar.writeRaw(entry, is);
+					}
+				}
+			}
+		}
+	}
+
+	private static boolean isSkippedEmbedEntry(ZipArchiveEntry entry) {
+		String name = entry.getName();
+		String fileName = name.substring(name.lastIndexOf('/', name.length() - 2) + 1);
+		if(EXCLUDED_FILENAMES.stream().anyMatch(p -> p.matcher(fileName).matches())) {
+			return true;
 		}
+		// TODO consider merging META-INF/services files, though no duplicates
+		//   exist in the distribution as of 12.0.2
+		return "MANIFEST.MF".equals(fileName); //$NON-NLS-1$
+	}
+
+	/**
+	 * Produces a copy of the manifest read from {@code is} without its Bundle-ClassPath
+	 * header or per-entry signature digests.
+	 */
+	private static byte[] flattenManifest(InputStream is) throws IOException {
+		Manifest manifest = new Manifest(is);
+		Manifest newManifest = new Manifest();
+		Attributes newAttrs = newManifest.getMainAttributes();
+		manifest.getMainAttributes()
+				.entrySet()
+				.stream()
+				.filter(e -> !"Bundle-ClassPath".equalsIgnoreCase(e.getKey().toString())) //$NON-NLS-1$
+				.filter(e -> !("Name".equalsIgnoreCase(e.getKey().toString())
+					|| "SHA-256-Digest".equals(e.getKey().toString()))) //$NON-NLS-1$ //$NON-NLS-2$
+				.forEach(e -> newAttrs.put(e.getKey(), e.getValue()));
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		newManifest.write(baos);
+		return baos.toByteArray();
 	}
 
 	private String readNotesVersion(Path notesJar) throws IOException {
@@ -814,110 +1302,170 @@ public class GenerateUpdateSiteTask implements Runnable {
 	}
 
 	/**
-	 * @throws MalformedURLException
-	 * Retrieves the contents of the artifacts.jar file for the current matching Eclipse update
-	 * site as a {@link Document}.
+	 * Starts retrieving the contents of the artifacts.jar file for the current matching
+	 * Eclipse update site as an {@link EclipseArtifactIndex}.
+	 *
+	 * <p>When a cache directory is configured, a previously-downloaded index is
+	 * revalidated with a conditional request and reused if unchanged or if the
+	 * repository cannot be reached.</p>
 	 *
+	 * @return a future for the index, which completes with {@code null} if it could
+	 *         not be loaded
 	 * @since 3.3.0
 	 */
-	private Document fetchEclipseArtifacts() throws MalformedURLException {
-		String urlString = PathUtil.concat(this.eclipseUpdateSite, "artifacts.xml.xz", '/'); //$NON-NLS-1$
-		URL artifactsUrl = new URL(urlString);
-		try(InputStream is = artifactsUrl.openStream()) {
+	private CompletableFuture<EclipseArtifactIndex> fetchEclipseArtifacts() {
+		if(offline) {
+			// Only cached source bundles are used, so there is no need for the index
+			return CompletableFuture.completedFuture(null);
+		}
+
+		ArtifactIndexCache indexCache = cacheDir == null ? null : new ArtifactIndexCache(cacheDir, eclipseUpdateSite, log);
+		Optional<ArtifactIndexCache.Entry> cached = indexCache == null ? Optional.empty() : indexCache.load();
+		String etag = cached.map(ArtifactIndexCache.Entry::getETag).orElse(null);
+		String lastModified = cached.map(ArtifactIndexCache.Entry::getLastModified).orElse(null);
+
+		return downloader.fetchIfModified("artifacts.xml.xz", etag, lastModified, is -> { //$NON-NLS-1$
 			try(XZInputStream zis = new XZInputStream(is)) {
-				return NSFODPDomUtil.createDocument(zis);
+				return EclipseArtifactIndex.read(zis);
+			}
+		}).thenApply(response -> {
+			if(response.isNotModified() && cached.isPresent()) {
+				if(log.isDebugEnabled()) {
+					log.debug(Messages.getString("GenerateUpdateSiteTask.usingCachedArtifactIndex", eclipseUpdateSite)); //$NON-NLS-1$
+				}
+				return cached.get().getIndex();
+			}
+			EclipseArtifactIndex index = response.getValue();
+			if(indexCache != null && index != null) {
+				indexCache.store(index, response.getETag(), response.getLastModified());
+			}
+			return index;
+		}).exceptionally(e -> {
+			if(cached.isPresent()) {
+				if(log.isWarnEnabled()) {
+					log.warn(Messages.getString("GenerateUpdateSiteTask.unableToRevalidateArtifactIndex", eclipseUpdateSite), unwrap(e)); //$NON-NLS-1$
+				}
+				return cached.get().getIndex();
 			}
-		} catch(IOException e) {
 			if(log.isWarnEnabled()) {
-				log.warn(Messages.getString("GenerateUpdateSiteTask.unableToLoadNeon"), e); //$NON-NLS-1$
+				log.warn(Messages.getString("GenerateUpdateSiteTask.unableToLoadNeon"), unwrap(e)); //$NON-NLS-1$
 			}
 			return null;
-		}
+		});
 	}
 
 	/**
-	 * Looks for a source bundle matching the given artifact on the Neon update site.
+	 * Looks for a source bundle matching the given artifact on the Neon update site
+	 * and, if found, queues a download of it.
 	 *
+	 * @return a future for the downloaded source bundle, which is empty if there is no
+	 *         matching bundle or the download failed
 	 * @since 3.3.0
 	 */
-	private void downloadSource(Path artifact, Path destDir, Document artifacts) throws Exception {
+	private CompletableFuture<Optional<Path>> downloadSource(Path artifact, Path destDir) {
 		String fileName = StringUtil.toString(artifact.getFileName());
 		Matcher matcher = BUNDLE_FILENAME_PATTERN.matcher(fileName);
-		if(matcher.matches()) {
-			String symbolicName = matcher.group(1) + ".source"; //$NON-NLS-1$
-			String version = matcher.group(2);
+		if(!matcher.matches()) {
+			return CompletableFuture.completedFuture(Optional.empty());
+		}
+		String symbolicName = matcher.group(1) + ".source"; //$NON-NLS-1$
+		String version = matcher.group(2);
+		String bundleName = StringUtil.format("{0}_{1}.jar", symbolicName, version); //$NON-NLS-1$
+		Path dest = destDir.resolve(bundleName);
+
+		String path = "plugins/" + bundleName; //$NON-NLS-1$
+
+		CompletableFuture<Path> fetched = null;
+		if(sourceCache != null) {
+			// Release repositories never change, so a cached bundle needs no index check
+			Optional<Path> cached = sourceCache.get(symbolicName, version, destDir);
+			if(cached.isPresent()) {
+				if(log.isInfoEnabled()) {
+					log.info(Messages.getString("GenerateUpdateSiteTask.usingCachedSourceBundle", artifact.getFileName())); //$NON-NLS-1$
+				}
+				fetched = CompletableFuture.completedFuture(cached.get());
+			}
+		}
+		if(fetched == null && offline) {
+			return CompletableFuture.completedFuture(Optional.empty());
+		}
+		if(fetched == null) {
+			fetched = eclipseArtifacts.thenCompose(artifacts -> {
+				if(artifacts == null || !artifacts.contains("osgi.bundle", symbolicName, version)) { //$NON-NLS-1$
+					return CompletableFuture.completedFuture(null);
+				}
 
-			String query = StringUtil.format("/repository/artifacts/artifact[@classifier='osgi.bundle'][@id='{0}'][@version='{1}']", symbolicName, version); //$NON-NLS-1$
-			NodeList result = NSFODPDomUtil.selectNodes(artifacts, query);
-			if(result != null && result.getLength() > 0) {
 				// Then we can be confident that it will exist at the expected URL
-				String bundleName = StringUtil.format("{0}_{1}.jar", symbolicName, version); //$NON-NLS-1$
-				Path dest = destDir.resolve(bundleName);
-
-				String urlString = PathUtil.concat(this.eclipseUpdateSite, "plugins", '/'); //$NON-NLS-1$
-				urlString = PathUtil.concat(urlString, bundleName, '/');
-				URL bundleUrl = new URL(urlString);
-				try(InputStream is = bundleUrl.openStream()) {
-					if(log.isInfoEnabled()) {
-						log.info(Messages.getString("GenerateUpdateSiteTask.downloadingSourceBundle", artifact.getFileName())); //$NON-NLS-1$
-					}
-					Files.copy(is, dest, StandardCopyOption.REPLACE_EXISTING);
-				} catch(Exception e) {
-					if(log.isWarnEnabled()) {
-						log.warn(Messages.getString("GenerateUpdateSiteTask.unableToDownloadSourceBundle", urlString), e); //$NON-NLS-1$
+				if(log.isInfoEnabled()) {
+					log.info(Messages.getString("GenerateUpdateSiteTask.downloadingSourceBundle", artifact.getFileName())); //$NON-NLS-1$
+				}
+				return downloader.download(path, destDir).thenApply(temp -> {
+					if(sourceCache != null) {
+						sourceCache.put(symbolicName, version, temp);
 					}
+					return temp;
+				});
+			});
+		}
+
+		return fetched.thenApply(temp -> temp == null ? Optional.<Path>empty() : installSource(temp, dest))
+			.exceptionally(e -> {
+				if(log.isWarnEnabled()) {
+					log.warn(Messages.getString("GenerateUpdateSiteTask.unableToDownloadSourceBundle", downloader.toUrl(path)), unwrap(e)); //$NON-NLS-1$
 				}
+				return Optional.empty();
+			});
+	}
+
+	/**
+	 * Moves a fetched source bundle into place, unless the destination belongs to a
+	 * source bundle shipped with Domino.
+	 */
+	private Optional<Path> installSource(Path temp, Path dest) {
+		try {
+			// Source bundles shipped with Domino take precedence over downloaded ones
+			boolean moved = writeClaimed(dest, Integer.MAX_VALUE - 1, false, () -> Files.move(temp, dest, StandardCopyOption.REPLACE_EXISTING));
+			return moved ? Optional.of(dest) : Optional.<Path>empty();
+		} catch(Exception e) {
+			throw new CompletionException(e);
+		} finally {
+			try {
+				Files.deleteIfExists(temp);
+			} catch(IOException e) {
+				// Ignore
 			}
 		}
 	}
 
-	public static void copyBundleEmbed(Path source, Path dest) throws IOException {
-		Files.walkFileTree(source, new CopyEmbedVisitor(dest));
+	private static Throwable unwrap(Throwable e) {
+		return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
 	}
 
-	private static class CopyEmbedVisitor extends SimpleFileVisitor<Path> {
-
-
-		private final Path targetPath;
-		private Path sourcePath = null;
+	@FunctionalInterface
+	private interface IOCallable {
+		void call() throws Exception;
+	}
 
-		public CopyEmbedVisitor(Path targetPath) {
-			this.targetPath = targetPath;
-		}
+	@FunctionalInterface
+	private interface Generator {
+		List<Path> call() throws Exception;
+	}
 
-		@Override
-		public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
-			if(sourcePath == null) {
-				sourcePath = dir;
-			} else {
-				Files.createDirectories(targetPath.resolve(sourcePath.relativize(dir).toString()));
-			}
-			return FileVisitResult.CONTINUE;
+	private static class ArtifactCopy {
+		private final int priority;
+		private final Path source;
+		private final Path destDir;
+		private final boolean downloadSource;
+
+		public ArtifactCopy(int priority, Path source, Path destDir, boolean downloadSource) {
+			this.priority = priority;
+			this.source = source;
+			this.destDir = destDir;
+			this.downloadSource = downloadSource;
 		}
+	}
 
-		@Override
-		public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
-			if(EXCLUDED_FILENAMES.stream().anyMatch(p -> p.matcher(file.getFileName().toString()).matches())) {
-				// skip
-				return FileVisitResult.CONTINUE;
-			} else if("MANIFEST.MF".equals(file.getFileName().toString())) { //$NON-NLS-1$
-				// skip
-				return FileVisitResult.CONTINUE;
-			}
-
-			Path target = targetPath.resolve(sourcePath.relativize(file).toString());
-			if(Files.exists(target)) {
-				// TODO consider merging META-INF/services files, though no duplicates
-				//   exist in the distribution as of 12.0.2
-
-				// skip
-				return FileVisitResult.CONTINUE;
-			}
-			if(!Files.exists(target.getParent())) {
-				Files.createDirectories(target.getParent());
-			}
-			Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
-			return FileVisitResult.CONTINUE;
-		}
+	private static class DestinationClaim {
+		private int priority = Integer.MAX_VALUE;
 	}
 }
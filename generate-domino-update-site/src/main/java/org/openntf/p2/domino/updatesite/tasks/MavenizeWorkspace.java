@@ -0,0 +1,121 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.tasks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Run-scoped directory for the temporary files created while mavenizing bundles.
+ *
+ * <p>Files are created with {@link #newFile(String, String)} and removed in bulk with
+ * {@link #clear()} once they have been installed or deployed. Closing the workspace
+ * deletes the directory and anything left in it, so nothing is left for the JVM to
+ * delete on exit.</p>
+ *
+ * @since 6.1.0
+ */
+public class MavenizeWorkspace implements Closeable {
+	private final Path dir;
+	private final Set<Path> files = ConcurrentHashMap.newKeySet();
+
+	private MavenizeWorkspace(Path dir) {
+		this.dir = dir;
+	}
+
+	/**
+	 * Creates a workspace in a new directory within the default temporary-file directory.
+	 *
+	 * @return the new workspace
+	 * @throws IOException if there is a problem creating the directory
+	 */
+	public static MavenizeWorkspace create() throws IOException {
+		return new MavenizeWorkspace(Files.createTempDirectory("generate-domino-update-site-mavenize")); //$NON-NLS-1$
+	}
+
+	/**
+	 * @return the directory containing the workspace files
+	 */
+	public Path getDirectory() {
+		return dir;
+	}
+
+	/**
+	 * Creates a new empty file in the workspace. This method is safe to call from
+	 * multiple threads.
+	 *
+	 * @param prefix the prefix of the file name
+	 * @param suffix the suffix of the file name
+	 * @return the new file
+	 * @throws IOException if there is a problem creating the file
+	 */
+	public Path newFile(String prefix, String suffix) throws IOException {
+		Path file = Files.createTempFile(dir, prefix, suffix);
+		files.add(file);
+		return file;
+	}
+
+	/**
+	 * Returns a path in the workspace for a file with the given name, to be written by
+	 * the caller. The file is deleted along with those created by {@link #newFile}.
+	 *
+	 * @param fileName the name of the file, which should be unique within the workspace
+	 * @return the path of the file, which may not yet exist
+	 */
+	public Path newPath(String fileName) {
+		Path file = dir.resolve(fileName);
+		files.add(file);
+		return file;
+	}
+
+	/**
+	 * Deletes every file created since the last call to this method.
+	 *
+	 * @throws IOException if a file could not be deleted
+	 */
+	public void clear() throws IOException {
+		List<Path> current = new ArrayList<>(files);
+		files.removeAll(current);
+		for(Path file : current) {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		files.clear();
+		if(!Files.exists(dir)) {
+			return;
+		}
+		List<Path> paths;
+		try(Stream<Path> walk = Files.walk(dir)) {
+			paths = walk.collect(Collectors.toList());
+		}
+		Collections.reverse(paths);
+		for(Path path : paths) {
+			Files.deleteIfExists(path);
+		}
+	}
+}
@@ -0,0 +1,338 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.tasks;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.openntf.p2.domino.updatesite.model.FeatureDescriptor;
+import org.openntf.p2.domino.updatesite.model.PluginDescriptor;
+import org.openntf.p2.domino.updatesite.util.HashUtil;
+
+/**
+ * Persistent cache of the descriptors and {@code content.xml} units of the features
+ * and plugins in a p2 repository, allowing metadata generation to skip reopening
+ * JARs that have not changed since the previous run.
+ *
+ * <p>Each JAR is identified by its path relative to the repository and fingerprinted
+ * by size, modification time and SHA-256 hash. As with {@link SiteFingerprints}, the
+ * hash is only consulted when the size matches but the modification time does not.</p>
+ *
+ * @since 6.1.0
+ */
+public class P2DescriptorCache {
+	/** The name of the cache file stored in the root of the repository */
+	public static final String FILE_NAME = ".p2-descriptors"; //$NON-NLS-1$
+
+	/** Incremented whenever the stored data or the generated units change shape */
+	private static final int FORMAT_VERSION = 2;
+	private static final byte KIND_FEATURE = 0;
+	private static final byte KIND_PLUGIN = 1;
+
+	private final Path repositoryDir;
+	private final Map<String, Entry> previous;
+	private final Map<String, Entry> current = new ConcurrentHashMap<>();
+
+	private P2DescriptorCache(Path repositoryDir, Map<String, Entry> previous) {
+		this.repositoryDir = repositoryDir;
+		this.previous = previous;
+	}
+
+	/**
+	 * Loads the cache stored in {@code repositoryDir}, if any. A cache file that cannot
+	 * be read is ignored, since every entry can be rebuilt from the JARs.
+	 *
+	 * @param repositoryDir the root of the p2 repository
+	 * @return the loaded cache, which may be empty
+	 */
+	public static P2DescriptorCache load(Path repositoryDir) {
+		Map<String, Entry> previous = new HashMap<>();
+		Path file = repositoryDir.resolve(FILE_NAME);
+		if(Files.isRegularFile(file)) {
+			try(DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+				if(in.readInt() == FORMAT_VERSION) {
+					int count = in.readInt();
+					for(int i = 0; i < count; i++) {
+						String key = readString(in);
+						previous.put(key, readEntry(in, repositoryDir.resolve(key)));
+					}
+				}
+			} catch(IOException e) {
+				previous.clear();
+			}
+		}
+		return new P2DescriptorCache(repositoryDir, previous);
+	}
+
+	/**
+	 * @param file a feature JAR in the repository
+	 * @return the cached descriptor of the feature, or an empty value if the JAR is
+	 *         new or has changed
+	 * @throws IOException if there is a problem reading the file
+	 */
+	public Optional<FeatureDescriptor> findFeature(Path file) throws IOException {
+		return findUnchanged(file, KIND_FEATURE).map(entry -> (FeatureDescriptor)entry.descriptor);
+	}
+
+	/**
+	 * @param file a plugin JAR in the repository
+	 * @return the cached descriptor of the plugin, or an empty value if the JAR is
+	 *         new or has changed
+	 * @throws IOException if there is a problem reading the file
+	 */
+	public Optional<PluginDescriptor> findPlugin(Path file) throws IOException {
+		return findUnchanged(file, KIND_PLUGIN).map(entry -> (PluginDescriptor)entry.descriptor);
+	}
+
+	/**
+	 * Records the descriptor of a feature read during this run.
+	 *
+	 * @param feature the descriptor to record
+	 * @throws IOException if there is a problem reading the file
+	 */
+	public void putFeature(FeatureDescriptor feature) throws IOException {
+		put(feature.getFile(), KIND_FEATURE, feature);
+	}
+
+	/**
+	 * Records the descriptor of a plugin read during this run.
+	 *
+	 * @param plugin the descriptor to record
+	 * @throws IOException if there is a problem reading the file
+	 */
+	public void putPlugin(PluginDescriptor plugin) throws IOException {
+		put(plugin.getFile(), KIND_PLUGIN, plugin);
+	}
+
+	/**
+	 * @param file a feature or plugin JAR recorded during this run
+	 * @return the {@code content.xml} unit stored for the JAR, or an empty value if
+	 *         there is none
+	 */
+	public Optional<String> findUnit(Path file) {
+		Entry entry = current.get(toKey(file));
+		return entry == null ? Optional.empty() : Optional.ofNullable(entry.unit);
+	}
+
+	/**
+	 * Stores the {@code content.xml} unit generated for a JAR recorded during this
+	 * run. Units that depend on other JARs in the repository should not be stored.
+	 *
+	 * @param file a feature or plugin JAR recorded during this run
+	 * @param unit the serialized unit
+	 */
+	public void putUnit(Path file, String unit) {
+		Entry entry = current.get(toKey(file));
+		if(entry != null) {
+			entry.unit = unit;
+		}
+	}
+
+	/**
+	 * Writes the entries recorded during this run to the repository directory,
+	 * replacing those of the previous run.
+	 *
+	 * @throws IOException if there is a problem writing the cache file
+	 */
+	public void save() throws IOException {
+		Path file = repositoryDir.resolve(FILE_NAME);
+		Path temp = Files.createTempFile(repositoryDir, FILE_NAME, ".tmp"); //$NON-NLS-1$
+		try {
+			try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temp))))) {
+				out.writeInt(FORMAT_VERSION);
+				Map<String, Entry> entries = new TreeMap<>(current);
+				out.writeInt(entries.size());
+				for(Map.Entry<String, Entry> e : entries.entrySet()) {
+					writeString(out, e.getKey());
+					writeEntry(out, e.getValue());
+				}
+			}
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private Optional<Entry> findUnchanged(Path file, byte kind) throws IOException {
+		String key = toKey(file);
+		Entry prev = previous.get(key);
+		if(prev == null || prev.kind != kind) {
+			return Optional.empty();
+		}
+		long size = Files.size(file);
+		long modified = Files.getLastModifiedTime(file).toMillis();
+		if(size != prev.size) {
+			return Optional.empty();
+		}
+		if(modified != prev.modified && !HashUtil.sha256(file).equals(prev.hash)) {
+			return Optional.empty();
+		}
+		Entry entry = new Entry(kind, size, modified, prev.hash, prev.descriptor);
+		entry.unit = prev.unit;
+		current.put(key, entry);
+		return Optional.of(entry);
+	}
+
+	private void put(Path file, byte kind, Object descriptor) throws IOException {
+		String key = toKey(file);
+		long size = Files.size(file);
+		long modified = Files.getLastModifiedTime(file).toMillis();
+		current.put(key, new Entry(kind, size, modified, HashUtil.sha256(file), descriptor));
+	}
+
+	private String toKey(Path file) {
+		return repositoryDir.relativize(file).toString().replace('\\', '/');
+	}
+
+	private static Entry readEntry(DataInputStream in, Path file) throws IOException {
+		byte kind = in.readByte();
+		long size = in.readLong();
+		long modified = in.readLong();
+		String hash = readString(in);
+		Object descriptor;
+		switch(kind) {
+		case KIND_FEATURE:
+			descriptor = new FeatureDescriptor(
+				file,
+				readString(in),
+				readString(in),
+				readString(in),
+				readString(in),
+				readString(in),
+				readString(in),
+				readString(in),
+				readString(in),
+				readString(in),
+				readMap(in),
+				in.readLong(),
+				readString(in)
+			);
+			break;
+		case KIND_PLUGIN:
+			descriptor = new PluginDescriptor(file, readMap(in), readString(in), readMap(in), in.readLong());
+			break;
+		default:
+			throw new IOException("Unknown entry kind " + kind); //$NON-NLS-1$
+		}
+		Entry entry = new Entry(kind, size, modified, hash, descriptor);
+		entry.unit = readString(in);
+		return entry;
+	}
+
+	private static void writeEntry(DataOutputStream out, Entry entry) throws IOException {
+		out.writeByte(entry.kind);
+		out.writeLong(entry.size);
+		out.writeLong(entry.modified);
+		writeString(out, entry.hash);
+		if(entry.kind == KIND_FEATURE) {
+			FeatureDescriptor feature = (FeatureDescriptor)entry.descriptor;
+			writeString(out, feature.getId());
+			writeString(out, feature.getVersion());
+			writeString(out, feature.getLabel());
+			writeString(out, feature.getDescription());
+			writeString(out, feature.getDescriptionUrl());
+			writeString(out, feature.getLicense());
+			writeString(out, feature.getLicenseUrl());
+			writeString(out, feature.getCopyright());
+			writeString(out, feature.getCopyrightUrl());
+			writeMap(out, feature.getLocalization());
+			out.writeLong(feature.getSize());
+			writeString(out, feature.getContentType());
+		} else {
+			PluginDescriptor plugin = (PluginDescriptor)entry.descriptor;
+			writeMap(out, plugin.getHeaders());
+			writeString(out, plugin.getRawManifest());
+			writeMap(out, plugin.getLocalization());
+			out.writeLong(plugin.getSize());
+		}
+		writeString(out, entry.unit);
+	}
+
+	/**
+	 * Reads a map in its stored order.
+	 */
+	private static Map<String, String> readMap(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		Map<String, String> result = new LinkedHashMap<>();
+		for(int i = 0; i < size; i++) {
+			result.put(readString(in), readString(in));
+		}
+		return result;
+	}
+
+	private static void writeMap(DataOutputStream out, Map<String, String> map) throws IOException {
+		out.writeInt(map.size());
+		for(Map.Entry<String, String> e : map.entrySet()) {
+			writeString(out, e.getKey());
+			writeString(out, e.getValue());
+		}
+	}
+
+	/**
+	 * Reads a nullable string of any length, unlike {@link DataInputStream#readUTF()}.
+	 */
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if(length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if(value == null) {
+			out.writeInt(-1);
+		} else {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private static class Entry {
+		private final byte kind;
+		private final long size;
+		private final long modified;
+		private final String hash;
+		private final Object descriptor;
+		private volatile String unit;
+
+		public Entry(byte kind, long size, long modified, String hash, Object descriptor) {
+			this.kind = kind;
+			this.size = size;
+			this.modified = modified;
+			this.hash = hash;
+			this.descriptor = descriptor;
+		}
+	}
+}
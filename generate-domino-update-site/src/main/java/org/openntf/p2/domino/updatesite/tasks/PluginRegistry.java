@@ -0,0 +1,125 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.tasks;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.osgi.framework.Version;
+
+/**
+ * In-memory index of the bundles in a {@code plugins} directory, keyed by symbolic
+ * name and version.
+ *
+ * <p>The registry is filled as bundles are written, which lets later steps look up a
+ * bundle by name without listing the directory again. It is safe for concurrent
+ * registration and lookup.</p>
+ *
+ * @since 6.1.0
+ */
+public class PluginRegistry {
+	/** Splits at the first "_digit", since version qualifiers may contain underscores */
+	private static final Pattern BUNDLE_FILENAME_PATTERN = Pattern.compile("^(.+?)_(\\d.*)\\.jar$"); //$NON-NLS-1$
+
+	/**
+	 * Orders versions by OSGi semantics. Values that are not valid OSGi versions sort
+	 * before all valid ones, in string order among themselves.
+	 */
+	private static final Comparator<String> VERSION_ORDER = Comparator.<String, Version>comparing(PluginRegistry::parseVersion, Comparator.nullsFirst(Comparator.naturalOrder()))
+		.thenComparing(Comparator.naturalOrder());
+
+	private final Map<String, NavigableMap<String, Path>> bundles = new ConcurrentHashMap<>();
+
+	/**
+	 * @param symbolicName the symbolic name of the bundle, without any directives
+	 * @param version the version of the bundle
+	 * @param file the bundle file
+	 */
+	public void register(String symbolicName, String version, Path file) {
+		bundles.computeIfAbsent(symbolicName, key -> new ConcurrentSkipListMap<>(VERSION_ORDER)).put(version, file);
+	}
+
+	/**
+	 * Registers a bundle using the symbolic name and version encoded in a
+	 * {@code name_version.jar} file name.
+	 *
+	 * @param file the bundle file
+	 * @return {@code true} if the file name could be parsed and the bundle was
+	 *         registered
+	 */
+	public boolean register(Path file) {
+		Matcher matcher = BUNDLE_FILENAME_PATTERN.matcher(file.getFileName().toString());
+		if(!matcher.matches()) {
+			return false;
+		}
+		register(matcher.group(1), matcher.group(2), file);
+		return true;
+	}
+
+	/**
+	 * @param symbolicName the symbolic name to look up
+	 * @return an unmodifiable view of the registered versions of the bundle, in
+	 *         ascending version order, mapped to their files
+	 */
+	public NavigableMap<String, Path> getVersions(String symbolicName) {
+		NavigableMap<String, Path> versions = bundles.get(symbolicName);
+		return versions == null ? Collections.emptyNavigableMap() : Collections.unmodifiableNavigableMap(versions);
+	}
+
+	/**
+	 * @param symbolicName the symbolic name to look up
+	 * @return the highest registered version of the bundle, or an empty value if
+	 *         there is none
+	 */
+	public Optional<String> findHighestVersion(String symbolicName) {
+		NavigableMap<String, Path> versions = getVersions(symbolicName);
+		return versions.isEmpty() ? Optional.empty() : Optional.of(versions.lastKey());
+	}
+
+	/**
+	 * @param symbolicName the symbolic name to look up
+	 * @return the file of the highest registered version of the bundle, or an empty
+	 *         value if there is none
+	 */
+	public Optional<Path> findHighest(String symbolicName) {
+		return findHighestVersion(symbolicName).map(getVersions(symbolicName)::get);
+	}
+
+	/**
+	 * @param symbolicName the symbolic name to look up
+	 * @param version the exact version to look up
+	 * @return whether the bundle is registered
+	 */
+	public boolean contains(String symbolicName, String version) {
+		return getVersions(symbolicName).containsKey(version);
+	}
+
+	private static Version parseVersion(String version) {
+		try {
+			return Version.parseVersion(version);
+		} catch(IllegalArgumentException e) {
+			return null;
+		}
+	}
+}
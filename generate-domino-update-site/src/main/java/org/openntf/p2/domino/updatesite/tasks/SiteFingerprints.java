@@ -0,0 +1,248 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.tasks;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openntf.p2.domino.updatesite.util.HashUtil;
+
+/**
+ * Records the sources that went into a generated update site along with the files
+ * they produced, allowing a later run to skip sources that have not changed.
+ *
+ * <p>Each source is identified by its path relative to the Domino directory and
+ * fingerprinted by size, modification time and SHA-256 hash. The hash is only
+ * consulted when the size matches but the modification time does not, which keeps
+ * the check for an unchanged installation to a single {@code stat} per source.</p>
+ *
+ * @since 6.1.0
+ */
+public class SiteFingerprints {
+	/** The name of the fingerprint file stored in the root of the update site */
+	public static final String FILE_NAME = ".fingerprints"; //$NON-NLS-1$
+
+	private static final String FORMAT_VERSION = "1"; //$NON-NLS-1$
+
+	private final Path siteDir;
+	private final Path sourceRoot;
+	private final String options;
+	private final Map<String, Entry> previous;
+	private final Map<String, Entry> current = new ConcurrentHashMap<>();
+
+	private SiteFingerprints(Path siteDir, Path sourceRoot, String options, Map<String, Entry> previous) {
+		this.siteDir = siteDir;
+		this.sourceRoot = sourceRoot;
+		this.options = options;
+		this.previous = previous;
+	}
+
+	/**
+	 * Loads the fingerprints stored in {@code siteDir}, if any.
+	 *
+	 * @param siteDir the root of the update site
+	 * @param sourceRoot the directory against which source paths are recorded
+	 * @param options a string describing the generation options in effect; if this
+	 *        differs from the stored value, all previous fingerprints are discarded
+	 * @return the loaded fingerprints, which may be empty
+	 * @throws IOException if there is a problem reading the fingerprint file
+	 */
+	public static SiteFingerprints load(Path siteDir, Path sourceRoot, String options) throws IOException {
+		Map<String, Entry> previous = new HashMap<>();
+		Path file = siteDir.resolve(FILE_NAME);
+		if(Files.isRegularFile(file)) {
+			try(BufferedReader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+				String header = r.readLine();
+				if(header != null && header.equals(FORMAT_VERSION + '\t' + options)) {
+					String line;
+					while((line = r.readLine()) != null) {
+						String[] parts = line.split("\t", -1); //$NON-NLS-1$
+						if(parts.length >= 6) {
+							List<String> outputs = parts[5].isEmpty() ? Collections.emptyList() : Arrays.asList(parts[5].split("\\|")); //$NON-NLS-1$
+							previous.put(parts[0], new Entry(Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[3], parts[4], outputs));
+						}
+					}
+				}
+			}
+		}
+		return new SiteFingerprints(siteDir, sourceRoot, options, previous);
+	}
+
+	/**
+	 * Determines whether {@code source} is unchanged since the previous run and all
+	 * of the files it produced are still present.
+	 *
+	 * @param source the source file or directory
+	 * @param variant any additional value the outputs depend on, such as a generated version
+	 * @return the outputs of the previous run, relative to the site directory, or an
+	 *         empty value if the source must be processed again
+	 * @throws IOException if there is a problem reading the source
+	 */
+	public Optional<List<String>> findUnchanged(Path source, String variant) throws IOException {
+		Entry prev = previous.get(toKey(source));
+		if(prev == null || !prev.variant.equals(variant)) {
+			return Optional.empty();
+		}
+		if(!prev.outputs.stream().allMatch(output -> Files.isRegularFile(siteDir.resolve(output)))) {
+			return Optional.empty();
+		}
+
+		long[] stat = stat(source);
+		if(stat[0] != prev.size) {
+			return Optional.empty();
+		}
+		if(stat[1] != prev.modified && !hash(source).equals(prev.hash)) {
+			return Optional.empty();
+		}
+		return Optional.of(prev.outputs);
+	}
+
+	/**
+	 * Records the outputs produced from {@code source} during this run.
+	 *
+	 * @param source the source file or directory
+	 * @param variant any additional value the outputs depend on
+	 * @param outputs the files produced from the source, which must reside within
+	 *        the site directory
+	 * @throws IOException if there is a problem reading the source
+	 */
+	public void record(Path source, String variant, Collection<Path> outputs) throws IOException {
+		String key = toKey(source);
+		long[] stat = stat(source);
+		Entry prev = previous.get(key);
+		String hash = prev != null && prev.size == stat[0] && prev.modified == stat[1] ? prev.hash : hash(source);
+		List<String> relativeOutputs = outputs.stream()
+			.map(output -> siteDir.relativize(output).toString().replace('\\', '/'))
+			.collect(Collectors.toList());
+		current.put(key, new Entry(stat[0], stat[1], hash, variant, relativeOutputs));
+	}
+
+	/**
+	 * @return the outputs recorded during this run, relative to the site directory
+	 */
+	public Set<String> getOutputs() {
+		return current.values().stream()
+			.flatMap(entry -> entry.outputs.stream())
+			.collect(Collectors.toSet());
+	}
+
+	/**
+	 * Writes the fingerprints recorded during this run to the site directory, replacing
+	 * those of the previous run.
+	 *
+	 * @throws IOException if there is a problem writing the fingerprint file
+	 */
+	public void save() throws IOException {
+		Path file = siteDir.resolve(FILE_NAME);
+		try(BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			w.write(FORMAT_VERSION + '\t' + options);
+			w.newLine();
+			for(Map.Entry<String, Entry> e : new TreeMap<>(current).entrySet()) {
+				Entry entry = e.getValue();
+				w.write(String.join("\t", //$NON-NLS-1$
+					e.getKey(),
+					Long.toString(entry.size),
+					Long.toString(entry.modified),
+					entry.hash,
+					entry.variant,
+					String.join("|", entry.outputs) //$NON-NLS-1$
+				));
+				w.newLine();
+			}
+		}
+	}
+
+	private String toKey(Path source) {
+		Path abs = source.toAbsolutePath().normalize();
+		Path root = sourceRoot.toAbsolutePath().normalize();
+		Path key = abs.startsWith(root) ? root.relativize(abs) : abs;
+		return key.toString().replace('\\', '/');
+	}
+
+	/**
+	 * @return a two-element array of the total size and newest modification time of
+	 *         the source
+	 */
+	private static long[] stat(Path source) throws IOException {
+		if(Files.isDirectory(source)) {
+			long size = 0;
+			long modified = 0;
+			for(Path file : listFiles(source)) {
+				size += Files.size(file);
+				modified = Math.max(modified, Files.getLastModifiedTime(file).toMillis());
+			}
+			return new long[] { size, modified };
+		} else {
+			return new long[] { Files.size(source), Files.getLastModifiedTime(source).toMillis() };
+		}
+	}
+
+	private static String hash(Path source) throws IOException {
+		if(!Files.isDirectory(source)) {
+			return HashUtil.sha256(source);
+		}
+		MessageDigest digest = HashUtil.newDigest("SHA-256"); //$NON-NLS-1$
+		for(Path file : listFiles(source)) {
+			digest.update(source.relativize(file).toString().replace('\\', '/').getBytes(StandardCharsets.UTF_8));
+			digest.update((byte)0);
+			HashUtil.update(digest, file);
+		}
+		return HashUtil.toHex(digest.digest());
+	}
+
+	private static List<Path> listFiles(Path dir) throws IOException {
+		try(Stream<Path> walk = Files.walk(dir)) {
+			return walk.filter(Files::isRegularFile)
+				.sorted()
+				.collect(Collectors.toCollection(ArrayList::new));
+		}
+	}
+
+	private static class Entry {
+		private final long size;
+		private final long modified;
+		private final String hash;
+		private final String variant;
+		private final List<String> outputs;
+
+		public Entry(long size, long modified, String hash, String variant, List<String> outputs) {
+			this.size = size;
+			this.modified = modified;
+			this.hash = hash;
+			this.variant = variant;
+			this.outputs = outputs;
+		}
+	}
+}
@@ -0,0 +1,289 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.tasks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.maven.plugin.logging.Log;
+import org.openntf.p2.domino.updatesite.Messages;
+import org.openntf.p2.domino.updatesite.util.HashUtil;
+
+/**
+ * Persistent on-disk cache of source bundles downloaded from the Eclipse release
+ * repositories, which never change once published.
+ *
+ * <p>Entries are keyed by symbolic name and version and stored alongside a
+ * {@code .sha256} file that is checked on every hit, so that a truncated or modified
+ * entry is discarded rather than copied into a site. The cache is bounded by total
+ * size, evicting the least-recently-used entries first.</p>
+ *
+ * <p>The cache directory is listed once, on first use, to find the size and last use
+ * of each entry and to delete any half-written entries left by an earlier run. After
+ * that, its total size is tracked in memory.</p>
+ *
+ * @since 6.1.0
+ */
+public class SourceBundleCache {
+	/** The default maximum size of the cache, in bytes */
+	public static final long DEFAULT_MAX_SIZE = 1024L * 1024 * 1024;
+
+	private static final String HASH_SUFFIX = ".sha256"; //$NON-NLS-1$
+
+	private final Path dir;
+	private final long maxSize;
+	private final Log log;
+	/** The size of each entry, from least to most recently used */
+	private final Map<Path, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long totalSize;
+	private boolean opened;
+
+	/**
+	 * @param cacheDir the root cache directory, within which a {@code sources}
+	 *        directory will be used
+	 * @param maxSize the maximum total size of cached bundles, in bytes, where a value
+	 *        of 0 or less disables the cache
+	 * @param log the log to report problems to
+	 */
+	public SourceBundleCache(Path cacheDir, long maxSize, Log log) {
+		this.dir = cacheDir.resolve("sources"); //$NON-NLS-1$
+		this.maxSize = maxSize;
+		this.log = log;
+	}
+
+	/**
+	 * Places a verified copy of the cached bundle, if present, in a new temporary file
+	 * in {@code destDir}. The copy is a hard link to the cache entry when the file
+	 * system allows it.
+	 *
+	 * @param symbolicName the symbolic name of the bundle
+	 * @param version the version of the bundle
+	 * @param destDir the directory in which to create the copy
+	 * @return the new file, or an empty value if the bundle is not cached
+	 */
+	public Optional<Path> get(String symbolicName, String version, Path destDir) {
+		if(maxSize <= 0) {
+			return Optional.empty();
+		}
+		Path entry = dir.resolve(toFileName(symbolicName, version));
+		Path hashFile = toHashFile(entry);
+		try {
+			open();
+			if(!Files.isRegularFile(entry) || !Files.isRegularFile(hashFile)) {
+				return Optional.empty();
+			}
+			String expected = new String(Files.readAllBytes(hashFile), StandardCharsets.US_ASCII).trim();
+			if(!expected.equals(HashUtil.sha256(entry))) {
+				if(log.isWarnEnabled()) {
+					log.warn(Messages.getString("SourceBundleCache.discardingCorruptEntry", entry)); //$NON-NLS-1$
+				}
+				remove(entry);
+				return Optional.empty();
+			}
+
+			// Mark the entry as recently used
+			Files.setLastModifiedTime(hashFile, FileTime.fromMillis(System.currentTimeMillis()));
+			touched(entry);
+			Path dest = Files.createTempFile(destDir, entry.getFileName().toString(), ".tmp"); //$NON-NLS-1$
+			try {
+				Files.delete(dest);
+				Files.createLink(dest, entry);
+			} catch(UnsupportedOperationException | IOException e) {
+				Files.copy(entry, dest, StandardCopyOption.REPLACE_EXISTING);
+			}
+			return Optional.of(dest);
+		} catch(IOException e) {
+			if(log.isWarnEnabled()) {
+				log.warn(Messages.getString("SourceBundleCache.unableToReadEntry", entry), e); //$NON-NLS-1$
+			}
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Adds a copy of {@code bundle} to the cache, evicting older entries as needed.
+	 * Failures are logged and otherwise ignored.
+	 *
+	 * @param symbolicName the symbolic name of the bundle
+	 * @param version the version of the bundle
+	 * @param bundle the downloaded bundle
+	 */
+	public void put(String symbolicName, String version, Path bundle) {
+		if(maxSize <= 0) {
+			return;
+		}
+		Path entry = dir.resolve(toFileName(symbolicName, version));
+		Path hashFile = toHashFile(entry);
+		try {
+			open();
+			Path temp = Files.createTempFile(dir, entry.getFileName().toString(), ".tmp"); //$NON-NLS-1$
+			try {
+				Files.copy(bundle, temp, StandardCopyOption.REPLACE_EXISTING);
+				long size = Files.size(temp);
+				String hash = HashUtil.sha256(temp);
+				moveIntoPlace(temp, entry);
+				Path hashTemp = Files.createTempFile(dir, hashFile.getFileName().toString(), ".tmp"); //$NON-NLS-1$
+				try {
+					Files.write(hashTemp, hash.getBytes(StandardCharsets.US_ASCII));
+					moveIntoPlace(hashTemp, hashFile);
+				} finally {
+					Files.deleteIfExists(hashTemp);
+				}
+				added(entry, size);
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		} catch(IOException e) {
+			if(log.isWarnEnabled()) {
+				log.warn(Messages.getString("SourceBundleCache.unableToWriteEntry", entry), e); //$NON-NLS-1$
+			}
+		}
+	}
+
+	/**
+	 * Lists the cache directory on first use, recording the size of each complete
+	 * entry in order of last use and deleting entries that are missing their bundle or
+	 * their hash file.
+	 */
+	private synchronized void open() throws IOException {
+		if(opened) {
+			return;
+		}
+		Files.createDirectories(dir);
+		List<Path> files;
+		try(Stream<Path> list = Files.list(dir)) {
+			files = list.collect(Collectors.toList());
+		}
+		Set<Path> names = new HashSet<>(files);
+		List<Path> hashFiles = new ArrayList<>();
+		for(Path file : files) {
+			String name = file.getFileName().toString();
+			if(name.endsWith(HASH_SUFFIX)) {
+				if(names.contains(toEntry(file))) {
+					hashFiles.add(file);
+				} else {
+					Files.deleteIfExists(file);
+				}
+			} else if(name.endsWith(".jar") && !names.contains(toHashFile(file))) { //$NON-NLS-1$
+				Files.deleteIfExists(file);
+			}
+		}
+
+		hashFiles.sort(Comparator.comparingLong(SourceBundleCache::lastUsed));
+		for(Path hashFile : hashFiles) {
+			Path entry = toEntry(hashFile);
+			long size = sizeOf(entry);
+			entries.put(entry, size);
+			totalSize += size;
+		}
+		opened = true;
+		evict();
+	}
+
+	private synchronized void added(Path entry, long size) throws IOException {
+		Long previous = entries.put(entry, size);
+		totalSize += size - (previous == null ? 0 : previous);
+		evict();
+	}
+
+	private synchronized void touched(Path entry) {
+		if(entries.get(entry) == null) {
+			// Written by another process since the cache was opened
+			long size = sizeOf(entry);
+			entries.put(entry, size);
+			totalSize += size;
+		}
+	}
+
+	private synchronized void remove(Path entry) throws IOException {
+		Long size = entries.remove(entry);
+		if(size != null) {
+			totalSize -= size;
+		}
+		Files.deleteIfExists(toHashFile(entry));
+		Files.deleteIfExists(entry);
+	}
+
+	/**
+	 * Removes the least-recently-used entries until the cache fits within its
+	 * maximum size.
+	 */
+	private synchronized void evict() throws IOException {
+		Iterator<Map.Entry<Path, Long>> iter = entries.entrySet().iterator();
+		while(totalSize > maxSize && iter.hasNext()) {
+			Map.Entry<Path, Long> e = iter.next();
+			iter.remove();
+			totalSize -= e.getValue();
+			Files.deleteIfExists(toHashFile(e.getKey()));
+			Files.deleteIfExists(e.getKey());
+		}
+	}
+
+	private static Path toHashFile(Path entry) {
+		return entry.resolveSibling(entry.getFileName() + HASH_SUFFIX);
+	}
+
+	private static Path toEntry(Path hashFile) {
+		String name = hashFile.getFileName().toString();
+		return hashFile.resolveSibling(name.substring(0, name.length() - HASH_SUFFIX.length()));
+	}
+
+	private static long sizeOf(Path file) {
+		try {
+			return Files.size(file);
+		} catch(IOException e) {
+			return 0;
+		}
+	}
+
+	private static long lastUsed(Path file) {
+		try {
+			return Files.getLastModifiedTime(file).toMillis();
+		} catch(IOException e) {
+			return 0;
+		}
+	}
+
+	private static void moveIntoPlace(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch(AtomicMoveNotSupportedException | FileAlreadyExistsException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static String toFileName(String symbolicName, String version) {
+		return symbolicName + '_' + version + ".jar"; //$NON-NLS-1$
+	}
+
+}
@@ -0,0 +1,333 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.tasks;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.logging.Log;
+import org.openntf.p2.domino.updatesite.Messages;
+
+import com.ibm.commons.util.PathUtil;
+
+/**
+ * Fetches files from a remote p2 repository on a dedicated thread pool, retrying
+ * transient failures with exponential backoff.
+ *
+ * <p>Response bodies are always read to the end and closed rather than disconnected,
+ * which allows the JDK to return each HTTP connection to its keep-alive cache for
+ * reuse by the next request to the same host.</p>
+ *
+ * @since 6.1.0
+ */
+public class SourceBundleDownloader implements Closeable {
+	/** The default number of attempts made for each file */
+	public static final int DEFAULT_ATTEMPTS = 3;
+	/** The default delay before the first retry, in milliseconds */
+	public static final long DEFAULT_BACKOFF = 1000;
+
+	private static final int TIMEOUT = 30000;
+
+	private final String repositoryUrl;
+	private final Log log;
+	private final ExecutorService executor;
+	private int attempts = DEFAULT_ATTEMPTS;
+	private long backoff = DEFAULT_BACKOFF;
+
+	/**
+	 * @param repositoryUrl the base URL of the p2 repository
+	 * @param threads the maximum number of concurrent requests
+	 * @param log the log to report retries to
+	 */
+	public SourceBundleDownloader(String repositoryUrl, int threads, Log log) {
+		this.repositoryUrl = repositoryUrl;
+		this.log = log;
+
+		AtomicInteger threadCount = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+			Thread t = new Thread(r, "generate-domino-update-site-download-" + threadCount.incrementAndGet()); //$NON-NLS-1$
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * @param attempts the number of times to try each request before giving up
+	 */
+	public void setAttempts(int attempts) {
+		this.attempts = Math.max(1, attempts);
+	}
+
+	/**
+	 * @param backoff the delay before the first retry, in milliseconds, which doubles
+	 *        with each later retry
+	 */
+	public void setBackoff(long backoff) {
+		this.backoff = Math.max(0, backoff);
+	}
+
+	/**
+	 * Asynchronously reads a file from the repository.
+	 *
+	 * @param <T> the type of value produced by {@code reader}
+	 * @param path the path of the file relative to the repository root
+	 * @param reader a function to consume the response body, which may be called
+	 *        again if a retryable failure occurs
+	 * @return a future for the result of {@code reader}, which fails with a
+	 *         {@link FileNotFoundException} if the file does not exist
+	 */
+	public <T> CompletableFuture<T> fetch(String path, StreamReader<T> reader) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return fetchWithRetry(path, Collections.emptyMap(), (conn, is) -> reader.read(is));
+			} catch(IOException e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+
+	/**
+	 * Asynchronously reads a file from the repository unless it is unchanged since a
+	 * previous response with the given validators.
+	 *
+	 * @param <T> the type of value produced by {@code reader}
+	 * @param path the path of the file relative to the repository root
+	 * @param etag the {@code ETag} of the previous response, or {@code null}
+	 * @param lastModified the {@code Last-Modified} value of the previous response,
+	 *        or {@code null}
+	 * @param reader a function to consume the response body, which may be called
+	 *        again if a retryable failure occurs
+	 * @return a future for the response, which fails with a
+	 *         {@link FileNotFoundException} if the file does not exist
+	 */
+	public <T> CompletableFuture<ConditionalResponse<T>> fetchIfModified(String path, String etag, String lastModified, StreamReader<T> reader) {
+		Map<String, String> headers = new HashMap<>();
+		if(etag != null) {
+			headers.put("If-None-Match", etag); //$NON-NLS-1$
+		}
+		if(lastModified != null) {
+			headers.put("If-Modified-Since", lastModified); //$NON-NLS-1$
+		}
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return fetchWithRetry(path, headers, (conn, is) -> {
+					String newEtag = conn.getHeaderField("ETag"); //$NON-NLS-1$
+					String newLastModified = conn.getHeaderField("Last-Modified"); //$NON-NLS-1$
+					if(is == null) {
+						return new ConditionalResponse<T>(true, null, newEtag == null ? etag : newEtag, newLastModified == null ? lastModified : newLastModified);
+					}
+					return new ConditionalResponse<T>(false, reader.read(is), newEtag, newLastModified);
+				});
+			} catch(IOException e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+
+	/**
+	 * Asynchronously downloads a file from the repository to a new temporary file in
+	 * {@code dir}. The caller is responsible for moving or deleting the file.
+	 *
+	 * @param path the path of the file relative to the repository root
+	 * @param dir the directory in which to create the file
+	 * @return a future for the downloaded file
+	 */
+	public CompletableFuture<Path> download(String path, Path dir) {
+		String fileName = path.substring(path.lastIndexOf('/') + 1);
+		return fetch(path, is -> {
+			Path temp = Files.createTempFile(dir, fileName, ".tmp"); //$NON-NLS-1$
+			try {
+				Files.copy(is, temp, StandardCopyOption.REPLACE_EXISTING);
+				return temp;
+			} catch(IOException | RuntimeException e) {
+				Files.deleteIfExists(temp);
+				throw e;
+			}
+		});
+	}
+
+	/**
+	 * @param path the path of a file relative to the repository root
+	 * @return the full URL of the file
+	 */
+	public String toUrl(String path) {
+		return PathUtil.concat(repositoryUrl, path, '/');
+	}
+
+	/**
+	 * Stops any pending requests.
+	 */
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	private <T> T fetchWithRetry(String path, Map<String, String> headers, ResponseReader<T> reader) throws IOException {
+		URL url = new URL(toUrl(path));
+		for(int attempt = 1; ; attempt++) {
+			try {
+				return fetchOnce(url, headers, reader);
+			} catch(FileNotFoundException | NonRetryableException e) {
+				throw e;
+			} catch(IOException e) {
+				if(attempt >= attempts) {
+					throw e;
+				}
+				long delay = backoff << (attempt - 1);
+				if(log.isDebugEnabled()) {
+					log.debug(Messages.getString("SourceBundleDownloader.retrying", url, attempt, delay), e); //$NON-NLS-1$
+				}
+				try {
+					Thread.sleep(delay);
+				} catch(InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					InterruptedIOException ex = new InterruptedIOException();
+					ex.addSuppressed(e);
+					throw ex;
+				}
+			}
+		}
+	}
+
+	private <T> T fetchOnce(URL url, Map<String, String> headers, ResponseReader<T> reader) throws IOException {
+		URLConnection conn = url.openConnection();
+		conn.setConnectTimeout(TIMEOUT);
+		conn.setReadTimeout(TIMEOUT);
+		headers.forEach(conn::setRequestProperty);
+		if(conn instanceof HttpURLConnection) {
+			HttpURLConnection http = (HttpURLConnection)conn;
+			int status = http.getResponseCode();
+			if(status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+				// A 304 response has no body
+				return reader.read(conn, null);
+			} else if(status >= 400) {
+				// Drain the error body so that the connection may be reused
+				try(InputStream es = http.getErrorStream()) {
+					if(es != null) {
+						drain(es);
+					}
+				}
+				if(status == HttpURLConnection.HTTP_NOT_FOUND || status == HttpURLConnection.HTTP_GONE) {
+					throw new FileNotFoundException(url.toString());
+				} else if(status >= 500 || status == HttpURLConnection.HTTP_CLIENT_TIMEOUT || status == 429) {
+					throw new IOException(Messages.getString("SourceBundleDownloader.httpStatus", url, status)); //$NON-NLS-1$
+				} else {
+					throw new NonRetryableException(Messages.getString("SourceBundleDownloader.httpStatus", url, status)); //$NON-NLS-1$
+				}
+			}
+		}
+		try(InputStream is = conn.getInputStream()) {
+			T result = reader.read(conn, is);
+			drain(is);
+			return result;
+		}
+	}
+
+	private static void drain(InputStream is) throws IOException {
+		byte[] buffer = new byte[8192];
+		while(is.read(buffer) != -1) {
+			// Read to the end of the body
+		}
+	}
+
+	/**
+	 * Consumes the body of a response.
+	 *
+	 * @param <T> the type of value produced
+	 */
+	@FunctionalInterface
+	public interface StreamReader<T> {
+		T read(InputStream is) throws IOException;
+	}
+
+	/**
+	 * Consumes a response along with its headers.
+	 *
+	 * @param <T> the type of value produced
+	 */
+	@FunctionalInterface
+	private interface ResponseReader<T> {
+		/**
+		 * @param conn the connection, for access to response headers
+		 * @param is the response body, or {@code null} for a 304 response
+		 */
+		T read(URLConnection conn, InputStream is) throws IOException;
+	}
+
+	/**
+	 * The result of a conditional request.
+	 *
+	 * @param <T> the type of value read from the response body
+	 */
+	public static class ConditionalResponse<T> {
+		private final boolean notModified;
+		private final T value;
+		private final String etag;
+		private final String lastModified;
+
+		public ConditionalResponse(boolean notModified, T value, String etag, String lastModified) {
+			this.notModified = notModified;
+			this.value = value;
+			this.etag = etag;
+			this.lastModified = lastModified;
+		}
+
+		/**
+		 * @return whether the server reported that the file is unchanged, in which
+		 *         case there is no value
+		 */
+		public boolean isNotModified() {
+			return notModified;
+		}
+
+		public T getValue() {
+			return value;
+		}
+
+		public String getETag() {
+			return etag;
+		}
+
+		public String getLastModified() {
+			return lastModified;
+		}
+	}
+
+	private static class NonRetryableException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		public NonRetryableException(String message) {
+			super(message);
+		}
+	}
+}
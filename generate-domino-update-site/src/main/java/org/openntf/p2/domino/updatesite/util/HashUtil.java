@@ -0,0 +1,109 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Utilities for computing the lowercase hex checksums used to fingerprint cached and
+ * deployed files.
+ *
+ * @since 6.1.0
+ */
+public enum HashUtil {
+	;
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+
+	/**
+	 * @param file the file to hash
+	 * @return the lowercase hex SHA-256 checksum of the file
+	 * @throws IOException if there is a problem reading the file
+	 */
+	public static String sha256(Path file) throws IOException {
+		MessageDigest digest = newDigest("SHA-256"); //$NON-NLS-1$
+		update(digest, file);
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * @param file the file to hash
+	 * @return the lowercase hex SHA-1 checksum of the file
+	 * @throws IOException if there is a problem reading the file
+	 */
+	public static String sha1(Path file) throws IOException {
+		MessageDigest digest = newDigest("SHA-1"); //$NON-NLS-1$
+		update(digest, file);
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * @param value the value to hash
+	 * @return the lowercase hex SHA-256 checksum of the UTF-8 bytes of {@code value}
+	 */
+	public static String sha256(String value) {
+		return toHex(newDigest("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8))); //$NON-NLS-1$
+	}
+
+	/**
+	 * @param algorithm the name of a digest algorithm every JRE must support, such as
+	 *        {@code "SHA-256"}
+	 * @return a new digest for the algorithm
+	 */
+	public static MessageDigest newDigest(String algorithm) {
+		try {
+			return MessageDigest.getInstance(algorithm);
+		} catch(NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Reads the whole of {@code file} into {@code digest}.
+	 *
+	 * @param digest the digest to update
+	 * @param file the file to read
+	 * @throws IOException if there is a problem reading the file
+	 */
+	public static void update(MessageDigest digest, Path file) throws IOException {
+		byte[] buffer = new byte[8192];
+		try(InputStream is = Files.newInputStream(file)) {
+			int read;
+			while((read = is.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		}
+	}
+
+	/**
+	 * @param bytes the bytes to format
+	 * @return the bytes as a lowercase hex string
+	 */
+	public static String toHex(byte[] bytes) {
+		char[] result = new char[bytes.length * 2];
+		for(int i = 0; i < bytes.length; i++) {
+			result[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+			result[i * 2 + 1] = HEX[bytes[i] & 0xf];
+		}
+		return new String(result);
+	}
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+
+/**
+ * Append-only writer for JAR files, used in place of a ZIP filesystem so that each
+ * entry is streamed to disk once.
+ *
+ * <p>Entry names are tracked so that the first entry written for a given name wins
+ * and later ones are skipped, and directory entries are created for the parents of
+ * each entry as needed.</p>
+ *
+ * @since 6.1.0
+ */
+public class JarWriter implements Closeable {
+	private final ZipArchiveOutputStream zos;
+	private final Set<String> names = new HashSet<>();
+	private final byte[] buffer = new byte[8192];
+	private long time = -1;
+
+	public JarWriter(Path dest) throws IOException {
+		this.zos = new ZipArchiveOutputStream(dest);
+	}
+
+	/**
+	 * Sets the modification time used for the manifest and for generated directory
+	 * entries, so that the same input produces the same archive. By default, the
+	 * current time is used.
+	 *
+	 * @param time the modification time, or {@code -1} to use the current time
+	 * @since 6.1.0
+	 */
+	public void setTime(long time) {
+		this.time = time;
+	}
+
+	/**
+	 * @param name the entry name to check
+	 * @return whether an entry with the given name has already been written
+	 */
+	public boolean contains(String name) {
+		return names.contains(name);
+	}
+
+	/**
+	 * Writes {@code manifest} as {@code META-INF/MANIFEST.MF}.
+	 *
+	 * @param manifest the manifest to write
+	 * @return {@code true} if the entry was written; {@code false} if a manifest
+	 *         was already present
+	 * @throws IOException if there is a problem writing the entry
+	 */
+	public boolean writeManifest(Manifest manifest) throws IOException {
+		if(!begin(JarFile.MANIFEST_NAME, currentTime())) {
+			return false;
+		}
+		manifest.write(zos);
+		zos.closeArchiveEntry();
+		return true;
+	}
+
+	/**
+	 * Writes the contents of {@code is} to a new entry.
+	 *
+	 * @param name the name of the entry
+	 * @param is the content of the entry
+	 * @param time the modification time of the entry
+	 * @return {@code true} if the entry was written; {@code false} if an entry
+	 *         with the same name was already present
+	 * @throws IOException if there is a problem writing the entry
+	 */
+	public boolean write(String name, InputStream is, long time) throws IOException {
+		if(!begin(name, time)) {
+			return false;
+		}
+		int read;
+		while((read = is.read(buffer)) != -1) {
+			zos.write(buffer, 0, read);
+		}
+		zos.closeArchiveEntry();
+		return true;
+	}
+
+	/**
+	 * Writes the contents of {@code file} to a new entry.
+	 *
+	 * @param name the name of the entry
+	 * @param file the file to copy
+	 * @return {@code true} if the entry was written; {@code false} if an entry
+	 *         with the same name was already present
+	 * @throws IOException if there is a problem writing the entry
+	 */
+	public boolean write(String name, Path file) throws IOException {
+		if(names.contains(name)) {
+			return false;
+		}
+		try(InputStream is = Files.newInputStream(file)) {
+			return write(name, is, Files.getLastModifiedTime(file).toMillis());
+		}
+	}
+
+	/**
+	 * Copies an entry from another archive without decompressing it.
+	 *
+	 * @param entry the entry to copy, which carries the name, sizes and CRC
+	 * @param raw the still-compressed content of the entry
+	 * @return {@code true} if the entry was written; {@code false} if an entry
+	 *         with the same name was already present
+	 * @throws IOException if there is a problem writing the entry
+	 */
+	public boolean writeRaw(ZipArchiveEntry entry, InputStream raw) throws IOException {
+		String name = entry.getName();
+		if(names.contains(name)) {
+			return false;
+		}
+		writeParents(name);
+		names.add(name);
+		zos.addRawArchiveEntry(entry, raw);
+		return true;
+	}
+
+	/**
+	 * Writes a directory entry, along with any missing parent entries.
+	 *
+	 * @param name the name of the directory, with or without a trailing {@code '/'}
+	 * @throws IOException if there is a problem writing the entry
+	 */
+	public void writeDirectory(String name) throws IOException {
+		String dirName = name.endsWith("/") ? name : name + '/'; //$NON-NLS-1$
+		if(names.contains(dirName)) {
+			return;
+		}
+		writeParents(dirName);
+		names.add(dirName);
+		ZipArchiveEntry entry = new ZipArchiveEntry(dirName);
+		entry.setTime(currentTime());
+		zos.putArchiveEntry(entry);
+		zos.closeArchiveEntry();
+	}
+
+	@Override
+	public void close() throws IOException {
+		zos.close();
+	}
+
+	private boolean begin(String name, long time) throws IOException {
+		if(names.contains(name)) {
+			return false;
+		}
+		writeParents(name);
+		names.add(name);
+		ZipArchiveEntry entry = new ZipArchiveEntry(name);
+		entry.setTime(time);
+		zos.putArchiveEntry(entry);
+		return true;
+	}
+
+	private long currentTime() {
+		return time < 0 ? System.currentTimeMillis() : time;
+	}
+
+	private void writeParents(String name) throws IOException {
+		int slash = name.lastIndexOf('/', name.length() - 2);
+		if(slash > 0) {
+			writeDirectory(name.substring(0, slash + 1));
+		}
+	}
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.util;
+
+import java.util.Map;
+
+/**
+ * Utilities for resolving {@code %key} references in localized bundle and feature
+ * values against their {@code plugin.properties} or {@code feature.properties}.
+ * 
+ * @since 6.1.0
+ */
+public enum NLSUtil {
+	;
+
+	/**
+	 * Replaces each {@code %key} token in {@code value} with the matching property,
+	 * scanning the value once.
+	 * 
+	 * <p>A key runs to the end of the longest sequence of letters, digits, {@code '_'},
+	 * {@code '-'} and {@code '.'} characters after the {@code '%'}, so a key is never
+	 * mistaken for a shorter key that it starts with. When that sequence is not a
+	 * known key, any trailing punctuation is dropped from it, as in {@code "%name."}.
+	 * Tokens with no matching key are left as-is.</p>
+	 * 
+	 * @param value the value to resolve, which may be {@code null}
+	 * @param properties the localization properties, such as a {@link java.util.Properties}
+	 * @return the resolved value, or {@code null} if {@code value} is {@code null}
+	 */
+	public static String resolve(String value, Map<?, ?> properties) {
+		if(value == null) {
+			return null;
+		}
+		int percent = value.indexOf('%');
+		if(percent < 0 || properties.isEmpty()) {
+			return value;
+		}
+
+		StringBuilder result = new StringBuilder(value.length() + 16);
+		int copied = 0;
+		while(percent >= 0) {
+			int end = percent + 1;
+			while(end < value.length() && isKeyChar(value.charAt(end))) {
+				end++;
+			}
+			int matchEnd = -1;
+			Object replacement = null;
+			for(int i = end; i > percent + 1; i--) {
+				replacement = properties.get(value.substring(percent + 1, i));
+				if(replacement != null) {
+					matchEnd = i;
+					break;
+				}
+				if(Character.isLetterOrDigit(value.charAt(i - 1))) {
+					break;
+				}
+			}
+			if(matchEnd > 0) {
+				result.append(value, copied, percent).append(replacement);
+				copied = matchEnd;
+				percent = value.indexOf('%', matchEnd);
+			} else {
+				percent = value.indexOf('%', Math.max(end, percent + 1));
+			}
+		}
+		return result.append(value, copied, value.length()).toString();
+	}
+
+	private static boolean isKeyChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.';
+	}
+}
@@ -0,0 +1,217 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Indenting wrapper around an {@link XMLStreamWriter}, used to write large documents
+ * element-by-element without building a DOM.
+ *
+ * <p>Each start tag is held back until its first child or text is written, so that
+ * elements without content are written in the short {@code <name/>} form. A
+ * {@code null} attribute value is written as an empty string.</p>
+ *
+ * <p>Pre-serialized fragments, such as those written by another {@code XmlWriter}
+ * with a matching base depth, can be inserted with {@link #fragment(String)}.</p>
+ *
+ * @since 6.1.0
+ */
+public class XmlWriter {
+	private static final String INDENT = "    "; //$NON-NLS-1$
+	/** Shared to avoid a provider lookup per writer, and never reconfigured after creation */
+	private static final XMLOutputFactory FACTORY = XMLOutputFactory.newInstance();
+
+	private final Writer out;
+	private final XMLStreamWriter w;
+	private final int baseDepth;
+	private final Deque<boolean[]> open = new ArrayDeque<>();
+	private String pendingName;
+	private final List<String[]> pendingAttributes = new ArrayList<>();
+	private boolean started;
+
+	/**
+	 * @param out the writer to write to, which is flushed but never closed
+	 * @param baseDepth the indentation depth of top-level elements, for use when
+	 *        writing a fragment of a larger document
+	 */
+	public XmlWriter(Writer out, int baseDepth) throws XMLStreamException {
+		this.out = out;
+		this.w = FACTORY.createXMLStreamWriter(out);
+		this.baseDepth = baseDepth;
+	}
+
+	/**
+	 * Writes the XML declaration followed by a processing instruction, as used at the
+	 * top of p2 repository files.
+	 */
+	public void startDocument(String piTarget, String piData) throws XMLStreamException {
+		w.writeStartDocument("UTF-8", "1.0"); //$NON-NLS-1$ //$NON-NLS-2$
+		w.writeCharacters("\n"); //$NON-NLS-1$
+		w.writeProcessingInstruction(piTarget, piData);
+		started = true;
+	}
+
+	public XmlWriter startElement(String name) throws XMLStreamException {
+		openPending();
+		if(!open.isEmpty()) {
+			open.peek()[0] = true;
+		}
+		writeIndent();
+		pendingName = name;
+		return this;
+	}
+
+	public XmlWriter attribute(String name, String value) {
+		pendingAttributes.add(new String[] { name, value == null ? "" : value }); //$NON-NLS-1$
+		return this;
+	}
+
+	public XmlWriter text(String text) throws XMLStreamException {
+		openPending();
+		if(text != null) {
+			w.writeCharacters(text);
+		}
+		return this;
+	}
+
+	public XmlWriter endElement() throws XMLStreamException {
+		if(pendingName != null) {
+			w.writeEmptyElement(pendingName);
+			writePendingAttributes();
+		} else {
+			boolean[] hasChildren = open.pop();
+			if(hasChildren[0]) {
+				writeIndent();
+			}
+			w.writeEndElement();
+		}
+		return this;
+	}
+
+	/**
+	 * Writes pre-serialized XML as the next child of the current element. The fragment
+	 * should begin with its own line break and indentation.
+	 *
+	 * @param fragment the XML to write
+	 */
+	public XmlWriter fragment(String fragment) throws XMLStreamException {
+		openPending();
+		if(!open.isEmpty()) {
+			open.peek()[0] = true;
+		}
+		// Close any start tag before writing around the stream writer
+		w.writeCharacters(""); //$NON-NLS-1$
+		flush();
+		try {
+			out.write(fragment);
+		} catch(IOException e) {
+			throw new XMLStreamException(e);
+		}
+		started = true;
+		return this;
+	}
+
+	/**
+	 * Writes an element with the given attributes and no content.
+	 *
+	 * @param name the element name
+	 * @param attributes alternating attribute names and values
+	 */
+	public XmlWriter emptyElement(String name, String... attributes) throws XMLStreamException {
+		startElement(name);
+		for(int i = 0; i < attributes.length; i += 2) {
+			attribute(attributes[i], attributes[i + 1]);
+		}
+		return endElement();
+	}
+
+	/**
+	 * Writes an element with the given text content and attributes.
+	 *
+	 * @param name the element name
+	 * @param text the text content of the element
+	 * @param attributes alternating attribute names and values
+	 */
+	public XmlWriter textElement(String name, String text, String... attributes) throws XMLStreamException {
+		startElement(name);
+		for(int i = 0; i < attributes.length; i += 2) {
+			attribute(attributes[i], attributes[i + 1]);
+		}
+		text(text);
+		return endElement();
+	}
+
+	/**
+	 * Closes any open elements and flushes the underlying writer, which is not closed.
+	 */
+	public void endDocument() throws XMLStreamException {
+		while(pendingName != null || !open.isEmpty()) {
+			endElement();
+		}
+		w.writeEndDocument();
+		flush();
+	}
+
+	/**
+	 * Writes any buffered content to the underlying writer.
+	 */
+	public void flush() throws XMLStreamException {
+		w.flush();
+		try {
+			out.flush();
+		} catch(IOException e) {
+			throw new XMLStreamException(e);
+		}
+	}
+
+	private void openPending() throws XMLStreamException {
+		if(pendingName != null) {
+			w.writeStartElement(pendingName);
+			writePendingAttributes();
+			open.push(new boolean[1]);
+		}
+	}
+
+	private void writePendingAttributes() throws XMLStreamException {
+		for(String[] attr : pendingAttributes) {
+			w.writeAttribute(attr[0], attr[1]);
+		}
+		pendingAttributes.clear();
+		pendingName = null;
+	}
+
+	private void writeIndent() throws XMLStreamException {
+		int depth = baseDepth + open.size();
+		if(started || depth > 0) {
+			StringBuilder indent = new StringBuilder(1 + depth * INDENT.length()).append('\n');
+			for(int i = 0; i < depth; i++) {
+				indent.append(INDENT);
+			}
+			w.writeCharacters(indent.toString());
+		}
+		started = true;
+	}
+}
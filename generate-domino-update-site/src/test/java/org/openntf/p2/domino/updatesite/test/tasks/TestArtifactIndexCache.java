@@ -0,0 +1,87 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.test.tasks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openntf.p2.domino.updatesite.tasks.ArtifactIndexCache;
+import org.openntf.p2.domino.updatesite.tasks.EclipseArtifactIndex;
+
+@SuppressWarnings("nls")
+public class TestArtifactIndexCache {
+	private static final String URL = "https://download.eclipse.org/releases/neon/201612211000";
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void testStoreAndLoad() throws IOException {
+		ArtifactIndexCache cache = new ArtifactIndexCache(tempDir, URL, new SystemStreamLog());
+		assertFalse(cache.load().isPresent());
+
+		cache.store(index(), "\"abc123\"", "Wed, 21 Dec 2016 10:00:00 GMT");
+		ArtifactIndexCache.Entry entry = new ArtifactIndexCache(tempDir, URL, new SystemStreamLog()).load().get();
+		assertEquals("\"abc123\"", entry.getETag());
+		assertEquals("Wed, 21 Dec 2016 10:00:00 GMT", entry.getLastModified());
+		assertEquals(3, entry.getIndex().size());
+		assertTrue(entry.getIndex().contains("osgi.bundle", "org.example.source", "1.0.0.v20160101"));
+
+		// Missing validators are stored as absent, and no temporary files are left behind
+		cache.store(index(), null, null);
+		entry = cache.load().get();
+		assertNull(entry.getETag());
+		assertNull(entry.getLastModified());
+		try(Stream<Path> files = Files.walk(tempDir)) {
+			assertFalse(files.anyMatch(p -> p.getFileName().toString().endsWith(".tmp")));
+		}
+	}
+
+	@Test
+	public void testSeparateRepositories() throws IOException {
+		new ArtifactIndexCache(tempDir, URL, new SystemStreamLog()).store(index(), "\"abc123\"", null);
+		assertFalse(new ArtifactIndexCache(tempDir, "https://download.eclipse.org/releases/2021-12/202112081000/", new SystemStreamLog()).load().isPresent());
+	}
+
+	@Test
+	public void testCorruptIndex() throws IOException {
+		ArtifactIndexCache cache = new ArtifactIndexCache(tempDir, URL, new SystemStreamLog());
+		cache.store(index(), "\"abc123\"", null);
+		try(Stream<Path> files = Files.walk(tempDir)) {
+			Path indexFile = files.filter(p -> p.getFileName().toString().equals("artifacts.idx.gz")).findFirst().get();
+			Files.write(indexFile, "not gzip".getBytes(StandardCharsets.UTF_8));
+		}
+
+		// A damaged copy is treated as a miss, so the index is downloaded again
+		assertFalse(cache.load().isPresent());
+	}
+
+	private static EclipseArtifactIndex index() throws IOException {
+		return EclipseArtifactIndex.read(new ByteArrayInputStream(TestEclipseArtifactIndex.ARTIFACTS_XML.getBytes(StandardCharsets.UTF_8)));
+	}
+}
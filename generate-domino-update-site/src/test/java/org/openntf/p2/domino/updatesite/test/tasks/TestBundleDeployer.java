@@ -0,0 +1,179 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.test.tasks;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.connector.basic.BasicRepositoryConnectorFactory;
+import org.eclipse.aether.impl.DefaultServiceLocator;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.spi.connector.RepositoryConnectorFactory;
+import org.eclipse.aether.spi.connector.layout.RepositoryLayoutProvider;
+import org.eclipse.aether.spi.connector.transport.TransporterFactory;
+import org.eclipse.aether.spi.connector.transport.TransporterProvider;
+import org.eclipse.aether.transport.file.FileTransporterFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openntf.p2.domino.updatesite.tasks.BundleDeployer;
+import org.openntf.p2.domino.updatesite.tasks.DeployJournal;
+
+@SuppressWarnings("nls")
+public class TestBundleDeployer {
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void testDeployToFileRepository() throws Exception {
+		RepositorySystem system = newRepositorySystem();
+		DefaultRepositorySystemSession session = MavenRepositorySystemUtils.newSession();
+		session.setLocalRepositoryManager(system.newLocalRepositoryManager(session, new LocalRepository(tempDir.resolve("local").toFile())));
+		Path remote = tempDir.resolve("remote");
+		RemoteRepository repository = new RemoteRepository.Builder("test", "default", remote.toUri().toString()).build();
+
+		List<Artifact> artifacts = new ArrayList<>();
+		for(String version : new String[] { "1.0.0", "1.1.0" }) {
+			artifacts.add(artifact("com.example.a", "", "jar", version));
+			artifacts.add(artifact("com.example.a", "", "pom", version));
+		}
+		for(int i = 0; i < 8; i++) {
+			artifacts.add(artifact("com.example.b" + i, "", "jar", "2.0.0"));
+			artifacts.add(artifact("com.example.b" + i, "sources", "jar", "2.0.0"));
+		}
+		try(BundleDeployer deployer = new BundleDeployer(system, session, repository, 4)) {
+			deployer.deploy(artifacts);
+		}
+
+		Path a = remote.resolve("com/example/com.example.a");
+		assertArrayEquals("com.example.a-1.1.0.jar".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(a.resolve("1.1.0/com.example.a-1.1.0.jar")));
+		assertTrue(Files.isRegularFile(a.resolve("1.0.0/com.example.a-1.0.0.pom")));
+		assertTrue(Files.isRegularFile(a.resolve("1.0.0/com.example.a-1.0.0.jar.sha1")));
+		String metadata = new String(Files.readAllBytes(a.resolve("maven-metadata.xml")), StandardCharsets.UTF_8);
+		assertTrue(metadata.contains("<version>1.0.0</version>") && metadata.contains("<version>1.1.0</version>"), metadata);
+		assertTrue(Files.isRegularFile(a.resolve("maven-metadata.xml.sha1")));
+
+		for(int i = 0; i < 8; i++) {
+			Path b = remote.resolve("com/example/com.example.b" + i + "/2.0.0");
+			assertTrue(Files.isRegularFile(b.resolve("com.example.b" + i + "-2.0.0.jar.md5")));
+			assertTrue(Files.isRegularFile(b.resolve("com.example.b" + i + "-2.0.0-sources.jar")));
+			assertTrue(Files.isRegularFile(b.resolve("com.example.b" + i + "-2.0.0-sources.jar.sha1")));
+		}
+	}
+
+	@Test
+	public void testSkipExisting() throws Exception {
+		DefaultServiceLocator locator = newServiceLocator();
+		RepositorySystem system = locator.getService(RepositorySystem.class);
+		DefaultRepositorySystemSession session = MavenRepositorySystemUtils.newSession();
+		session.setLocalRepositoryManager(system.newLocalRepositoryManager(session, new LocalRepository(tempDir.resolve("local").toFile())));
+		Path remote = tempDir.resolve("remote");
+		RemoteRepository repository = new RemoteRepository.Builder("test", "default", remote.toUri().toString()).build();
+
+		List<Artifact> artifacts = new ArrayList<>();
+		for(int i = 0; i < 4; i++) {
+			artifacts.add(artifact("com.example.c" + i, "", "jar", "1.0.0"));
+			artifacts.add(artifact("com.example.c" + i, "", "pom", "1.0.0"));
+		}
+		Path journalFile = tempDir.resolve("deploy.journal");
+		try(DeployJournal journal = DeployJournal.open(journalFile); BundleDeployer deployer = new BundleDeployer(system, session, repository, 2)) {
+			deployer.setJournal(journal);
+			assertEquals(0, deployer.deploy(artifacts));
+		}
+		assertEquals(artifacts.size(), Files.readAllLines(journalFile).size());
+
+		// A rerun with the journal skips everything, while a changed file is deployed again
+		Path changed = artifacts.get(0).getFile().toPath();
+		Files.write(changed, "changed".getBytes(StandardCharsets.UTF_8));
+		try(DeployJournal journal = DeployJournal.open(journalFile); BundleDeployer deployer = new BundleDeployer(system, session, repository, 2)) {
+			deployer.setJournal(journal);
+			assertEquals(artifacts.size() - 1, deployer.deploy(artifacts));
+		}
+		assertArrayEquals(Files.readAllBytes(changed), Files.readAllBytes(remote.resolve("com/example/com.example.c0/1.0.0/com.example.c0-1.0.0.jar")));
+
+		// Without a journal, the checksum probe finds the deployed artifacts
+		try(DeployJournal journal = DeployJournal.open(tempDir.resolve("empty.journal")); BundleDeployer deployer = new BundleDeployer(system, session, repository, 2)) {
+			deployer.setJournal(journal);
+			deployer.setProbe(locator.getService(TransporterProvider.class), locator.getService(RepositoryLayoutProvider.class));
+			assertEquals(artifacts.size(), deployer.deploy(artifacts));
+		}
+		assertEquals(artifacts.size(), Files.readAllLines(tempDir.resolve("empty.journal")).size());
+	}
+
+	@Test
+	public void testDeployInChunks() throws Exception {
+		DefaultServiceLocator locator = newServiceLocator();
+		RepositorySystem system = locator.getService(RepositorySystem.class);
+		DefaultRepositorySystemSession session = MavenRepositorySystemUtils.newSession();
+		session.setLocalRepositoryManager(system.newLocalRepositoryManager(session, new LocalRepository(tempDir.resolve("local").toFile())));
+		Path remote = tempDir.resolve("remote");
+		RemoteRepository repository = new RemoteRepository.Builder("test", "default", remote.toUri().toString()).build();
+
+		List<Artifact> first = new ArrayList<>();
+		List<Artifact> second = new ArrayList<>();
+		for(int i = 0; i < 4; i++) {
+			first.add(artifact("com.example.d" + i, "", "jar", "1.0.0"));
+			second.add(artifact("com.example.e" + i, "", "jar", "1.0.0"));
+		}
+		Path journalFile = tempDir.resolve("deploy.journal");
+
+		// One deployer, journal and probe serve every chunk of a run
+		try(DeployJournal journal = DeployJournal.open(journalFile); BundleDeployer deployer = new BundleDeployer(system, session, repository, 2)) {
+			deployer.setJournal(journal);
+			deployer.setProbe(locator.getService(TransporterProvider.class), locator.getService(RepositoryLayoutProvider.class));
+			assertEquals(0, deployer.deploy(first));
+			assertEquals(0, deployer.deploy(second));
+			assertEquals(first.size(), deployer.deploy(first));
+		}
+		assertEquals(first.size() + second.size(), Files.readAllLines(journalFile).size());
+		for(int i = 0; i < 4; i++) {
+			assertTrue(Files.isRegularFile(remote.resolve("com/example/com.example.e" + i + "/1.0.0/com.example.e" + i + "-1.0.0.jar")));
+		}
+	}
+
+	private static RepositorySystem newRepositorySystem() {
+		return newServiceLocator().getService(RepositorySystem.class);
+	}
+
+	@SuppressWarnings("deprecation")
+	private static DefaultServiceLocator newServiceLocator() {
+		DefaultServiceLocator locator = MavenRepositorySystemUtils.newServiceLocator();
+		locator.addService(RepositoryConnectorFactory.class, BasicRepositoryConnectorFactory.class);
+		locator.addService(TransporterFactory.class, FileTransporterFactory.class);
+		return locator;
+	}
+
+	private Artifact artifact(String artifactId, String classifier, String extension, String version) throws IOException {
+		String name = artifactId + "-" + version + (classifier.isEmpty() ? "" : "-" + classifier) + "." + extension;
+		Path file = tempDir.resolve("files").resolve(name);
+		Files.createDirectories(file.getParent());
+		Files.write(file, name.getBytes(StandardCharsets.UTF_8));
+		return new DefaultArtifact("com.example", artifactId, classifier, extension, version).setFile(file.toFile());
+	}
+}
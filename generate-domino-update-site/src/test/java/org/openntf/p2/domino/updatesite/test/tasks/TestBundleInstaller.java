@@ -0,0 +1,164 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.test.tasks;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.connector.basic.BasicRepositoryConnectorFactory;
+import org.eclipse.aether.impl.DefaultServiceLocator;
+import org.eclipse.aether.installation.InstallRequest;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.spi.connector.RepositoryConnectorFactory;
+import org.eclipse.aether.spi.connector.transport.TransporterFactory;
+import org.eclipse.aether.transport.file.FileTransporterFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openntf.p2.domino.updatesite.tasks.BundleInstaller;
+
+@SuppressWarnings("nls")
+public class TestBundleInstaller {
+	@TempDir
+	Path tempDir;
+
+	private RepositorySystem system;
+	private DefaultRepositorySystemSession session;
+	/** The artifacts passed to each install request, in order */
+	private final List<List<Artifact>> requests = new ArrayList<>();
+
+	@BeforeEach
+	public void createSystem() {
+		RepositorySystem delegate = newServiceLocator().getService(RepositorySystem.class);
+		system = (RepositorySystem)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { RepositorySystem.class }, (proxy, method, args) -> {
+			if("install".equals(method.getName())) {
+				requests.add(new ArrayList<>(((InstallRequest)args[1]).getArtifacts()));
+			}
+			try {
+				return method.invoke(delegate, args);
+			} catch(InvocationTargetException e) {
+				throw e.getCause();
+			}
+		});
+		session = MavenRepositorySystemUtils.newSession();
+		session.setLocalRepositoryManager(system.newLocalRepositoryManager(session, new LocalRepository(tempDir.resolve("local").toFile())));
+	}
+
+	@Test
+	public void testBatchedInstall() throws Exception {
+		List<Artifact> artifacts = new ArrayList<>();
+		for(String version : new String[] { "1.0.0", "1.1.0" }) {
+			artifacts.add(artifact("com.example.a", "", "jar", version));
+			artifacts.add(artifact("com.example.a", "", "pom", version));
+		}
+		for(int i = 0; i < 4; i++) {
+			artifacts.add(artifact("com.example.b" + i, "", "jar", "2.0.0"));
+			artifacts.add(artifact("com.example.b" + i, "", "pom", "2.0.0"));
+			artifacts.add(artifact("com.example.b" + i, "sources", "jar", "2.0.0"));
+		}
+		assertEquals(0, new BundleInstaller(system, session, null).install(artifacts));
+
+		// Everything goes in one request, except for the second version of com.example.a
+		assertEquals(2, requests.size());
+		assertEquals(artifacts.size() - 2, requests.get(0).size());
+		assertEquals(2, requests.get(1).size());
+		assertTrue(requests.get(1).stream().allMatch(a -> "com.example.a".equals(a.getArtifactId()) && "1.1.0".equals(a.getVersion())));
+
+		Path a = tempDir.resolve("local/com/example/com.example.a");
+		assertArrayEquals("com.example.a-1.1.0.jar".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(a.resolve("1.1.0/com.example.a-1.1.0.jar")));
+		assertTrue(Files.isRegularFile(a.resolve("1.0.0/com.example.a-1.0.0.pom")));
+		String metadata = new String(Files.readAllBytes(a.resolve("maven-metadata-local.xml")), StandardCharsets.UTF_8);
+		assertTrue(metadata.contains("<version>1.0.0</version>") && metadata.contains("<version>1.1.0</version>"), metadata);
+		for(int i = 0; i < 4; i++) {
+			Path b = tempDir.resolve("local/com/example/com.example.b" + i);
+			assertTrue(Files.isRegularFile(b.resolve("2.0.0/com.example.b" + i + "-2.0.0-sources.jar")));
+			assertTrue(Files.isRegularFile(b.resolve("maven-metadata-local.xml")));
+		}
+	}
+
+	@Test
+	public void testLocalRepositoryPath() throws Exception {
+		List<Artifact> artifacts = new ArrayList<>();
+		artifacts.add(artifact("com.example.c", "", "jar", "1.0.0"));
+		artifacts.add(artifact("com.example.c", "", "pom", "1.0.0"));
+		Path alternate = tempDir.resolve("alternate");
+		BundleInstaller installer = new BundleInstaller(system, session, alternate.toFile());
+		assertEquals(alternate.toFile(), installer.getLocalRepository());
+		installer.install(artifacts);
+
+		assertTrue(Files.isRegularFile(alternate.resolve("com/example/com.example.c/1.0.0/com.example.c-1.0.0.jar")));
+		assertTrue(Files.isRegularFile(alternate.resolve("com/example/com.example.c/1.0.0/com.example.c-1.0.0.pom")));
+		assertFalse(Files.exists(tempDir.resolve("local/com/example/com.example.c")));
+	}
+
+	@Test
+	public void testSkipExisting() throws Exception {
+		List<Artifact> artifacts = new ArrayList<>();
+		for(int i = 0; i < 4; i++) {
+			artifacts.add(artifact("com.example.d" + i, "", "jar", "1.0.0"));
+			artifacts.add(artifact("com.example.d" + i, "", "pom", "1.0.0"));
+		}
+		BundleInstaller installer = new BundleInstaller(system, session, null);
+		installer.setSkipExisting(true);
+		assertEquals(0, installer.install(artifacts));
+		assertEquals(1, requests.size());
+
+		// Installed artifacts are skipped, while a changed file is installed again
+		Path changed = artifacts.get(0).getFile().toPath();
+		Files.write(changed, "changed".getBytes(StandardCharsets.UTF_8));
+		assertEquals(artifacts.size() - 1, installer.install(artifacts));
+		assertEquals(2, requests.size());
+		assertEquals(1, requests.get(1).size());
+		assertEquals(artifacts.get(0), requests.get(1).get(0));
+		assertArrayEquals(Files.readAllBytes(changed), Files.readAllBytes(tempDir.resolve("local/com/example/com.example.d0/1.0.0/com.example.d0-1.0.0.jar")));
+
+		// Nothing is left to install, so no request is made
+		assertEquals(artifacts.size(), installer.install(artifacts));
+		assertEquals(2, requests.size());
+	}
+
+	@SuppressWarnings("deprecation")
+	private static DefaultServiceLocator newServiceLocator() {
+		DefaultServiceLocator locator = MavenRepositorySystemUtils.newServiceLocator();
+		locator.addService(RepositoryConnectorFactory.class, BasicRepositoryConnectorFactory.class);
+		locator.addService(TransporterFactory.class, FileTransporterFactory.class);
+		return locator;
+	}
+
+	private Artifact artifact(String artifactId, String classifier, String extension, String version) throws IOException {
+		String name = artifactId + "-" + version + (classifier.isEmpty() ? "" : "-" + classifier) + "." + extension;
+		Path file = tempDir.resolve("files").resolve(name);
+		Files.createDirectories(file.getParent());
+		Files.write(file, name.getBytes(StandardCharsets.UTF_8));
+		return new DefaultArtifact("com.example", artifactId, classifier, extension, version).setFile(file.toFile());
+	}
+}
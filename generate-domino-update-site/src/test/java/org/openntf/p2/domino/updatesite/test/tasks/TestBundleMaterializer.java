@@ -0,0 +1,239 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.test.tasks;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openntf.p2.domino.updatesite.model.BundleInfo;
+import org.openntf.p2.domino.updatesite.tasks.BundleMaterializer;
+import org.openntf.p2.domino.updatesite.tasks.MavenizeWorkspace;
+import org.openntf.p2.domino.updatesite.util.HashUtil;
+
+@SuppressWarnings("nls")
+public class TestBundleMaterializer {
+	private static final String MANIFEST = "Manifest-Version: 1.0\r\n"
+		+ "Bundle-SymbolicName: com.example.a;singleton:=true\r\n"
+		+ "Bundle-Version: 1.0.0.v2020.01\r\n"
+		+ "Require-Bundle: com.ibm.pvc.servlet,com.example.dep\r\n"
+		+ "Bundle-ClassPath: .,lib/foo.jar\r\n"
+		+ "\r\n";
+	private static final long MANIFEST_TIME = LocalDateTime.of(2020, 1, 2, 3, 4, 6).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	private static final long OTHER_TIME = LocalDateTime.of(2021, 5, 6, 7, 8, 10).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+	@TempDir
+	Path tempDir;
+
+	private Path plugins;
+
+	@BeforeEach
+	public void createPlugins() throws IOException {
+		plugins = Files.createDirectories(tempDir.resolve("plugins"));
+	}
+
+	@Test
+	public void testMaterialize() throws Exception {
+		Path source = plugins.resolve("com.example.a_1.0.0.v2020.jar");
+		writeBundle(source, bytes("foo.jar contents"));
+
+		String firstHash;
+		try(MavenizeWorkspace workspace = MavenizeWorkspace.create()) {
+			BundleInfo result = new BundleMaterializer(workspace).materialize(toBundle(source));
+			Path copy = Paths.get(result.getFilePath());
+			firstHash = HashUtil.sha1(copy);
+
+			try(ZipFile original = ZipFile.builder().setPath(source).get(); ZipFile patched = ZipFile.builder().setPath(copy).get()) {
+				// The patched manifest comes first, then everything else in its original order
+				List<String> expected = new ArrayList<>(Arrays.asList("META-INF/", "META-INF/MANIFEST.MF"));
+				for(String name : names(original)) {
+					if(!expected.contains(name)) {
+						expected.add(name);
+					}
+				}
+				assertEquals(expected, names(patched));
+				assertEquals(1, Collections.frequency(names(patched), "META-INF/MANIFEST.MF"));
+
+				Manifest manifest;
+				try(InputStream is = patched.getInputStream(patched.getEntry("META-INF/MANIFEST.MF"))) {
+					manifest = new Manifest(is);
+				}
+				Attributes attributes = manifest.getMainAttributes();
+				assertEquals("com.example.a;singleton:=true", attributes.getValue("Bundle-SymbolicName"));
+				assertEquals("1.0.0.v2020_01", attributes.getValue("Bundle-Version"));
+				assertEquals("com.example.dep;resolution:=optional", attributes.getValue("Require-Bundle"));
+				assertEquals("javax.servlet,javax.servlet.*,org.w3c.dom,org.w3c.dom.*,org.xml.*,javax.xml.*,lotus.*", attributes.getValue("DynamicImport-Package"));
+
+				// The manifest and generated entries carry the original manifest's time
+				assertEquals(original.getEntry("META-INF/MANIFEST.MF").getTime(), patched.getEntry("META-INF/MANIFEST.MF").getTime());
+				assertEquals(original.getEntry("META-INF/MANIFEST.MF").getTime(), patched.getEntry("META-INF/").getTime());
+
+				// Every other entry is copied without being recompressed
+				for(String name : names(original)) {
+					if(name.startsWith("META-INF/")) {
+						continue;
+					}
+					ZipArchiveEntry before = original.getEntry(name);
+					ZipArchiveEntry after = patched.getEntry(name);
+					assertEquals(before.getMethod(), after.getMethod(), name);
+					assertEquals(before.getCrc(), after.getCrc(), name);
+					assertEquals(before.getTime(), after.getTime(), name);
+					assertArrayEquals(readRaw(original, before), readRaw(patched, after), name);
+				}
+			}
+
+			assertEquals(1, result.getEmbeds().size());
+			assertEquals("foo.jar", result.getEmbeds().get(0).getName());
+			assertArrayEquals(bytes("foo.jar contents"), Files.readAllBytes(result.getEmbeds().get(0).getFile()));
+		}
+
+		// A second run in a new workspace produces the same file
+		try(MavenizeWorkspace workspace = MavenizeWorkspace.create()) {
+			BundleInfo result = new BundleMaterializer(workspace).materialize(toBundle(source));
+			assertEquals(firstHash, HashUtil.sha1(Paths.get(result.getFilePath())));
+		}
+	}
+
+	@Test
+	public void testNotesJar() throws Exception {
+		Path api = plugins.resolve("com.ibm.notes.java.api_9.0.1.20180208-1800.jar");
+		writeBundle(api, bytes("foo"));
+		Path other = plugins.resolve("com.example.a_1.0.0.jar");
+		writeBundle(other, bytes("foo"));
+		Path fragment = plugins.resolve("com.ibm.notes.java.api.win32.linux_9.0.1.20180208-1800.jar");
+		try(OutputStream os = Files.newOutputStream(fragment); ZipOutputStream zos = new ZipOutputStream(os)) {
+			putEntry(zos, "META-INF/MANIFEST.MF", bytes("Manifest-Version: 1.0\r\n\r\n"), ZipEntry.DEFLATED, OTHER_TIME);
+			putEntry(zos, "Notes.jar", bytes("Notes.jar contents"), ZipEntry.DEFLATED, OTHER_TIME);
+		}
+
+		try(MavenizeWorkspace workspace = MavenizeWorkspace.create()) {
+			BundleMaterializer materializer = new BundleMaterializer(workspace);
+
+			// Notes.jar is spliced in from the companion fragment, still compressed
+			Path copy = Paths.get(materializer.materialize(toBundle(api)).getFilePath());
+			try(ZipFile patched = ZipFile.builder().setPath(copy).get(); ZipFile fragmentZip = ZipFile.builder().setPath(fragment).get()) {
+				List<String> names = names(patched);
+				assertEquals("Notes.jar", names.get(names.size() - 1));
+				assertArrayEquals(readRaw(fragmentZip, fragmentZip.getEntry("Notes.jar")), readRaw(patched, patched.getEntry("Notes.jar")));
+				try(InputStream is = patched.getInputStream(patched.getEntry("Notes.jar"))) {
+					assertArrayEquals(bytes("Notes.jar contents"), readAll(is));
+				}
+			}
+
+			// Other bundles in the same directory are left alone
+			copy = Paths.get(materializer.materialize(toBundle(other)).getFilePath());
+			try(ZipFile patched = ZipFile.builder().setPath(copy).get()) {
+				assertNull(patched.getEntry("Notes.jar"));
+				assertFalse(names(patched).contains("Notes.jar"));
+			}
+		}
+	}
+
+	private static BundleInfo toBundle(Path jar) {
+		return new BundleInfo("com.example.a", "", "com.example.a", "1.0.0", jar.toAbsolutePath().toString(),
+			Collections.singletonList("com.example.dep"), Collections.emptyList(), null);
+	}
+
+	/**
+	 * Writes a bundle whose manifest is neither its first entry nor next to its directory,
+	 * mixing stored and deflated entries.
+	 */
+	private static void writeBundle(Path jar, byte[] embed) throws IOException {
+		try(OutputStream os = Files.newOutputStream(jar); ZipOutputStream zos = new ZipOutputStream(os)) {
+			putEntry(zos, "META-INF/", new byte[0], ZipEntry.STORED, OTHER_TIME);
+			putEntry(zos, "plugin.xml", bytes("<?xml version=\"1.0\"?><plugin/>"), ZipEntry.DEFLATED, OTHER_TIME);
+			putEntry(zos, "com/", new byte[0], ZipEntry.STORED, OTHER_TIME);
+			putEntry(zos, "com/example/", new byte[0], ZipEntry.STORED, OTHER_TIME);
+			putEntry(zos, "com/example/A.class", bytes("not really a class"), ZipEntry.STORED, OTHER_TIME);
+			putEntry(zos, "META-INF/MANIFEST.MF", bytes(MANIFEST), ZipEntry.DEFLATED, MANIFEST_TIME);
+			putEntry(zos, "lib/", new byte[0], ZipEntry.STORED, OTHER_TIME);
+			putEntry(zos, "lib/foo.jar", embed, ZipEntry.STORED, OTHER_TIME);
+			putEntry(zos, "about.html", bytes("<html><body>About</body></html>"), ZipEntry.DEFLATED, OTHER_TIME);
+		}
+	}
+
+	private static void putEntry(ZipOutputStream zos, String name, byte[] content, int method, long time) throws IOException {
+		ZipEntry entry = new ZipEntry(name);
+		entry.setMethod(method);
+		entry.setTime(time);
+		if(method == ZipEntry.STORED) {
+			CRC32 crc = new CRC32();
+			crc.update(content);
+			entry.setSize(content.length);
+			entry.setCompressedSize(content.length);
+			entry.setCrc(crc.getValue());
+		}
+		zos.putNextEntry(entry);
+		zos.write(content);
+		zos.closeEntry();
+	}
+
+	private static List<String> names(ZipFile zip) {
+		List<String> result = new ArrayList<>();
+		Enumeration<ZipArchiveEntry> entries = zip.getEntriesInPhysicalOrder();
+		while(entries.hasMoreElements()) {
+			result.add(entries.nextElement().getName());
+		}
+		return result;
+	}
+
+	private static byte[] readRaw(ZipFile zip, ZipArchiveEntry entry) throws IOException {
+		try(InputStream is = zip.getRawInputStream(entry)) {
+			return readAll(is);
+		}
+	}
+
+	private static byte[] readAll(InputStream is) throws IOException {
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while((read = is.read(buffer)) != -1) {
+			result.write(buffer, 0, read);
+		}
+		return result.toByteArray();
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+}
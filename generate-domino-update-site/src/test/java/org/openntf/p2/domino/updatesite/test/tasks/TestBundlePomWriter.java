@@ -0,0 +1,174 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.test.tasks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openntf.p2.domino.updatesite.AbstractMavenizeBundlesMojo;
+import org.openntf.p2.domino.updatesite.model.BundleEmbed;
+import org.openntf.p2.domino.updatesite.model.BundleInfo;
+import org.openntf.p2.domino.updatesite.tasks.BundlePomWriter;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import com.ibm.commons.util.io.StreamUtil;
+
+@SuppressWarnings("nls")
+public class TestBundlePomWriter {
+	private static final String POM_NS = "http://maven.apache.org/POM/4.0.0";
+	private static final String GROUP_ID = "com.example";
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void testMatchesBaseline() throws Exception {
+		String basePom;
+		try(InputStream is = getClass().getResourceAsStream("/basePom.xml")) {
+			basePom = StreamUtil.readString(is);
+		}
+		BundleInfo dep = new BundleInfo("com.example.dep", null, "com.example.dep", "2.0.0", null, Collections.emptyList(), Collections.emptyList(), null);
+		BundleInfo bundle = new BundleInfo("com.example.a", "Example & Co", "com.example.a", "1.0.0", null,
+			Arrays.asList("com.example.dep", "com.example.missing"),
+			Arrays.asList(new BundleEmbed("lib/foo.jar", Paths.get("foo.jar")), new BundleEmbed("lib/sub/bar.jar", Paths.get("bar.jar"))),
+			null);
+		Map<String, BundleInfo> bundles = new HashMap<>();
+		bundles.put(dep.getArtifactId(), dep);
+		bundles.put(bundle.getArtifactId(), bundle);
+
+		for(boolean optional : new boolean[] { false, true }) {
+			Path pom = tempDir.resolve("pom-" + optional + ".xml");
+			BundlePomWriter writer = new BundlePomWriter(basePom, GROUP_ID, optional);
+			// Write another bundle first, to make sure that nothing carries over
+			writer.write(dep, bundles, pom);
+			writer.write(bundle, bundles, pom);
+			byte[] written = Files.readAllBytes(pom);
+
+			Document expected = renderBaseline(basePom, bundle, bundles, optional);
+			Document actual = parse(written, false);
+			assertTrue(expected.getDocumentElement().isEqualNode(actual.getDocumentElement()), () -> "Expected:\n" + toString(expected) + "\nActual:\n" + new String(written, StandardCharsets.UTF_8));
+
+			// The namespace declarations still apply to the streamed elements
+			Document namespaced = parse(written, true);
+			Element project = namespaced.getDocumentElement();
+			assertEquals(POM_NS, project.getNamespaceURI());
+			assertEquals("http://maven.apache.org/POM/4.0.0 http://maven.apache.org/xsd/maven-4.0.0.xsd", project.getAttributeNS("http://www.w3.org/2001/XMLSchema-instance", "schemaLocation"));
+			assertEquals("International License Agreement for Non-Warranted Programs", namespaced.getElementsByTagNameNS(POM_NS, "license").item(0).getFirstChild().getTextContent());
+			assertEquals(3, namespaced.getElementsByTagNameNS(POM_NS, "dependency").getLength());
+			assertEquals(optional ? 1 : 0, namespaced.getElementsByTagNameNS(POM_NS, "optional").getLength());
+		}
+	}
+
+	/**
+	 * Renders the POM the way it was done before the base POM was pre-parsed: by parsing
+	 * the base POM for each bundle and appending the bundle's elements to the DOM.
+	 */
+	private static Document renderBaseline(String basePom, BundleInfo bundle, Map<String, BundleInfo> bundles, boolean optional) throws Exception {
+		Document xml = parse(basePom.getBytes(StandardCharsets.UTF_8), false);
+		Element project = xml.getDocumentElement();
+		append(project, "groupId", GROUP_ID);
+		append(project, "artifactId", bundle.getArtifactId());
+		append(project, "version", bundle.getVersion());
+		if(bundle.getVendor() != null && !bundle.getVendor().isEmpty()) {
+			append(append(project, "organization", null), "name", bundle.getVendor());
+		}
+		Element dependencies = append(project, "dependencies", null);
+		for(String require : bundle.getRequires()) {
+			BundleInfo dep = bundles.get(require);
+			if(dep != null) {
+				Element dependency = append(dependencies, "dependency", null);
+				append(dependency, "groupId", GROUP_ID);
+				append(dependency, "artifactId", dep.getArtifactId());
+				append(dependency, "version", dep.getVersion());
+				if(optional) {
+					append(dependency, "optional", "true");
+				}
+			}
+		}
+		for(BundleEmbed embed : bundle.getEmbeds()) {
+			Element dependency = append(dependencies, "dependency", null);
+			append(dependency, "groupId", GROUP_ID);
+			append(dependency, "artifactId", bundle.getArtifactId());
+			append(dependency, "version", bundle.getVersion());
+			append(dependency, "classifier", AbstractMavenizeBundlesMojo.toEmbedClassifierName(embed.getName()));
+		}
+		// Round-trip through text, as the baseline wrote the document out
+		return parse(toString(xml).getBytes(StandardCharsets.UTF_8), false);
+	}
+
+	private static Element append(Element parent, String name, String text) {
+		Element result = parent.getOwnerDocument().createElement(name);
+		if(text != null) {
+			result.setTextContent(text);
+		}
+		parent.appendChild(result);
+		return result;
+	}
+
+	private static Document parse(byte[] xml, boolean namespaceAware) throws Exception {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(namespaceAware);
+		Document result = factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+		stripWhitespace(result.getDocumentElement());
+		result.normalizeDocument();
+		return result;
+	}
+
+	private static void stripWhitespace(Node node) {
+		Node child = node.getFirstChild();
+		while(child != null) {
+			Node next = child.getNextSibling();
+			if(child.getNodeType() == Node.TEXT_NODE && child.getTextContent().trim().isEmpty()) {
+				node.removeChild(child);
+			} else {
+				stripWhitespace(child);
+			}
+			child = next;
+		}
+	}
+
+	private static String toString(Document xml) {
+		StringWriter result = new StringWriter();
+		try {
+			TransformerFactory.newInstance().newTransformer().transform(new DOMSource(xml), new StreamResult(result));
+		} catch(TransformerException e) {
+			throw new IllegalStateException(e);
+		}
+		return result.toString();
+	}
+}
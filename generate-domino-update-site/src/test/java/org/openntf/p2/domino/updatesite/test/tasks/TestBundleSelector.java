@@ -0,0 +1,78 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.test.tasks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.openntf.p2.domino.updatesite.model.BundleInfo;
+import org.openntf.p2.domino.updatesite.tasks.BundleSelector;
+
+@SuppressWarnings("nls")
+public class TestBundleSelector {
+	private static final List<BundleInfo> BUNDLES = Arrays.asList(
+		bundle("com.example.api", null, Arrays.asList("com.example.core"), Collections.emptyList(), Arrays.asList("com.example.api")),
+		bundle("com.example.api.win32", "com.example.api", Collections.emptyList(), Collections.emptyList(), Collections.emptyList()),
+		bundle("com.example.core", null, Collections.emptyList(), Arrays.asList("com.example.util"), Arrays.asList("com.example.core")),
+		bundle("com.example.ui", null, Arrays.asList("com.example.api", "org.eclipse.swt"), Collections.emptyList(), Collections.emptyList()),
+		bundle("com.example.util", null, Collections.emptyList(), Collections.emptyList(), Arrays.asList("com.example.util")),
+		bundle("org.eclipse.swt", null, Collections.emptyList(), Collections.emptyList(), Collections.emptyList())
+	);
+
+	@Test
+	public void testNoRoots() {
+		assertEquals(names(BUNDLES), select(new BundleSelector(null, null)));
+		assertEquals(Arrays.asList("com.example.api", "com.example.api.win32", "com.example.core", "com.example.ui", "com.example.util"),
+			select(new BundleSelector(null, Arrays.asList("org.eclipse.*"))));
+	}
+
+	@Test
+	public void testRequireBundleClosure() {
+		BundleSelector selector = new BundleSelector(Arrays.asList("com.example.api", "com.example.missing"), null);
+		assertEquals(Arrays.asList("com.example.api", "com.example.api.win32", "com.example.core"), select(selector));
+		assertEquals(Arrays.asList("com.example.missing"), selector.getUnmatchedRoots());
+	}
+
+	@Test
+	public void testImportPackage() {
+		BundleSelector selector = new BundleSelector(Arrays.asList("com.example.api"), null);
+		selector.setFollowImportPackage(true);
+		assertEquals(Arrays.asList("com.example.api", "com.example.api.win32", "com.example.core", "com.example.util"), select(selector));
+	}
+
+	@Test
+	public void testExcludes() {
+		BundleSelector selector = new BundleSelector(Arrays.asList("com.example.ui"), Arrays.asList("org.eclipse.*", "*.win32"));
+		assertEquals(Arrays.asList("com.example.api", "com.example.core", "com.example.ui"), select(selector));
+	}
+
+	private static List<String> select(BundleSelector selector) {
+		return names(selector.select(BUNDLES));
+	}
+
+	private static List<String> names(List<BundleInfo> bundles) {
+		return bundles.stream().map(BundleInfo::getArtifactId).collect(Collectors.toList());
+	}
+
+	private static BundleInfo bundle(String name, String host, List<String> requires, List<String> imports, List<String> exports) {
+		return new BundleInfo(name, "", name, "1.0.0", name + "_1.0.0.jar", requires, Collections.emptyList(), null, host, imports, exports);
+	}
+}
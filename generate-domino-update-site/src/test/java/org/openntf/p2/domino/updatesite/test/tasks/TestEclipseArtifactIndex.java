@@ -0,0 +1,80 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.test.tasks;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.openntf.p2.domino.updatesite.tasks.EclipseArtifactIndex;
+
+@SuppressWarnings("nls")
+public class TestEclipseArtifactIndex {
+	public static final String ARTIFACTS_XML = "<?xml version='1.0' encoding='UTF-8'?>\n"
+		+ "<?artifactRepository version='1.1.0'?>\n"
+		+ "<repository name='Test' type='org.eclipse.equinox.p2.artifact.repository.simpleRepository' version='1'>\n"
+		+ "  <properties size='1'><property name='p2.timestamp' value='1700000000000'/></properties>\n"
+		+ "  <mappings size='0'/>\n"
+		+ "  <artifacts size='3'>\n"
+		+ "    <artifact classifier='osgi.bundle' id='org.example.source' version='1.0.0.v20160101'>\n"
+		+ "      <properties size='1'><property name='artifact.size' value='100'/></properties>\n"
+		+ "    </artifact>\n"
+		+ "    <artifact classifier='osgi.bundle' id='org.example' version='1.0.0.v20160101'/>\n"
+		+ "    <artifact classifier='org.eclipse.update.feature' id='org.example.feature' version='1.0.0'/>\n"
+		+ "    <artifact classifier='osgi.bundle' id='org.incomplete'/>\n"
+		+ "  </artifacts>\n"
+		+ "</repository>\n";
+
+	@Test
+	public void testRead() throws IOException {
+		EclipseArtifactIndex index = read();
+		assertEquals(3, index.size());
+		assertTrue(index.contains("osgi.bundle", "org.example.source", "1.0.0.v20160101"));
+		assertTrue(index.contains("org.eclipse.update.feature", "org.example.feature", "1.0.0"));
+		assertFalse(index.contains("osgi.bundle", "org.example.feature", "1.0.0"));
+		assertFalse(index.contains("osgi.bundle", "org.example.source", "1.0.0"));
+	}
+
+	@Test
+	public void testCompactRoundTrip() throws IOException {
+		EclipseArtifactIndex index = read();
+		ByteArrayOutputStream compact = new ByteArrayOutputStream();
+		index.write(compact);
+
+		EclipseArtifactIndex copy = EclipseArtifactIndex.readCompact(new ByteArrayInputStream(compact.toByteArray()));
+		assertEquals(index.size(), copy.size());
+		assertTrue(copy.contains("osgi.bundle", "org.example.source", "1.0.0.v20160101"));
+		assertTrue(copy.contains("osgi.bundle", "org.example", "1.0.0.v20160101"));
+		assertTrue(copy.contains("org.eclipse.update.feature", "org.example.feature", "1.0.0"));
+		assertFalse(copy.contains("osgi.bundle", "org.incomplete", "1.0.0"));
+
+		// The compact form is sorted, so it is the same for equal indexes
+		ByteArrayOutputStream again = new ByteArrayOutputStream();
+		copy.write(again);
+		assertArrayEquals(compact.toByteArray(), again.toByteArray());
+	}
+
+	private static EclipseArtifactIndex read() throws IOException {
+		return EclipseArtifactIndex.read(new ByteArrayInputStream(ARTIFACTS_XML.getBytes(StandardCharsets.UTF_8)));
+	}
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.test.tasks;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openntf.p2.domino.updatesite.tasks.GenerateP2MetadataTask;
+import org.openntf.p2.domino.updatesite.tasks.P2DescriptorCache;
+
+import com.ibm.commons.util.io.StreamUtil;
+
+@SuppressWarnings("nls")
+public class TestGenerateP2MetadataTask {
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void testDeterministicOutput() throws Exception {
+		Path single = createSite(tempDir.resolve("single"));
+		Path parallel = createSite(tempDir.resolve("parallel"));
+
+		GenerateP2MetadataTask singleTask = new GenerateP2MetadataTask(single);
+		singleTask.setThreads(1);
+		singleTask.setTimestamp(1700000000000L);
+		singleTask.run();
+
+		GenerateP2MetadataTask parallelTask = new GenerateP2MetadataTask(parallel);
+		parallelTask.setThreads(4);
+		parallelTask.setTimestamp(1700000000000L);
+		parallelTask.run();
+
+		assertArrayEquals(Files.readAllBytes(single.resolve("content.jar")), Files.readAllBytes(parallel.resolve("content.jar")));
+		assertArrayEquals(Files.readAllBytes(single.resolve("artifacts.jar")), Files.readAllBytes(parallel.resolve("artifacts.jar")));
+	}
+
+	@Test
+	public void testUnitsAreSorted() throws Exception {
+		Path site = createSite(tempDir.resolve("site"));
+		new GenerateP2MetadataTask(site).run();
+
+		String content = readEntry(site.resolve("content.jar"), "content.xml");
+		int feature = content.indexOf("<unit id=\"com.example.feature.feature.group\"");
+		int a = content.indexOf("<unit id=\"com.example.a\"");
+		int b = content.indexOf("<unit id=\"com.example.b\"");
+		int c = content.indexOf("<unit id=\"com.example.c\"");
+		assertTrue(feature > -1 && feature < a && a < b && b < c, content);
+		assertTrue(content.contains("<units size=\"4\">"), content);
+	}
+
+	@Test
+	public void testXzMetadata() throws Exception {
+		Path site = createSite(tempDir.resolve("site"));
+		GenerateP2MetadataTask task = new GenerateP2MetadataTask(site);
+		task.setXzMetadata(true);
+		task.run();
+
+		assertTrue(Files.isRegularFile(site.resolve("content.xml.xz")));
+		assertTrue(Files.isRegularFile(site.resolve("artifacts.xml.xz")));
+		String index = new String(Files.readAllBytes(site.resolve("p2.index")), StandardCharsets.ISO_8859_1);
+		assertTrue(index.contains("metadata.repository.factory.order=content.xml.xz,content.xml,!"), index);
+		assertTrue(index.contains("artifact.repository.factory.order=artifacts.xml.xz,artifacts.xml,!"), index);
+
+		// Turning the option off removes the stale files
+		new GenerateP2MetadataTask(site).run();
+		assertFalse(Files.exists(site.resolve("content.xml.xz")));
+		assertFalse(Files.exists(site.resolve("artifacts.xml.xz")));
+		assertFalse(Files.exists(site.resolve("p2.index")));
+	}
+
+	@Test
+	public void testIncrementalMatchesFullRun() throws Exception {
+		Path site = createSite(tempDir.resolve("site"));
+		Path full = createSite(tempDir.resolve("full"));
+
+		GenerateP2MetadataTask task = new GenerateP2MetadataTask(site);
+		task.setIncremental(true);
+		task.setTimestamp(1700000000000L);
+		task.run();
+		assertTrue(Files.isRegularFile(site.resolve(P2DescriptorCache.FILE_NAME)));
+
+		// Change one plugin, then regenerate from the cache
+		String changed = "plugins/com.example.b_1.0.0.jar";
+		writeJar(site.resolve(changed),
+			"META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\n"
+				+ "Bundle-SymbolicName: com.example.b\r\n"
+				+ "Bundle-Version: 1.0.0\r\n"
+				+ "Bundle-Name: Changed Plugin\r\n"
+				+ "\r\n");
+		Files.copy(site.resolve(changed), full.resolve(changed), StandardCopyOption.REPLACE_EXISTING);
+		task.run();
+
+		GenerateP2MetadataTask fullTask = new GenerateP2MetadataTask(full);
+		fullTask.setTimestamp(1700000000000L);
+		fullTask.run();
+
+		String content = readEntry(site.resolve("content.jar"), "content.xml");
+		assertTrue(content.contains("Changed Plugin"), content);
+		assertEquals(readEntry(full.resolve("content.jar"), "content.xml"), content);
+		assertEquals(readEntry(full.resolve("artifacts.jar"), "artifacts.xml"), readEntry(site.resolve("artifacts.jar"), "artifacts.xml"));
+	}
+
+	@Test
+	public void testPluginsOnly() throws Exception {
+		Path site = tempDir.resolve("site");
+		Files.createDirectories(site.resolve("plugins"));
+		writeJar(site.resolve("plugins/com.example.a_1.0.0.jar"),
+			"META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\n"
+				+ "Bundle-SymbolicName: com.example.a\r\n"
+				+ "Bundle-Version: 1.0.0\r\n"
+				+ "\r\n");
+		writeJar(site.resolve("plugins/commons-lang.jar"),
+			"META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\n\r\n");
+		writeJar(site.resolve("plugins/no-manifest.jar"), "readme.txt", "Not a bundle");
+		Files.write(site.resolve("plugins/readme.txt"), "Not a JAR".getBytes(StandardCharsets.UTF_8));
+		new GenerateP2MetadataTask(site).run();
+
+		String content = readEntry(site.resolve("content.jar"), "content.xml");
+		assertTrue(content.contains("<units size=\"1\">"), content);
+		assertTrue(content.contains("<unit id=\"com.example.a\" version=\"1.0.0\""), content);
+	}
+
+	private static Path createSite(Path site) throws IOException {
+		Files.createDirectories(site.resolve("features"));
+		Files.createDirectories(site.resolve("plugins"));
+		writeJar(site.resolve("features/com.example.feature_1.0.0.jar"),
+			"feature.xml", "<feature id=\"com.example.feature\" version=\"1.0.0\" label=\"%name\"><license url=\"http://example.com\">License</license></feature>",
+			"feature.properties", "name=Example Feature\n");
+		for(String name : new String[] { "com.example.c", "com.example.a", "com.example.b" }) {
+			writeJar(site.resolve("plugins/" + name + "_1.0.0.jar"),
+				"META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\n"
+					+ "Bundle-SymbolicName: " + name + ";singleton:=true\r\n"
+					+ "Bundle-Version: 1.0.0\r\n"
+					+ "Bundle-Name: %name\r\n"
+					+ "Export-Package: " + name + ";version=\"1.0.0\"," + name + ".internal\r\n"
+					+ "Import-Package: org.osgi.framework;version=\"1.8\"\r\n"
+					+ "\r\n",
+				"plugin.properties", "name=Plugin " + name + "\n");
+		}
+		return site;
+	}
+
+	private static void writeJar(Path jar, String... entries) throws IOException {
+		try(OutputStream os = Files.newOutputStream(jar); ZipOutputStream zos = new ZipOutputStream(os)) {
+			for(int i = 0; i < entries.length; i += 2) {
+				zos.putNextEntry(new ZipEntry(entries[i]));
+				zos.write(entries[i + 1].getBytes(StandardCharsets.UTF_8));
+				zos.closeEntry();
+			}
+		}
+	}
+
+	private static String readEntry(Path jar, String name) throws IOException {
+		try(ZipFile zip = new ZipFile(jar.toFile()); InputStream is = zip.getInputStream(zip.getEntry(name))) {
+			return StreamUtil.readString(is);
+		}
+	}
+}
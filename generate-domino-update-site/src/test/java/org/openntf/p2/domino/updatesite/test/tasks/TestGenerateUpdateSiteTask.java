@@ -0,0 +1,243 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.test.tasks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openntf.p2.domino.updatesite.tasks.GenerateUpdateSiteTask;
+import org.openntf.p2.domino.updatesite.tasks.SiteFingerprints;
+
+import com.ibm.commons.util.io.StreamUtil;
+
+@SuppressWarnings("nls")
+public class TestGenerateUpdateSiteTask {
+	private static final String MANIFEST_A = "Manifest-Version: 1.0\r\n"
+		+ "Bundle-SymbolicName: com.example.a\r\n"
+		+ "Bundle-Version: 1.0.0\r\n"
+		+ "\r\n";
+	private static final String MANIFEST_B = "Manifest-Version: 1.0\r\n"
+		+ "Bundle-SymbolicName: com.example.b\r\n"
+		+ "Bundle-Version: 1.0.0\r\n"
+		+ "\r\n";
+	private static final String MANIFEST_C = "Manifest-Version: 1.0\r\n"
+		+ "Bundle-SymbolicName: com.example.c\r\n"
+		+ "Bundle-Version: 1.0.0\r\n"
+		+ "\r\n";
+	private static final FileTime OLD = FileTime.fromMillis(1000000000000L);
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void testCollidingDestinations() throws Exception {
+		Path domino = createDomino(tempDir.resolve("domino"));
+		Path shared = domino.resolve("osgi/shared/eclipse/plugins");
+		Path rcp = domino.resolve("osgi/rcp/eclipse/plugins");
+
+		// The same JAR in both Eclipse directories, where shared is listed first
+		writeJar(shared.resolve("com.example.a_1.0.0.jar"),
+			"META-INF/MANIFEST.MF", MANIFEST_A,
+			"origin.txt", "shared",
+			"shared.txt", "shared");
+		writeJar(rcp.resolve("com.example.a_1.0.0.jar"),
+			"META-INF/MANIFEST.MF", MANIFEST_A,
+			"origin.txt", "rcp",
+			"rcp.txt", "rcp");
+
+		// An unpacked bundle and a JAR in one directory, where the directory sorts first
+		Path unpacked = rcp.resolve("com.example.b_1.0.0");
+		Files.createDirectories(unpacked.resolve("META-INF"));
+		Files.write(unpacked.resolve("META-INF/MANIFEST.MF"), MANIFEST_B.getBytes(StandardCharsets.UTF_8));
+		Files.write(unpacked.resolve("origin.txt"), "directory".getBytes(StandardCharsets.UTF_8));
+		writeJar(rcp.resolve("com.example.b_1.0.0.jar"),
+			"META-INF/MANIFEST.MF", MANIFEST_B,
+			"origin.txt", "jar",
+			"jar.txt", "jar");
+
+		for(int i = 0; i < 3; i++) {
+			Path dest = tempDir.resolve("dest" + i);
+			newTask(domino, dest).run();
+
+			// The first source is kept as-is, rather than merged with the later ones
+			Path a = dest.resolve("plugins/com.example.a_1.0.0.jar");
+			assertEquals("shared", readEntry(a, "origin.txt"));
+			assertEquals("shared", readEntry(a, "shared.txt"));
+			assertNull(readEntry(a, "rcp.txt"));
+
+			Path b = dest.resolve("plugins/com.example.b_1.0.0.jar");
+			assertEquals("directory", readEntry(b, "origin.txt"));
+			assertNull(readEntry(b, "jar.txt"));
+		}
+	}
+
+	@Test
+	public void testIncremental() throws Exception {
+		Path domino = createDomino(tempDir.resolve("domino"));
+		Path plugins = domino.resolve("osgi/shared/eclipse/plugins");
+		writeJar(plugins.resolve("com.example.a_1.0.0.jar"), "META-INF/MANIFEST.MF", MANIFEST_A, "a.txt", "a");
+		writeJar(plugins.resolve("com.example.b_1.0.0.jar"), "META-INF/MANIFEST.MF", MANIFEST_B, "b.txt", "b");
+		writeJar(plugins.resolve("com.example.c_1.0.0.jar"), "META-INF/MANIFEST.MF", MANIFEST_C, "c.txt", "c");
+
+		Path dest = tempDir.resolve("dest");
+		GenerateUpdateSiteTask task = newTask(domino, dest);
+		task.setIncremental(true);
+		task.run();
+		assertTrue(Files.isRegularFile(dest.resolve(SiteFingerprints.FILE_NAME)));
+		Path a = dest.resolve("plugins/com.example.a_1.0.0.jar");
+		Path b = dest.resolve("plugins/com.example.b_1.0.0.jar");
+		Path c = dest.resolve("plugins/com.example.c_1.0.0.jar");
+		for(Path output : new Path[] { a, b, c }) {
+			Files.setLastModifiedTime(output, OLD);
+		}
+
+		// Change one source and remove another
+		writeJar(plugins.resolve("com.example.b_1.0.0.jar"), "META-INF/MANIFEST.MF", MANIFEST_B, "b.txt", "changed b");
+		Files.delete(plugins.resolve("com.example.c_1.0.0.jar"));
+		task = newTask(domino, dest);
+		task.setIncremental(true);
+		task.run();
+
+		assertEquals(OLD, Files.getLastModifiedTime(a), "Unchanged sources should not be copied again");
+		assertNotEquals(OLD, Files.getLastModifiedTime(b));
+		assertEquals("changed b", readEntry(b, "b.txt"));
+		assertFalse(Files.exists(c), "Outputs of removed sources should be deleted");
+		String content = readEntry(dest.resolve("content.jar"), "content.xml");
+		assertTrue(content.contains("com.example.a") && !content.contains("com.example.c"), content);
+
+		// Changing an option discards the fingerprints and rebuilds everything
+		task = new GenerateUpdateSiteTask(domino, dest, true, false, new SystemStreamLog());
+		task.setOffline(true);
+		task.setIncremental(true);
+		task.run();
+		assertNotEquals(OLD, Files.getLastModifiedTime(a), "A changed option should force a full rebuild");
+		assertEquals("a", readEntry(a, "a.txt"));
+	}
+
+	@Test
+	public void testFlattenEmbedsPrecedence() throws Exception {
+		Path domino = createDomino(tempDir.resolve("domino"));
+		Path plugins = domino.resolve("osgi/shared/eclipse/plugins");
+		Path embeds = Files.createDirectories(tempDir.resolve("embeds"));
+		writeJar(embeds.resolve("one.jar"),
+			"META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\n\r\n",
+			"shared.txt", "one",
+			"shadowed.txt", "one",
+			"one.txt", "one");
+		writeJar(embeds.resolve("two.jar"),
+			"META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\n\r\n",
+			"shared.txt", "two",
+			"two.txt", "two");
+
+		// The bundle's own shadowed.txt comes after the embeds in the archive
+		Path bundle = plugins.resolve("com.example.a_1.0.0.jar");
+		try(OutputStream os = Files.newOutputStream(bundle); ZipOutputStream zos = new ZipOutputStream(os)) {
+			zos.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+			zos.write((MANIFEST_A.substring(0, MANIFEST_A.length() - 2) + "Bundle-ClassPath: .,lib/one.jar,lib/two.jar\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+			zos.closeEntry();
+			for(String embed : new String[] { "one.jar", "two.jar" }) {
+				zos.putNextEntry(new ZipEntry("lib/" + embed));
+				Files.copy(embeds.resolve(embed), zos);
+				zos.closeEntry();
+			}
+			zos.putNextEntry(new ZipEntry("shadowed.txt"));
+			zos.write("bundle".getBytes(StandardCharsets.UTF_8));
+			zos.closeEntry();
+		}
+
+		Path dest = tempDir.resolve("dest");
+		GenerateUpdateSiteTask task = new GenerateUpdateSiteTask(domino, dest, true, false, new SystemStreamLog());
+		task.setOffline(true);
+		task.run();
+
+		Path a = dest.resolve("plugins/com.example.a_1.0.0.jar");
+		// The bundle's own entries win over its embeds
+		assertEquals("bundle", readEntry(a, "shadowed.txt"));
+		// Among the embeds, the first to provide a name wins
+		assertEquals("one", readEntry(a, "shared.txt"));
+		assertEquals("one", readEntry(a, "one.txt"));
+		assertEquals("two", readEntry(a, "two.txt"));
+		assertNull(readEntry(a, "lib/one.jar"));
+		assertNull(readEntry(a, "lib/two.jar"));
+		// Only the bundle's own manifest is kept, without the Bundle-ClassPath
+		String manifest = readEntry(a, "META-INF/MANIFEST.MF");
+		assertTrue(manifest.contains("Bundle-SymbolicName: com.example.a"), manifest);
+		assertFalse(manifest.contains("Bundle-ClassPath"), manifest);
+	}
+
+	private static GenerateUpdateSiteTask newTask(Path domino, Path dest) {
+		GenerateUpdateSiteTask task = new GenerateUpdateSiteTask(domino, dest, false, false, new SystemStreamLog());
+		task.setThreads(4);
+		task.setOffline(true);
+		task.setOutputTimestamp(1700000000000L);
+		return task;
+	}
+
+	/**
+	 * Creates the minimal layout of a Domino program directory, with empty Eclipse
+	 * directories and a Notes.jar that declares its version.
+	 */
+	private static Path createDomino(Path domino) throws IOException {
+		for(String eclipse : new String[] { "osgi/shared/eclipse", "osgi/rcp/eclipse" }) {
+			Files.createDirectories(domino.resolve(eclipse).resolve("features"));
+			Files.createDirectories(domino.resolve(eclipse).resolve("plugins"));
+		}
+		Path ext = Files.createDirectories(domino.resolve("jvm/lib/ext"));
+		writeJar(ext.resolve("Notes.jar"),
+			"lotus/domino/Version.properties", "NotesVersion=Release 14.0FP2\nNotesVersionDate=January 15, 2024\n",
+			"lotus/domino/Session.class", "");
+		return domino;
+	}
+
+	private static void writeJar(Path jar, String... entries) throws IOException {
+		try(OutputStream os = Files.newOutputStream(jar); ZipOutputStream zos = new ZipOutputStream(os)) {
+			for(int i = 0; i < entries.length; i += 2) {
+				zos.putNextEntry(new ZipEntry(entries[i]));
+				zos.write(entries[i + 1].getBytes(StandardCharsets.UTF_8));
+				zos.closeEntry();
+			}
+		}
+	}
+
+	private static String readEntry(Path jar, String name) throws IOException {
+		try(ZipFile zip = new ZipFile(jar.toFile())) {
+			ZipEntry entry = zip.getEntry(name);
+			if(entry == null) {
+				return null;
+			}
+			try(InputStream is = zip.getInputStream(entry)) {
+				return StreamUtil.readString(is);
+			}
+		}
+	}
+}
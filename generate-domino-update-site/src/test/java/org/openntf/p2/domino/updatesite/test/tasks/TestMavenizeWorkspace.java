@@ -0,0 +1,112 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.test.tasks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.openntf.p2.domino.updatesite.tasks.MavenizeWorkspace;
+
+@SuppressWarnings("nls")
+public class TestMavenizeWorkspace {
+
+	@Test
+	public void testClear() throws IOException {
+		try(MavenizeWorkspace workspace = MavenizeWorkspace.create()) {
+			Path dir = workspace.getDirectory();
+			Path first = workspace.newFile("first", ".jar");
+			Path pom = workspace.newPath("com.example.a-1.0.0.pom");
+			write(pom);
+			// Never written, which clear should tolerate
+			Path unwritten = workspace.newPath("com.example.b-1.0.0.pom");
+			// Not created through the workspace, so not tracked
+			Path untracked = dir.resolve("untracked.txt");
+			write(untracked);
+			assertTrue(first.startsWith(dir) && pom.startsWith(dir) && unwritten.startsWith(dir));
+			assertTrue(Files.isRegularFile(first));
+
+			workspace.clear();
+			assertFalse(Files.exists(first));
+			assertFalse(Files.exists(pom));
+			assertTrue(Files.isRegularFile(untracked));
+			assertTrue(Files.isDirectory(dir));
+
+			// A later chunk only removes its own files, and a file recreated at a cleared path is tracked again
+			Path second = workspace.newFile("second", ".jar");
+			write(pom);
+			workspace.clear();
+			assertFalse(Files.exists(second));
+			assertTrue(Files.isRegularFile(pom), "Paths are only tracked until the clear after they were requested");
+			Files.delete(pom);
+
+			Path third = workspace.newPath("com.example.a-1.0.0.pom");
+			write(third);
+			workspace.clear();
+			assertFalse(Files.exists(third));
+			assertTrue(Files.isRegularFile(untracked));
+			try(Stream<Path> remaining = Files.list(dir)) {
+				assertEquals(1, remaining.count());
+			}
+		}
+	}
+
+	@Test
+	public void testCloseRemovesDirectory() throws IOException {
+		Path dir;
+		try(MavenizeWorkspace workspace = MavenizeWorkspace.create()) {
+			dir = workspace.getDirectory();
+			workspace.newFile("bundle", ".jar");
+			write(workspace.newPath("com.example.a-1.0.0.pom"));
+			write(dir.resolve("nested/untracked.txt"));
+		}
+		assertFalse(Files.exists(dir));
+	}
+
+	@Test
+	public void testCloseAfterFailure() throws IOException {
+		// Files left behind by a chunk that failed before clear() are still removed
+		MavenizeWorkspace workspace = MavenizeWorkspace.create();
+		Path dir = workspace.getDirectory();
+		Path file = workspace.newFile("bundle", ".jar");
+		try {
+			try {
+				write(file);
+				throw new IllegalStateException("chunk failed");
+			} finally {
+				workspace.close();
+			}
+		} catch(IllegalStateException e) {
+			// Expected
+		}
+		assertFalse(Files.exists(dir));
+
+		// Closing again is harmless
+		workspace.close();
+	}
+
+	private static void write(Path file) throws IOException {
+		Files.createDirectories(file.getParent());
+		Files.write(file, file.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.test.tasks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.openntf.p2.domino.updatesite.tasks.PluginRegistry;
+
+@SuppressWarnings("nls")
+public class TestPluginRegistry {
+	@Test
+	public void testHighestVersion() {
+		PluginRegistry registry = new PluginRegistry();
+		Path plugins = Paths.get("plugins");
+		assertTrue(registry.register(plugins.resolve("com.ibm.domino.napi_9.0.1.v00_00_20180101-1500.jar")));
+		assertTrue(registry.register(plugins.resolve("com.ibm.domino.napi_14.0.0.v00_00_20231101-1500.jar")));
+		assertTrue(registry.register(plugins.resolve("com.ibm.domino.napi.impl_14.0.0-1500.jar")));
+
+		// 14 sorts above 9 by version, though not by string
+		assertEquals(Optional.of("14.0.0.v00_00_20231101-1500"), registry.findHighestVersion("com.ibm.domino.napi"));
+		assertEquals(Optional.of(plugins.resolve("com.ibm.domino.napi_14.0.0.v00_00_20231101-1500.jar")), registry.findHighest("com.ibm.domino.napi"));
+		assertEquals(Arrays.asList("9.0.1.v00_00_20180101-1500", "14.0.0.v00_00_20231101-1500"), new ArrayList<>(registry.getVersions("com.ibm.domino.napi").keySet()));
+		assertTrue(registry.contains("com.ibm.domino.napi.impl", "14.0.0-1500"));
+	}
+
+	@Test
+	public void testExactSymbolicName() {
+		PluginRegistry registry = new PluginRegistry();
+		assertTrue(registry.register(Paths.get("plugins", "com.ibm.notes.java.api.win32.linux_14.0.0-1500.jar")));
+		assertFalse(registry.register(Paths.get("plugins", "README.txt")));
+
+		assertEquals(Optional.empty(), registry.findHighestVersion("com.ibm.notes.java.api"));
+		assertTrue(registry.getVersions("com.ibm.notes.java.api").isEmpty());
+	}
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.test.tasks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openntf.p2.domino.updatesite.tasks.SiteFingerprints;
+
+@SuppressWarnings("nls")
+public class TestSiteFingerprints {
+	private static final String OPTIONS = "flattenEmbeds=false;onlyDots=false";
+
+	@TempDir
+	Path tempDir;
+
+	private Path source;
+	private Path site;
+	private Path jar;
+	private Path unpacked;
+
+	@BeforeEach
+	public void createFiles() throws IOException {
+		source = Files.createDirectories(tempDir.resolve("source"));
+		site = Files.createDirectories(tempDir.resolve("site"));
+		Files.createDirectories(site.resolve("plugins"));
+
+		jar = source.resolve("com.example.a_1.0.0.jar");
+		write(jar, "jar contents");
+		unpacked = Files.createDirectories(source.resolve("com.example.b_1.0.0"));
+		write(unpacked.resolve("plugin.xml"), "<plugin/>");
+		write(unpacked.resolve("META-INF/MANIFEST.MF"), "Manifest-Version: 1.0\r\n");
+
+		write(site.resolve("plugins/com.example.a_1.0.0.jar"), "a");
+		write(site.resolve("plugins/com.example.a.source_1.0.0.jar"), "a source");
+		write(site.resolve("plugins/com.example.b_1.0.0.jar"), "b");
+
+		SiteFingerprints fingerprints = SiteFingerprints.load(site, source, OPTIONS);
+		fingerprints.record(jar, "", Arrays.asList(site.resolve("plugins/com.example.a_1.0.0.jar"), site.resolve("plugins/com.example.a.source_1.0.0.jar")));
+		fingerprints.record(unpacked, "", Collections.singletonList(site.resolve("plugins/com.example.b_1.0.0.jar")));
+		fingerprints.save();
+	}
+
+	@Test
+	public void testUnchanged() throws IOException {
+		SiteFingerprints fingerprints = SiteFingerprints.load(site, source, OPTIONS);
+		assertEquals(Optional.of(Arrays.asList("plugins/com.example.a_1.0.0.jar", "plugins/com.example.a.source_1.0.0.jar")), fingerprints.findUnchanged(jar, ""));
+		assertEquals(Optional.of(Collections.singletonList("plugins/com.example.b_1.0.0.jar")), fingerprints.findUnchanged(unpacked, ""));
+
+		// Nothing is carried over until it is recorded again
+		assertEquals(Collections.emptySet(), fingerprints.getOutputs());
+	}
+
+	@Test
+	public void testTouchedButUnchanged() throws IOException {
+		// A new modification time alone falls back to the hash, which still matches
+		Files.setLastModifiedTime(jar, FileTime.fromMillis(Files.getLastModifiedTime(jar).toMillis() + 60000));
+		Files.setLastModifiedTime(unpacked.resolve("plugin.xml"), FileTime.fromMillis(Files.getLastModifiedTime(unpacked.resolve("plugin.xml")).toMillis() + 60000));
+
+		SiteFingerprints fingerprints = SiteFingerprints.load(site, source, OPTIONS);
+		assertEquals(2, fingerprints.findUnchanged(jar, "").get().size());
+		assertEquals(1, fingerprints.findUnchanged(unpacked, "").get().size());
+	}
+
+	@Test
+	public void testChanged() throws IOException {
+		FileTime modified = Files.getLastModifiedTime(jar);
+		write(jar, "JAR CONTENTS");
+		Files.setLastModifiedTime(jar, FileTime.fromMillis(modified.toMillis() + 60000));
+		write(unpacked.resolve("plugin.xml"), "<plugin id=\"changed\"/>");
+
+		SiteFingerprints fingerprints = SiteFingerprints.load(site, source, OPTIONS);
+		assertFalse(fingerprints.findUnchanged(jar, "").isPresent());
+		assertFalse(fingerprints.findUnchanged(unpacked, "").isPresent());
+	}
+
+	@Test
+	public void testRemovedOutput() throws IOException {
+		Files.delete(site.resolve("plugins/com.example.a.source_1.0.0.jar"));
+
+		SiteFingerprints fingerprints = SiteFingerprints.load(site, source, OPTIONS);
+		assertFalse(fingerprints.findUnchanged(jar, "").isPresent());
+		assertEquals(1, fingerprints.findUnchanged(unpacked, "").get().size());
+	}
+
+	@Test
+	public void testChangedVariantOrOptions() throws IOException {
+		assertFalse(SiteFingerprints.load(site, source, OPTIONS).findUnchanged(jar, "14.0.0-1500").isPresent());
+		assertFalse(SiteFingerprints.load(site, source, "flattenEmbeds=true;onlyDots=false").findUnchanged(jar, "").isPresent());
+	}
+
+	@Test
+	public void testSaveReplacesPreviousRun() throws IOException {
+		// Only the sources recorded during a run are kept for the next one
+		SiteFingerprints fingerprints = SiteFingerprints.load(site, source, OPTIONS);
+		fingerprints.record(jar, "", Collections.singletonList(site.resolve("plugins/com.example.a_1.0.0.jar")));
+		assertEquals(new HashSet<>(Arrays.asList("plugins/com.example.a_1.0.0.jar")), fingerprints.getOutputs());
+		fingerprints.save();
+
+		fingerprints = SiteFingerprints.load(site, source, OPTIONS);
+		assertEquals(Optional.of(Collections.singletonList("plugins/com.example.a_1.0.0.jar")), fingerprints.findUnchanged(jar, ""));
+		assertFalse(fingerprints.findUnchanged(unpacked, "").isPresent());
+	}
+
+	private static void write(Path file, String content) throws IOException {
+		Files.createDirectories(file.getParent());
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.test.tasks;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Optional;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openntf.p2.domino.updatesite.tasks.SourceBundleCache;
+
+@SuppressWarnings("nls")
+public class TestSourceBundleCache {
+	private static final int BUNDLE_SIZE = 100;
+
+	@TempDir
+	Path tempDir;
+
+	private Path cacheDir;
+	private Path sources;
+	private Path site;
+
+	@BeforeEach
+	public void createDirs() throws IOException {
+		cacheDir = tempDir.resolve("cache");
+		sources = cacheDir.resolve("sources");
+		site = Files.createDirectories(tempDir.resolve("site"));
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		SourceBundleCache cache = new SourceBundleCache(cacheDir, SourceBundleCache.DEFAULT_MAX_SIZE, new SystemStreamLog());
+		assertFalse(cache.get("foo.source", "1.0.0", site).isPresent());
+
+		Path bundle = bundle("foo", (byte)1);
+		cache.put("foo.source", "1.0.0", bundle);
+		Optional<Path> cached = cache.get("foo.source", "1.0.0", site);
+		assertTrue(cached.isPresent());
+		assertTrue(cached.get().startsWith(site));
+		assertArrayEquals(Files.readAllBytes(bundle), Files.readAllBytes(cached.get()));
+		assertTrue(Files.isRegularFile(sources.resolve("foo.source_1.0.0.jar.sha256")));
+	}
+
+	@Test
+	public void testHashMismatch() throws IOException {
+		SourceBundleCache cache = new SourceBundleCache(cacheDir, SourceBundleCache.DEFAULT_MAX_SIZE, new SystemStreamLog());
+		cache.put("foo.source", "1.0.0", bundle("foo", (byte)1));
+
+		// A truncated entry is discarded rather than used
+		Path entry = sources.resolve("foo.source_1.0.0.jar");
+		Files.write(entry, new byte[] { 1, 1, 1 });
+		assertFalse(cache.get("foo.source", "1.0.0", site).isPresent());
+		assertFalse(Files.exists(entry));
+		assertFalse(Files.exists(sources.resolve("foo.source_1.0.0.jar.sha256")));
+	}
+
+	@Test
+	public void testEvictionOrder() throws IOException {
+		SourceBundleCache cache = new SourceBundleCache(cacheDir, BUNDLE_SIZE * 2, new SystemStreamLog());
+		cache.put("a.source", "1.0.0", bundle("a", (byte)1));
+		cache.put("b.source", "1.0.0", bundle("b", (byte)2));
+
+		// Using a makes b the least recently used, so it is the one evicted for c
+		assertTrue(cache.get("a.source", "1.0.0", site).isPresent());
+		cache.put("c.source", "1.0.0", bundle("c", (byte)3));
+		assertCached("a.source_1.0.0.jar", "c.source_1.0.0.jar");
+		assertNotCached("b.source_1.0.0.jar");
+
+		// A new instance orders the entries by their recorded last use
+		Files.setLastModifiedTime(sources.resolve("a.source_1.0.0.jar.sha256"), FileTime.fromMillis(2000000000000L));
+		Files.setLastModifiedTime(sources.resolve("c.source_1.0.0.jar.sha256"), FileTime.fromMillis(1000000000000L));
+		cache = new SourceBundleCache(cacheDir, BUNDLE_SIZE * 2, new SystemStreamLog());
+		cache.put("d.source", "1.0.0", bundle("d", (byte)4));
+		assertCached("a.source_1.0.0.jar", "d.source_1.0.0.jar");
+		assertNotCached("c.source_1.0.0.jar");
+	}
+
+	@Test
+	public void testOrphansRemoved() throws IOException {
+		// Leftovers of an interrupted run, which would otherwise never be counted
+		Files.createDirectories(sources);
+		Files.write(sources.resolve("orphan.source_1.0.0.jar"), new byte[BUNDLE_SIZE * 10]);
+		Files.write(sources.resolve("missing.source_1.0.0.jar.sha256"), "0000".getBytes(StandardCharsets.US_ASCII));
+
+		SourceBundleCache cache = new SourceBundleCache(cacheDir, BUNDLE_SIZE * 2, new SystemStreamLog());
+		cache.put("a.source", "1.0.0", bundle("a", (byte)1));
+		cache.put("b.source", "1.0.0", bundle("b", (byte)2));
+		assertCached("a.source_1.0.0.jar", "b.source_1.0.0.jar");
+		assertNotCached("orphan.source_1.0.0.jar", "missing.source_1.0.0.jar");
+	}
+
+	@Test
+	public void testDisabled() throws IOException {
+		SourceBundleCache cache = new SourceBundleCache(cacheDir, 0, new SystemStreamLog());
+		cache.put("foo.source", "1.0.0", bundle("foo", (byte)1));
+		assertFalse(cache.get("foo.source", "1.0.0", site).isPresent());
+		assertFalse(Files.exists(sources));
+	}
+
+	private Path bundle(String name, byte fill) throws IOException {
+		byte[] content = new byte[BUNDLE_SIZE];
+		Arrays.fill(content, fill);
+		Path bundle = tempDir.resolve("downloads").resolve(name + ".jar");
+		Files.createDirectories(bundle.getParent());
+		Files.write(bundle, content);
+		return bundle;
+	}
+
+	private void assertCached(String... names) {
+		for(String name : names) {
+			assertTrue(Files.isRegularFile(sources.resolve(name)), name);
+			assertTrue(Files.isRegularFile(sources.resolve(name + ".sha256")), name);
+		}
+	}
+
+	private void assertNotCached(String... names) {
+		for(String name : names) {
+			assertFalse(Files.exists(sources.resolve(name)), name);
+			assertFalse(Files.exists(sources.resolve(name + ".sha256")), name);
+		}
+	}
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.test.tasks;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openntf.p2.domino.updatesite.tasks.SourceBundleDownloader;
+import org.openntf.p2.domino.updatesite.tasks.SourceBundleDownloader.ConditionalResponse;
+
+import com.sun.net.httpserver.HttpServer;
+
+@SuppressWarnings("nls")
+public class TestSourceBundleDownloader {
+	private static final byte[] BUNDLE = "fake source bundle".getBytes(StandardCharsets.UTF_8);
+	private static final String ETAG = "\"abc123\"";
+
+	@TempDir
+	Path tempDir;
+
+	private HttpServer server;
+	private String baseUrl;
+	private final Map<String, AtomicInteger> requests = new HashMap<>();
+	private final AtomicInteger failuresRemaining = new AtomicInteger();
+
+	@BeforeEach
+	public void startServer() throws IOException {
+		// Serve a fake p2 plugins/ directory, failing the first requests on demand
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/site/plugins/", exchange -> {
+			String path = exchange.getRequestURI().getPath();
+			synchronized(requests) {
+				requests.computeIfAbsent(path, key -> new AtomicInteger()).incrementAndGet();
+			}
+			if(failuresRemaining.getAndDecrement() > 0) {
+				exchange.sendResponseHeaders(503, -1);
+			} else if(path.endsWith("/foo.source_1.0.0.jar")) {
+				exchange.getResponseHeaders().set("ETag", ETAG);
+				if(ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+					exchange.sendResponseHeaders(304, -1);
+					exchange.close();
+					return;
+				}
+				exchange.sendResponseHeaders(200, BUNDLE.length);
+				try(OutputStream os = exchange.getResponseBody()) {
+					os.write(BUNDLE);
+				}
+			} else {
+				exchange.sendResponseHeaders(404, -1);
+			}
+			exchange.close();
+		});
+		server.start();
+		baseUrl = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/site";
+	}
+
+	@AfterEach
+	public void stopServer() {
+		server.stop(0);
+	}
+
+	@Test
+	public void testDownload() throws Exception {
+		try(SourceBundleDownloader downloader = new SourceBundleDownloader(baseUrl, 2, new SystemStreamLog())) {
+			Path file = downloader.download("plugins/foo.source_1.0.0.jar", tempDir).get();
+			assertTrue(file.startsWith(tempDir));
+			assertArrayEquals(BUNDLE, Files.readAllBytes(file));
+		}
+	}
+
+	@Test
+	public void testRetry() throws Exception {
+		failuresRemaining.set(2);
+		try(SourceBundleDownloader downloader = new SourceBundleDownloader(baseUrl, 2, new SystemStreamLog())) {
+			downloader.setBackoff(1);
+			Path file = downloader.download("plugins/foo.source_1.0.0.jar", tempDir).get();
+			assertArrayEquals(BUNDLE, Files.readAllBytes(file));
+		}
+		assertEquals(3, requests.get("/site/plugins/foo.source_1.0.0.jar").get());
+	}
+
+	@Test
+	public void testGiveUp() throws Exception {
+		failuresRemaining.set(10);
+		try(SourceBundleDownloader downloader = new SourceBundleDownloader(baseUrl, 2, new SystemStreamLog())) {
+			downloader.setBackoff(1);
+			downloader.setAttempts(2);
+			ExecutionException e = assertThrows(ExecutionException.class, () -> downloader.download("plugins/foo.source_1.0.0.jar", tempDir).get());
+			assertTrue(e.getCause() instanceof IOException);
+		}
+		assertEquals(2, requests.get("/site/plugins/foo.source_1.0.0.jar").get());
+		try(Stream<Path> files = Files.list(tempDir)) {
+			assertEquals(0, files.count(), "Partial downloads should be removed");
+		}
+	}
+
+	@Test
+	public void testNotFoundIsNotRetried() throws Exception {
+		try(SourceBundleDownloader downloader = new SourceBundleDownloader(baseUrl, 2, new SystemStreamLog())) {
+			downloader.setBackoff(1);
+			ExecutionException e = assertThrows(ExecutionException.class, () -> downloader.download("plugins/missing.source_1.0.0.jar", tempDir).get());
+			assertTrue(e.getCause() instanceof FileNotFoundException);
+		}
+		assertEquals(1, requests.get("/site/plugins/missing.source_1.0.0.jar").get());
+	}
+
+	@Test
+	public void testConditionalFetch() throws Exception {
+		try(SourceBundleDownloader downloader = new SourceBundleDownloader(baseUrl, 2, new SystemStreamLog())) {
+			ConditionalResponse<Integer> fresh = downloader.fetchIfModified("plugins/foo.source_1.0.0.jar", null, null, is -> is.read()).get();
+			assertFalse(fresh.isNotModified());
+			assertEquals(BUNDLE[0], fresh.getValue().intValue());
+			assertEquals(ETAG, fresh.getETag());
+
+			ConditionalResponse<Integer> revalidated = downloader.fetchIfModified("plugins/foo.source_1.0.0.jar", fresh.getETag(), null, is -> is.read()).get();
+			assertTrue(revalidated.isNotModified());
+			assertNull(revalidated.getValue());
+			assertEquals(ETAG, revalidated.getETag());
+		}
+	}
+}
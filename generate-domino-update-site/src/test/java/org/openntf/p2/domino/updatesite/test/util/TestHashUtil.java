@@ -0,0 +1,67 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.test.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openntf.p2.domino.updatesite.util.HashUtil;
+
+@SuppressWarnings("nls")
+public class TestHashUtil {
+	private static final String SHA256_ABC = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+	private static final String SHA1_ABC = "a9993e364706816aba3e25717850c26c9cd0d89d";
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void testFiles() throws IOException {
+		Path file = tempDir.resolve("abc.txt");
+		Files.write(file, "abc".getBytes(StandardCharsets.UTF_8));
+		assertEquals(SHA256_ABC, HashUtil.sha256(file));
+		assertEquals(SHA1_ABC, HashUtil.sha1(file));
+	}
+
+	@Test
+	public void testLargeFile() throws IOException {
+		// Spans several read buffers
+		Path file = tempDir.resolve("large.bin");
+		byte[] content = new byte[100000];
+		for(int i = 0; i < content.length; i++) {
+			content[i] = (byte)i;
+		}
+		Files.write(file, content);
+		assertEquals(HashUtil.toHex(HashUtil.newDigest("SHA-256").digest(content)), HashUtil.sha256(file));
+	}
+
+	@Test
+	public void testString() {
+		assertEquals(SHA256_ABC, HashUtil.sha256("abc"));
+	}
+
+	@Test
+	public void testToHex() {
+		assertEquals("", HashUtil.toHex(new byte[0]));
+		assertEquals("000fa0ff", HashUtil.toHex(new byte[] { 0x00, 0x0f, (byte)0xa0, (byte)0xff }));
+	}
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright © 2018-2025 Contributors to the generate-domino-update-site project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.p2.domino.updatesite.test.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Test;
+import org.openntf.p2.domino.updatesite.util.NLSUtil;
+
+@SuppressWarnings("nls")
+public class TestNLSUtil {
+
+	@Test
+	public void testTrivial() {
+		Map<String, String> props = Collections.singletonMap("name", "Example");
+		assertNull(NLSUtil.resolve(null, props));
+		assertEquals("", NLSUtil.resolve("", props));
+		assertEquals("No keys here", NLSUtil.resolve("No keys here", props));
+		assertEquals("%name", NLSUtil.resolve("%name", Collections.emptyMap()));
+	}
+
+	@Test
+	public void testWholeValue() {
+		Map<String, String> props = Collections.singletonMap("bundleName", "Example Bundle");
+		assertEquals("Example Bundle", NLSUtil.resolve("%bundleName", props));
+	}
+
+	@Test
+	public void testLongestKeyWins() {
+		Map<String, String> props = new HashMap<>();
+		props.put("name", "Short");
+		props.put("nameLong", "Long");
+		assertEquals("Long", NLSUtil.resolve("%nameLong", props));
+		assertEquals("Short", NLSUtil.resolve("%name", props));
+	}
+
+	@Test
+	public void testMultipleTokens() {
+		Map<String, String> props = new HashMap<>();
+		props.put("provider", "IBM");
+		props.put("feature.name", "XPages Runtime");
+		assertEquals("XPages Runtime (IBM)", NLSUtil.resolve("%feature.name (%provider)", props));
+		assertEquals("Made by IBM.", NLSUtil.resolve("Made by %provider.", props));
+	}
+
+	@Test
+	public void testUnknownAndStrayPercent() {
+		Map<String, String> props = Collections.singletonMap("name", "Example");
+		assertEquals("100% %missing Example", NLSUtil.resolve("100% %missing %name", props));
+		assertEquals("%%", NLSUtil.resolve("%%", props));
+	}
+
+	@Test
+	public void testReplacementsAreNotRescanned() {
+		Map<String, String> props = new HashMap<>();
+		props.put("a", "%b");
+		props.put("b", "B");
+		assertEquals("%b", NLSUtil.resolve("%a", props));
+	}
+
+	@Test
+	public void testProperties() {
+		Properties props = new Properties();
+		props.setProperty("pluginName", "Example Plugin");
+		assertEquals("Example Plugin", NLSUtil.resolve("%pluginName", props));
+	}
+}